@@ -0,0 +1,222 @@
+package de.idealo.logback.appender;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import de.idealo.logback.appender.encoder.RedisJsonEncoder;
+
+import ch.qos.logback.classic.pattern.CallerDataConverter;
+import ch.qos.logback.classic.pattern.ClassOfCallerConverter;
+import ch.qos.logback.classic.pattern.FileOfCallerConverter;
+import ch.qos.logback.classic.pattern.LineOfCallerConverter;
+import ch.qos.logback.classic.pattern.MDCConverter;
+import ch.qos.logback.classic.pattern.MessageConverter;
+import ch.qos.logback.classic.pattern.MethodOfCallerConverter;
+import ch.qos.logback.classic.pattern.ThreadConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.pattern.CompositeConverter;
+import ch.qos.logback.core.pattern.Converter;
+import ch.qos.logback.core.pattern.PatternLayoutBase;
+import ch.qos.logback.core.pattern.parser.Parser;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import ch.qos.logback.core.spi.ScanException;
+
+/**
+ * Captures the caller thread dependent parts of a logging event before it is handed to the flushing thread.<br/>
+ * <br/>
+ * {@link DeferredProcessingAware#prepareForDeferredProcessing()} captures message, thread name and MDC,
+ * but never caller data. Encoders based on a pattern layout and the {@link RedisJsonEncoder} are inspected on startup,
+ * so that only the fields they actually render are captured. Events of other encoders are fully prepared.
+ */
+public class DeferredProcessingPreparer implements Consumer<DeferredProcessingAware> {
+
+    static final String AUTO = "AUTO";
+    static final String ALL = "ALL";
+    static final String NONE = "NONE";
+
+    public enum Field {
+        MESSAGE,
+        THREAD_NAME,
+        MDC,
+        CALLER_DATA;
+    }
+
+    /** null: fields are not known, the event is prepared completely */
+    private final Set<Field> fields;
+
+    DeferredProcessingPreparer(Set<Field> fields) {
+        this.fields = fields == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    /**
+     * @param encoder
+     *            encoder that renders the events on the flushing thread
+     * @param configuredFields
+     *            AUTO (derive from encoder), ALL, NONE or a comma separated list of {@link Field} names
+     * @throws IllegalArgumentException
+     *             on an unknown field name
+     */
+    public static DeferredProcessingPreparer create(Encoder<?> encoder, String configuredFields) {
+        return create(encoder, configuredFields, null);
+    }
+
+    /**
+     * @param keyLayout
+     *            layout that resolves the redis key of the events on the flushing thread, null if the key is fixed.
+     *            AUTO captures the fields used by the encoder and by this layout.
+     */
+    public static DeferredProcessingPreparer create(Encoder<?> encoder, String configuredFields, Layout<?> keyLayout) {
+        final String value = configuredFields == null ? AUTO : configuredFields.trim().toUpperCase(Locale.ROOT);
+        switch (value) {
+            case AUTO:
+                final Set<Field> keyFields = keyLayout == null ? EnumSet.noneOf(Field.class) : getUsedFields(keyLayout);
+                return new DeferredProcessingPreparer(union(getUsedFields(encoder), keyFields));
+            case ALL:
+                return new DeferredProcessingPreparer(null);
+            case NONE:
+                return new DeferredProcessingPreparer(EnumSet.noneOf(Field.class));
+            default:
+                return new DeferredProcessingPreparer(parseFields(value));
+        }
+    }
+
+    Set<Field> getFields() {
+        return fields;
+    }
+
+    @Override
+    public void accept(DeferredProcessingAware event) {
+        if (event == null) {
+            return;
+        }
+        if (fields == null || !(event instanceof ILoggingEvent)) {
+            event.prepareForDeferredProcessing();
+            return;
+        }
+        final ILoggingEvent loggingEvent = (ILoggingEvent) event;
+        // the getters of LoggingEvent cache their results, calling them is sufficient
+        for (Field field : fields) {
+            switch (field) {
+                case MESSAGE:
+                    loggingEvent.getFormattedMessage();
+                    break;
+                case THREAD_NAME:
+                    loggingEvent.getThreadName();
+                    break;
+                case MDC:
+                    loggingEvent.getMDCPropertyMap();
+                    break;
+                case CALLER_DATA:
+                    loggingEvent.getCallerData();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported field " + field);
+            }
+        }
+    }
+
+    private static Set<Field> parseFields(String fieldList) {
+        final Set<Field> result = EnumSet.noneOf(Field.class);
+        Arrays.stream(fieldList.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(DeferredProcessingPreparer::parseField)
+                .forEach(result::add);
+        return result;
+    }
+
+    private static Field parseField(String name) {
+        try {
+            return Field.valueOf(name);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("invalid deferred processing field '" + name + "', supported are "
+                    + AUTO + ", " + ALL + ", " + NONE + " or a list of " + Arrays.toString(Field.values()), ex);
+        }
+    }
+
+    private static Set<Field> union(Set<Field> fields, Set<Field> otherFields) {
+        if (fields == null || otherFields == null) {
+            return null;
+        }
+        final Set<Field> result = EnumSet.noneOf(Field.class);
+        result.addAll(fields);
+        result.addAll(otherFields);
+        return result;
+    }
+
+    /**
+     * @return fields rendered by the encoder or null, if they can't be determined
+     */
+    static Set<Field> getUsedFields(Encoder<?> encoder) {
+        if (encoder instanceof RedisJsonEncoder) {
+            final RedisJsonEncoder jsonEncoder = (RedisJsonEncoder) encoder;
+            final Set<Field> result = EnumSet.of(Field.MESSAGE, Field.THREAD_NAME);
+            if (jsonEncoder.isIncludeMdc()) {
+                result.add(Field.MDC);
+            }
+            if (jsonEncoder.isIncludeCallerData()) {
+                result.add(Field.CALLER_DATA);
+            }
+            return result;
+        }
+        if (!(encoder instanceof LayoutWrappingEncoder)) {
+            return null;
+        }
+        return getUsedFields(((LayoutWrappingEncoder<?>) encoder).getLayout());
+    }
+
+    /**
+     * @return fields rendered by the layout or null, if they can't be determined
+     */
+    static Set<Field> getUsedFields(Layout<?> layout) {
+        if (!(layout instanceof PatternLayoutBase) || ((PatternLayoutBase<?>) layout).getPattern() == null) {
+            return null;
+        }
+        final PatternLayoutBase<?> patternLayout = (PatternLayoutBase<?>) layout;
+        try {
+            final Parser<Object> parser = new Parser<>(patternLayout.getPattern());
+            parser.setContext(patternLayout.getContext());
+            final Converter<Object> head = parser.compile(parser.parse(), patternLayout.getEffectiveConverterMap());
+            final Set<Field> result = EnumSet.noneOf(Field.class);
+            return addUsedFields(head, result) ? result : null;
+        } catch (ScanException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return false if a converter was found whose field access is unknown
+     */
+    private static boolean addUsedFields(Converter<?> head, Set<Field> result) {
+        for (Converter<?> converter = head; converter != null; converter = converter.getNext()) {
+            if (converter instanceof CompositeConverter
+                    && !addUsedFields(((CompositeConverter<?>) converter).getChildConverter(), result)) {
+                return false;
+            }
+            if (converter instanceof MessageConverter) {
+                result.add(Field.MESSAGE);
+            } else if (converter instanceof ThreadConverter) {
+                result.add(Field.THREAD_NAME);
+            } else if (converter instanceof MDCConverter) {
+                result.add(Field.MDC);
+            } else if (converter instanceof CallerDataConverter
+                    || converter instanceof LineOfCallerConverter
+                    || converter instanceof FileOfCallerConverter
+                    || converter instanceof MethodOfCallerConverter
+                    || converter instanceof ClassOfCallerConverter) {
+                result.add(Field.CALLER_DATA);
+            } else if (!converter.getClass().getName().startsWith("ch.qos.logback.")) {
+                // custom converters may access any field
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,115 @@
+package de.idealo.logback.appender;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.pattern.LevelConverter;
+import ch.qos.logback.classic.pattern.LoggerConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.pattern.Converter;
+import ch.qos.logback.core.pattern.LiteralConverter;
+import ch.qos.logback.core.pattern.parser.Parser;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import ch.qos.logback.core.spi.ScanException;
+import ch.qos.logback.core.status.Status;
+
+/**
+ * Resolves the redis key of each event from a logback pattern, e.g. {@code logs:%level}, {@code %logger{0}} or
+ * {@code audit:%X{tenant}}. Events that are no logging events and events whose key is empty get the default key.<br/>
+ * <br/>
+ * Keys of patterns that only consist of logger, level and text (e.g. the volume dimension {@code %logger:%level}) are
+ * cached per level and logger, so they are not formatted for each event.
+ */
+final class KeyPatternResolver implements Function<DeferredProcessingAware, String> {
+
+    /** maximum number of cached keys per level, the keys of further loggers are formatted for each event */
+    private static final int MAX_CACHED_KEYS = 10_000;
+
+    private final PatternLayout layout;
+    private final String defaultKey;
+    private final boolean valid;
+    /** keys per logger name of each level, null if the keys depend on other fields */
+    private final Map<Level, Map<String, String>> cachedKeys;
+
+    KeyPatternResolver(Context context, String pattern, String defaultKey) {
+        final int statusCount = context.getStatusManager().getCount();
+        layout = new PatternLayout();
+        layout.setContext(context);
+        layout.setPattern(pattern);
+        layout.start();
+        this.defaultKey = defaultKey;
+        // unknown conversion words do not prevent the start, they are only reported as error status
+        valid = layout.isStarted() && !hasErrorSince(context, statusCount);
+        cachedKeys = valid && usesLoggerAndLevelOnly(layout) ? new ConcurrentHashMap<>() : null;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    PatternLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public String apply(DeferredProcessingAware event) {
+        if (!(event instanceof ILoggingEvent)) {
+            return defaultKey;
+        }
+        final ILoggingEvent loggingEvent = (ILoggingEvent) event;
+        if (cachedKeys == null || loggingEvent.getLevel() == null || loggingEvent.getLoggerName() == null) {
+            return format(loggingEvent);
+        }
+        Map<String, String> keys = cachedKeys.get(loggingEvent.getLevel());
+        if (keys == null) {
+            keys = cachedKeys.computeIfAbsent(loggingEvent.getLevel(), level -> new ConcurrentHashMap<>());
+        }
+        String key = keys.get(loggingEvent.getLoggerName());
+        if (key == null) {
+            key = format(loggingEvent);
+            if (keys.size() < MAX_CACHED_KEYS) {
+                keys.put(loggingEvent.getLoggerName(), key);
+            }
+        }
+        return key;
+    }
+
+    private String format(ILoggingEvent event) {
+        final String key = layout.doLayout(event);
+        return key.isEmpty() ? defaultKey : key;
+    }
+
+    /**
+     * @return true, if the pattern only consists of logger, level and text
+     */
+    private static boolean usesLoggerAndLevelOnly(PatternLayout layout) {
+        try {
+            final Parser<ILoggingEvent> parser = new Parser<>(layout.getPattern());
+            parser.setContext(layout.getContext());
+            final Converter<ILoggingEvent> head = parser.compile(parser.parse(), layout.getEffectiveConverterMap());
+            for (Converter<ILoggingEvent> converter = head; converter != null; converter = converter.getNext()) {
+                if (!(converter instanceof LoggerConverter || converter instanceof LevelConverter || converter instanceof LiteralConverter)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ScanException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static boolean hasErrorSince(Context context, int statusCount) {
+        final List<Status> statusList = context.getStatusManager().getCopyOfStatusList();
+        for (int i = statusCount; i < statusList.size(); i++) {
+            if (statusList.get(i).getLevel() >= Status.ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package de.idealo.logback.appender;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+/**
+ * Drops low level events while the buffer of the writer is filled above a watermark, before any work is spent on
+ * them.<br/>
+ * <br/>
+ * Above the high watermark TRACE and DEBUG events are dropped. If the buffer still fills up to halfway between the
+ * high watermark and its capacity, INFO events are dropped as well. WARN, ERROR and events without level are always
+ * kept. Once the buffer drains below the high watermark, INFO events are kept again, below the low watermark all
+ * events are kept.<br/>
+ * <br/>
+ * Called concurrently by the appending threads. Concurrent state changes are not synchronized, a transition may
+ * only be applied one event later. The watermarks are fixed, {@link #withWatermarks(int, int, int)} replaces them.
+ */
+final class LoadShedder {
+
+    private static final Level[] SHED_LEVELS = { Level.TRACE, Level.DEBUG, Level.INFO };
+
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int criticalWatermark;
+    private final AtomicLongArray shedEvents;
+    /** events below this level are dropped, null if nothing is dropped */
+    private volatile Level shedBelow;
+
+    LoadShedder(int highWatermark, int lowWatermark, int bufferCapacity) {
+        this(highWatermark, lowWatermark, bufferCapacity, new AtomicLongArray(SHED_LEVELS.length), null);
+    }
+
+    private LoadShedder(int highWatermark, int lowWatermark, int bufferCapacity, AtomicLongArray shedEvents, Level shedBelow) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        criticalWatermark = highWatermark + (bufferCapacity - highWatermark) / 2;
+        this.shedEvents = shedEvents;
+        this.shedBelow = shedBelow;
+    }
+
+    /**
+     * @return shedder with the given watermarks, that continues the counters and the state of this one
+     */
+    LoadShedder withWatermarks(int highWatermark, int lowWatermark, int bufferCapacity) {
+        return new LoadShedder(highWatermark, lowWatermark, bufferCapacity, shedEvents, shedBelow);
+    }
+
+    /**
+     * @param bufferedEvents
+     *            current number of events in the buffer of the writer
+     * @return true, if the event must be dropped
+     */
+    boolean shed(DeferredProcessingAware event, int bufferedEvents) {
+        updateState(bufferedEvents);
+        final Level level = shedBelow;
+        if (level == null || !(event instanceof ILoggingEvent)) {
+            return false;
+        }
+        final Level eventLevel = ((ILoggingEvent) event).getLevel();
+        if (eventLevel.isGreaterOrEqual(level)) {
+            return false;
+        }
+        shedEvents.incrementAndGet(indexOf(eventLevel));
+        return true;
+    }
+
+    private void updateState(int bufferedEvents) {
+        if (bufferedEvents >= criticalWatermark) {
+            shedBelow = Level.WARN;
+        } else if (bufferedEvents >= highWatermark) {
+            shedBelow = shedBelow == Level.WARN ? Level.WARN : Level.INFO;
+        } else if (bufferedEvents < lowWatermark) {
+            shedBelow = null;
+        } else if (shedBelow == Level.WARN) {
+            shedBelow = Level.INFO;
+        }
+    }
+
+    boolean isShedding() {
+        return shedBelow != null;
+    }
+
+    /**
+     * @return number of dropped events per level since the start
+     */
+    Map<String, Long> getShedEvents() {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < SHED_LEVELS.length; i++) {
+            counts.put(SHED_LEVELS[i].levelStr, shedEvents.get(i));
+        }
+        return counts;
+    }
+
+    private static int indexOf(Level level) {
+        for (int i = 1; i < SHED_LEVELS.length; i++) {
+            if (level.toInt() < SHED_LEVELS[i].toInt()) {
+                return i - 1;
+            }
+        }
+        return SHED_LEVELS.length - 1;
+    }
+}
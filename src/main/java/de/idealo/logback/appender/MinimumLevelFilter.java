@@ -0,0 +1,24 @@
+package de.idealo.logback.appender;
+
+import java.util.function.Predicate;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+/**
+ * Accepts logging events with at least the given level, e.g. for the high priority lane of the writer.
+ */
+final class MinimumLevelFilter implements Predicate<DeferredProcessingAware> {
+
+    private final Level level;
+
+    MinimumLevelFilter(Level level) {
+        this.level = level;
+    }
+
+    @Override
+    public boolean test(DeferredProcessingAware event) {
+        return event instanceof ILoggingEvent && ((ILoggingEvent) event).getLevel().isGreaterOrEqual(level);
+    }
+}
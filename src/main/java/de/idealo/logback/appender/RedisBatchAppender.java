@@ -1,7 +1,22 @@
 package de.idealo.logback.appender;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import de.idealo.logback.appender.encoder.RedisJsonEncoder;
+import de.idealo.logback.appender.jedisclient.ConnectionState;
 import de.idealo.logback.appender.jedisclient.JedisPoolCreator;
 import de.idealo.logback.appender.jedisclient.JedisPoolFactory;
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
@@ -9,16 +24,22 @@ import de.idealo.logback.appender.jediswriter.AbstractBufferedJedisWriter;
 import de.idealo.logback.appender.jediswriter.BufferedJedisWriterFactory;
 import de.idealo.logback.appender.jediswriter.JedisWriterConfiguration;
 
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.spi.DeferredProcessingAware;
 
 /**
- * Logback appender that writes logging events in batches to redis.
+ * Logback appender that writes logging events in batches to redis.<br/>
+ * <br/>
+ * Appending is not synchronized, the application threads only contend for the buffer of the writer, that can be
+ * striped (see {@link #setBufferStripes(int)}). The batching settings can be changed at runtime via JMX, see
+ * {@link RedisBatchAppenderMXBean}.
  *
  * @see <a href="http://logback.qos.ch/manual/appenders.html">logback appender documentation</a>
  */
-public class RedisBatchAppender extends AppenderBase<DeferredProcessingAware> {
+public class RedisBatchAppender extends UnsynchronizedAppenderBase<DeferredProcessingAware> implements RedisBatchAppenderMXBean {
 
     private static final int DEFAULT_MAX_BATCH_MESSAGES = 1000;
     private static final int DEFAULT_MAX_BATCH_SECONDS = 5;
@@ -28,10 +49,40 @@ public class RedisBatchAppender extends AppenderBase<DeferredProcessingAware> {
     private boolean retryOnInitializeError = true;
     private int retryInitializeIntervalInSeconds = 30;
     private Encoder<DeferredProcessingAware> encoder;
-    private int maxBatchMessages = DEFAULT_MAX_BATCH_MESSAGES;
-    private int maxBatchSeconds = DEFAULT_MAX_BATCH_SECONDS;
+    private volatile int maxBatchMessages = DEFAULT_MAX_BATCH_MESSAGES;
+    private volatile int maxBatchSeconds = DEFAULT_MAX_BATCH_SECONDS;
+    private int bufferCapacity = JedisWriterConfiguration.DEFAULT_BUFFER_CAPACITY;
+    private int bufferStripes = 1;
+    private boolean mergeByTimestamp = false;
+    private int heartbeatIntervalInSeconds = 0;
+    private String priorityLevel;
+    private volatile int priorityMaxBatchMessages = 100;
+    private volatile long priorityMaxBatchMillis = 100L;
+    private int priorityBufferCapacity = JedisWriterConfiguration.DEFAULT_PRIORITY_BUFFER_CAPACITY;
+    private volatile int shedHighWatermark = 0;
+    private volatile int shedLowWatermark = -1;
+    private long dedupWindowMillis = 0L;
+    private int dedupMaxFingerprints = 1000;
+    private String tenantMdcKey;
+    private double tenantEventsPerSecond = 1000d;
+    private int tenantBurst = -1;
+    private int tenantOverQuotaSampling = 0;
+    private int tenantMaxTracked = 10_000;
+    private String volumeKey;
+    private String volumeDimension = "%logger:%level";
+    private int volumeIntervalSeconds = 60;
+    private int volumeExpireSeconds = 0;
+    private int shutdownTimeoutSeconds = 10;
     private RedisConnectionConfig connectionConfig;
+    private final List<RedisConnectionConfig> sinks = new ArrayList<>();
+    private String deferredProcessingFields = DeferredProcessingPreparer.AUTO;
     private AbstractBufferedJedisWriter writer;
+    private DeferredProcessingPreparer deferredProcessingPreparer;
+    private volatile LoadShedder loadShedder;
+    private boolean registerMBean = false;
+    private ObjectName mbeanName;
+    private RepeatSuppressor repeatSuppressor;
+    private TenantQuota tenantQuota;
 
     public RedisBatchAppender() {
         this(new JedisPoolFactory(new JedisPoolCreator()));
@@ -44,47 +95,497 @@ public class RedisBatchAppender extends AppenderBase<DeferredProcessingAware> {
 
     @Override
     public void start() {
+        KeyPatternResolver keyResolver = null;
+        if (connectionConfig != null && connectionConfig.getKeyPattern() != null) {
+            keyResolver = new KeyPatternResolver(getContext(), connectionConfig.getKeyPattern(), connectionConfig.getKey());
+            if (!keyResolver.isValid()) {
+                addError("invalid key pattern '" + connectionConfig.getKeyPattern() + "'");
+                return;
+            }
+        }
+        for (RedisConnectionConfig sink : sinks) {
+            if (sink.getKeyPattern() != null) {
+                addError("key pattern '" + sink.getKeyPattern() + "' of sink '" + sink.getKey() + "' is not supported, only the connectionConfig resolves keys per event");
+                return;
+            }
+        }
+        MinimumLevelFilter priorityFilter = null;
+        if (priorityLevel != null) {
+            final Level level = Level.toLevel(priorityLevel, null);
+            if (level == null) {
+                addError("invalid priority level '" + priorityLevel + "'");
+                return;
+            }
+            priorityFilter = new MinimumLevelFilter(level);
+        }
+        try {
+            loadShedder = createLoadShedder(shedHighWatermark, shedLowWatermark);
+        } catch (IllegalArgumentException ex) {
+            addError(ex.getMessage());
+            return;
+        }
+        if (dedupWindowMillis > 0) {
+            repeatSuppressor = new RepeatSuppressor(dedupWindowMillis, dedupMaxFingerprints);
+        }
+        if (tenantMdcKey != null) {
+            if (tenantEventsPerSecond <= 0) {
+                addError("tenantEventsPerSecond must be positive, but is " + tenantEventsPerSecond);
+                return;
+            }
+            final int burst = tenantBurst < 1 ? (int) Math.ceil(tenantEventsPerSecond) : tenantBurst;
+            tenantQuota = new TenantQuota(tenantMdcKey, tenantEventsPerSecond, burst, tenantOverQuotaSampling, tenantMaxTracked);
+        }
+        KeyPatternResolver volumeDimensionResolver = null;
+        if (volumeKey != null) {
+            if (volumeIntervalSeconds <= 0) {
+                addError("volumeIntervalSeconds must be positive, but is " + volumeIntervalSeconds);
+                return;
+            }
+            volumeDimensionResolver = new KeyPatternResolver(getContext(), volumeDimension, "unknown");
+            if (!volumeDimensionResolver.isValid()) {
+                addError("invalid volume dimension '" + volumeDimension + "'");
+                return;
+            }
+        }
+        try {
+            deferredProcessingPreparer = DeferredProcessingPreparer.create(encoder, deferredProcessingFields,
+                    keyResolver == null ? null : keyResolver.getLayout());
+        } catch (IllegalArgumentException ex) {
+            addError(ex.getMessage());
+            return;
+        }
         super.start();
         final JedisWriterConfiguration configuration = JedisWriterConfiguration.builder()
                 .connectionConfig(connectionConfig)
+                .keyResolver(keyResolver)
+                .sinks(sinks)
+                .volumeKey(volumeKey)
+                .volumeDimension(volumeDimensionResolver)
+                .volumeIntervalMillis(TimeUnit.SECONDS.toMillis(volumeIntervalSeconds))
+                .volumeExpireSeconds(volumeExpireSeconds)
                 .encoder(encoder)
+                .unsentEventListener(createUnsentEventListener(encoder))
                 .maxBufferedMessages(maxBatchMessages)
                 .flushBufferIntervalMillis(TimeUnit.SECONDS.toMillis(maxBatchSeconds))
+                .bufferCapacity(bufferCapacity)
+                .bufferStripes(bufferStripes)
+                .mergeOrder(mergeByTimestamp ? Comparator.comparingLong(RedisBatchAppender::getTimeStamp) : null)
+                .priorityFilter(priorityFilter)
+                .maxPriorityBufferedMessages(priorityMaxBatchMessages)
+                .flushPriorityBufferIntervalMillis(priorityMaxBatchMillis)
+                .priorityBufferCapacity(priorityBufferCapacity)
+                .heartbeatIntervalMillis(TimeUnit.SECONDS.toMillis(heartbeatIntervalInSeconds))
                 .maxInitializeTries(retryOnInitializeError ? Integer.MAX_VALUE : 1)
                 .retryInitializeIntervalMillis(TimeUnit.SECONDS.toMillis(retryInitializeIntervalInSeconds))
+                .shutdownTimeoutMillis(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds))
                 .build();
         writer = jedisWriterFactory.createJedisWriter(configuration);
+        if (registerMBean) {
+            registerMBean();
+        }
+    }
+
+    /**
+     * @return listener that lets the json encoder send the stack traces of unsent events in full again, null for other encoders
+     */
+    private static Consumer<DeferredProcessingAware> createUnsentEventListener(Encoder<?> encoder) {
+        if (!(encoder instanceof RedisJsonEncoder)) {
+            return null;
+        }
+        final RedisJsonEncoder jsonEncoder = (RedisJsonEncoder) encoder;
+        return event -> {
+            if (event instanceof ILoggingEvent) {
+                jsonEncoder.forgetStackTrace((ILoggingEvent) event);
+            }
+        };
+    }
+
+    /**
+     * @return shedder with the given watermarks, that continues the counters of the current one. null if disabled.
+     */
+    private LoadShedder createLoadShedder(int highWatermark, int configuredLowWatermark) {
+        if (highWatermark <= 0) {
+            return null;
+        }
+        final int lowWatermark = configuredLowWatermark < 0 ? highWatermark / 2 : configuredLowWatermark;
+        if (highWatermark >= bufferCapacity || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("shed watermarks must be 0 <= low <= high < bufferCapacity, but are " + lowWatermark + " and " + highWatermark);
+        }
+        final LoadShedder current = loadShedder;
+        return current == null ? new LoadShedder(highWatermark, lowWatermark, bufferCapacity)
+                : current.withWatermarks(highWatermark, lowWatermark, bufferCapacity);
+    }
+
+    private void registerMBean() {
+        try {
+            mbeanName = new ObjectName("de.idealo.logback.appender:type=RedisBatchAppender,context="
+                    + ObjectName.quote(String.valueOf(getContext().getName())) + ",name=" + ObjectName.quote(String.valueOf(getName())));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, mbeanName);
+        } catch (JMException ex) {
+            // the appender works without it
+            addWarn("unable to register MBean " + mbeanName, ex);
+            mbeanName = null;
+        }
+    }
+
+    private void unregisterMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException ex) {
+            addWarn("unable to unregister MBean " + mbeanName, ex);
+        }
+        mbeanName = null;
     }
 
     @Override
     protected void append(DeferredProcessingAware event) {
+        final LoadShedder shedder = loadShedder;
+        if (shedder != null && shed(shedder, event)) {
+            return;
+        }
+        if (tenantQuota != null && tenantQuota.exceeded(event)) {
+            return;
+        }
+        if (repeatSuppressor != null && repeatSuppressor.suppress(event, this::appendToWriter)) {
+            return;
+        }
+        appendToWriter(event);
+    }
+
+    private void appendToWriter(DeferredProcessingAware event) {
+        // events are encoded on the flushing thread, caller thread dependent fields must be captured here
+        deferredProcessingPreparer.accept(event);
         writer.append(event);
     }
 
     @Override
     public void stop() {
         super.stop();
+        if (mbeanName != null) {
+            unregisterMBean();
+        }
         if (writer != null) {
+            if (repeatSuppressor != null) {
+                repeatSuppressor.flush(this::appendToWriter);
+            }
             writer.close();
         }
     }
 
+    /**
+     * requests to send all events appended before this call, without waiting for a full batch or the flush interval.
+     *
+     * @return completes when the events were written to redis, exceptionally if some of them were dropped
+     * @see AbstractBufferedJedisWriter#flush()
+     */
+    public CompletableFuture<Void> flush() {
+        final AbstractBufferedJedisWriter startedWriter = writer;
+        return startedWriter == null ? CompletableFuture.completedFuture(null) : startedWriter.flush();
+    }
+
+    /**
+     * waits until all events appended before this call were written to redis.
+     *
+     * @return false, if the events were not written within the timeout or some of them were dropped
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            flush().get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * events that are no logging events have no timestamp, they are sorted before the logging events of the batch.
+     */
+    private static long getTimeStamp(DeferredProcessingAware event) {
+        return event instanceof ILoggingEvent ? ((ILoggingEvent) event).getTimeStamp() : Long.MIN_VALUE;
+    }
+
+    private boolean shed(LoadShedder shedder, DeferredProcessingAware event) {
+        final boolean wasShedding = shedder.isShedding();
+        final boolean shed = shedder.shed(event, writer.getBufferedEvents());
+        if (wasShedding != shedder.isShedding()) {
+            if (wasShedding) {
+                addInfo("stopped dropping low level events, dropped so far: " + shedder.getShedEvents());
+            } else {
+                addWarn("buffer is filled above " + shedHighWatermark + " events, dropping low level events");
+            }
+        }
+        return shed;
+    }
+
+    /**
+     * @return number of events per level dropped by load shedding, empty if load shedding is disabled
+     */
+    @Override
+    public Map<String, Long> getShedEvents() {
+        final LoadShedder shedder = loadShedder;
+        return shedder == null ? Collections.emptyMap() : shedder.getShedEvents();
+    }
+
+    /**
+     * @return number of events over the quota per tracked tenant, empty if tenant quotas are disabled
+     */
+    @Override
+    public Map<String, Long> getTenantExceededEvents() {
+        return tenantQuota == null ? Collections.emptyMap() : tenantQuota.getExceededEvents();
+    }
+
+    /**
+     * @return state of the redis connection, the initial connection is established in the background
+     */
+    @Override
+    public ConnectionState getConnectionState() {
+        return writer == null ? ConnectionState.DISCONNECTED : writer.getConnectionState();
+    }
+
+    /**
+     * @return number of events waiting in the buffer of the writer, without the high priority lane
+     */
+    @Override
+    public int getBufferedEvents() {
+        return writer == null ? 0 : writer.getBufferedEvents();
+    }
+
     public void setEncoder(Encoder<DeferredProcessingAware> encoder) {
         this.encoder = encoder;
     }
 
+    @Override
+    public int getMaxBatchMessages() {
+        return maxBatchMessages;
+    }
+
+    @Override
     public void setMaxBatchMessages(int maxBatchMessages) {
+        if (isStarted()) {
+            requirePositive("maxBatchMessages", maxBatchMessages);
+            writer.setMaxBufferedMessages(maxBatchMessages);
+        }
         this.maxBatchMessages = maxBatchMessages;
     }
 
+    @Override
+    public int getMaxBatchSeconds() {
+        return maxBatchSeconds;
+    }
+
+    @Override
     public void setMaxBatchSeconds(int maxBatchSeconds) {
+        if (isStarted()) {
+            requirePositive("maxBatchSeconds", maxBatchSeconds);
+            writer.setFlushBufferIntervalMillis(TimeUnit.SECONDS.toMillis(maxBatchSeconds));
+        }
         this.maxBatchSeconds = maxBatchSeconds;
     }
 
+    /**
+     * settings changed via JMX are validated at once, settings of the configuration when the appender is started.
+     */
+    private static void requirePositive(String name, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive, but is " + value);
+        }
+    }
+
+    private static void requireNonNegative(String name, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative, but is " + value);
+        }
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * number of buffers the application threads append to, rounded up to a power of two. more stripes reduce the
+     * contention of many logging threads, the bufferCapacity is divided between them.
+     */
+    public void setBufferStripes(int bufferStripes) {
+        this.bufferStripes = bufferStripes;
+    }
+
+    /**
+     * orders the events of the buffer stripes by timestamp in each batch, otherwise they are grouped by stripe.
+     */
+    public void setMergeByTimestamp(boolean mergeByTimestamp) {
+        this.mergeByTimestamp = mergeByTimestamp;
+    }
+
+    public void setHeartbeatIntervalInSeconds(int heartbeatIntervalInSeconds) {
+        this.heartbeatIntervalInSeconds = heartbeatIntervalInSeconds;
+    }
+
+    /**
+     * events with at least this level (e.g. ERROR) are buffered and sent in their own lane, disabled if null.
+     */
+    public void setPriorityLevel(String priorityLevel) {
+        this.priorityLevel = priorityLevel;
+    }
+
+    @Override
+    public int getPriorityMaxBatchMessages() {
+        return priorityMaxBatchMessages;
+    }
+
+    @Override
+    public void setPriorityMaxBatchMessages(int priorityMaxBatchMessages) {
+        if (isStarted()) {
+            requirePositive("priorityMaxBatchMessages", priorityMaxBatchMessages);
+            writer.setMaxPriorityBufferedMessages(priorityMaxBatchMessages);
+        }
+        this.priorityMaxBatchMessages = priorityMaxBatchMessages;
+    }
+
+    @Override
+    public long getPriorityMaxBatchMillis() {
+        return priorityMaxBatchMillis;
+    }
+
+    @Override
+    public void setPriorityMaxBatchMillis(long priorityMaxBatchMillis) {
+        if (isStarted()) {
+            // 0 sends each event on append
+            requireNonNegative("priorityMaxBatchMillis", priorityMaxBatchMillis);
+            writer.setFlushPriorityBufferIntervalMillis(priorityMaxBatchMillis);
+        }
+        this.priorityMaxBatchMillis = priorityMaxBatchMillis;
+    }
+
+    public void setPriorityBufferCapacity(int priorityBufferCapacity) {
+        this.priorityBufferCapacity = priorityBufferCapacity;
+    }
+
+    /**
+     * buffered events above which low level events are dropped, disabled if not positive.
+     */
+    @Override
+    public void setShedHighWatermark(int shedHighWatermark) {
+        if (isStarted()) {
+            loadShedder = createLoadShedder(shedHighWatermark, shedLowWatermark);
+        }
+        this.shedHighWatermark = shedHighWatermark;
+    }
+
+    @Override
+    public int getShedHighWatermark() {
+        return shedHighWatermark;
+    }
+
+    /**
+     * buffered events below which all events are kept again, half of the high watermark by default.
+     */
+    @Override
+    public void setShedLowWatermark(int shedLowWatermark) {
+        if (isStarted()) {
+            loadShedder = createLoadShedder(shedHighWatermark, shedLowWatermark);
+        }
+        this.shedLowWatermark = shedLowWatermark;
+    }
+
+    /**
+     * @return configured low watermark, -1 for half of the high watermark
+     */
+    @Override
+    public int getShedLowWatermark() {
+        return shedLowWatermark;
+    }
+
+    /**
+     * registers the appender as MBean {@code de.idealo.logback.appender:type=RedisBatchAppender,context=...,name=...}
+     * on start, see {@link RedisBatchAppenderMXBean}.
+     */
+    public void setRegisterMBean(boolean registerMBean) {
+        this.registerMBean = registerMBean;
+    }
+
+    /**
+     * window in which repetitions of an event (same logger, level, message template and throwable type) are only
+     * counted and reported by one summary event, disabled if not positive.
+     */
+    public void setDedupWindowMillis(long dedupWindowMillis) {
+        this.dedupWindowMillis = dedupWindowMillis;
+    }
+
+    public void setDedupMaxFingerprints(int dedupMaxFingerprints) {
+        this.dedupMaxFingerprints = dedupMaxFingerprints;
+    }
+
+    /**
+     * MDC field that identifies the tenant of an event for the quotas, disabled if null.
+     */
+    public void setTenantMdcKey(String tenantMdcKey) {
+        this.tenantMdcKey = tenantMdcKey;
+    }
+
+    public void setTenantEventsPerSecond(double tenantEventsPerSecond) {
+        this.tenantEventsPerSecond = tenantEventsPerSecond;
+    }
+
+    /**
+     * events a tenant may log at once, the events per second by default.
+     */
+    public void setTenantBurst(int tenantBurst) {
+        this.tenantBurst = tenantBurst;
+    }
+
+    /**
+     * keeps every n-th event over the quota of a tenant, drops all of them if not positive.
+     */
+    public void setTenantOverQuotaSampling(int tenantOverQuotaSampling) {
+        this.tenantOverQuotaSampling = tenantOverQuotaSampling;
+    }
+
+    public void setTenantMaxTracked(int tenantMaxTracked) {
+        this.tenantMaxTracked = tenantMaxTracked;
+    }
+
+    /**
+     * prefix of the hashes that count the events per {@link #setVolumeDimension(String) dimension} and interval, e.g.
+     * {@code logs:volume} counts into {@code logs:volume:202409011230}. disabled if null.
+     */
+    public void setVolumeKey(String volumeKey) {
+        this.volumeKey = volumeKey;
+    }
+
+    /**
+     * logback pattern of the hash field an event is counted in, {@code %logger:%level} by default.
+     */
+    public void setVolumeDimension(String volumeDimension) {
+        this.volumeDimension = volumeDimension;
+    }
+
+    public void setVolumeIntervalSeconds(int volumeIntervalSeconds) {
+        this.volumeIntervalSeconds = volumeIntervalSeconds;
+    }
+
+    /**
+     * expiry of the volume hashes, they do not expire if not positive.
+     */
+    public void setVolumeExpireSeconds(int volumeExpireSeconds) {
+        this.volumeExpireSeconds = volumeExpireSeconds;
+    }
+
+    public void setShutdownTimeoutSeconds(int shutdownTimeoutSeconds) {
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+    }
+
     public void setConnectionConfig(RedisConnectionConfig connectionConfig) {
         this.connectionConfig = connectionConfig;
     }
 
+    /**
+     * adds a further destination (e.g. PUBLISH for a live tail next to the RPUSH of the connectionConfig), that
+     * receives the same encoded events with its own connection.
+     */
+    public void addSink(RedisConnectionConfig sink) {
+        sinks.add(sink);
+    }
+
     public void setRetryOnInitializeError(boolean retryOnInitializeError) {
         this.retryOnInitializeError = retryOnInitializeError;
     }
@@ -92,4 +593,8 @@ public class RedisBatchAppender extends AppenderBase<DeferredProcessingAware> {
     public void setRetryInitializeIntervalInSeconds(int retryInitializeIntervalInSeconds) {
         this.retryInitializeIntervalInSeconds = retryInitializeIntervalInSeconds;
     }
+
+    public void setDeferredProcessingFields(String deferredProcessingFields) {
+        this.deferredProcessingFields = deferredProcessingFields;
+    }
 }
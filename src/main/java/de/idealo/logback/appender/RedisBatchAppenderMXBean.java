@@ -0,0 +1,48 @@
+package de.idealo.logback.appender;
+
+import java.util.Map;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+
+/**
+ * Management interface of {@link RedisBatchAppender}, registered if {@link RedisBatchAppender#setRegisterMBean(boolean)
+ * registerMBean} is enabled. The batching and load shedding settings can be changed while the appender is running,
+ * without recreating the writer and its buffer. Invalid values are rejected with an {@link IllegalArgumentException}.
+ */
+public interface RedisBatchAppenderMXBean {
+
+    int getMaxBatchMessages();
+
+    void setMaxBatchMessages(int maxBatchMessages);
+
+    int getMaxBatchSeconds();
+
+    void setMaxBatchSeconds(int maxBatchSeconds);
+
+    int getPriorityMaxBatchMessages();
+
+    void setPriorityMaxBatchMessages(int priorityMaxBatchMessages);
+
+    long getPriorityMaxBatchMillis();
+
+    void setPriorityMaxBatchMillis(long priorityMaxBatchMillis);
+
+    int getShedHighWatermark();
+
+    /**
+     * enables load shedding with a positive value or disables it. the low watermark must not be above the new value.
+     */
+    void setShedHighWatermark(int shedHighWatermark);
+
+    int getShedLowWatermark();
+
+    void setShedLowWatermark(int shedLowWatermark);
+
+    int getBufferedEvents();
+
+    ConnectionState getConnectionState();
+
+    Map<String, Long> getShedEvents();
+
+    Map<String, Long> getTenantExceededEvents();
+}
@@ -0,0 +1,158 @@
+package de.idealo.logback.appender;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.CallerData;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+/**
+ * Suppresses repeated events during log storms, before any work is spent on them.<br/>
+ * <br/>
+ * Events are fingerprinted by logger, level, message template and throwable type. The first event of a fingerprint
+ * is kept and starts a window, identical events within the window are only counted. When the window is over, a
+ * summary event "repeated N times" is emitted with the next event of the fingerprint or, at the latest, with the next
+ * event after another window (or on stop).<br/>
+ * <br/>
+ * At most maxFingerprints windows are tracked, events of further fingerprints are kept. Thread safe.
+ */
+final class RepeatSuppressor {
+
+    private final long windowMillis;
+    private final int maxFingerprints;
+    private final Map<Fingerprint, Window> windows = new ConcurrentHashMap<>();
+    private volatile long nextSweepEpochMillis;
+
+    RepeatSuppressor(long windowMillis, int maxFingerprints) {
+        this.windowMillis = windowMillis;
+        this.maxFingerprints = maxFingerprints;
+        nextSweepEpochMillis = System.currentTimeMillis() + windowMillis;
+    }
+
+    /**
+     * @param summaries
+     *            receives the summaries of the windows that ended
+     * @return true, if the event is a repetition that must be dropped
+     */
+    boolean suppress(DeferredProcessingAware event, Consumer<ILoggingEvent> summaries) {
+        final long now = System.currentTimeMillis();
+        if (now >= nextSweepEpochMillis) {
+            nextSweepEpochMillis = now + windowMillis;
+            sweep(now, summaries);
+        }
+        if (!(event instanceof ILoggingEvent)) {
+            return false;
+        }
+        final ILoggingEvent loggingEvent = (ILoggingEvent) event;
+        final Fingerprint fingerprint = new Fingerprint(loggingEvent);
+        final Window window = windows.get(fingerprint);
+        if (window != null) {
+            if (now < window.endEpochMillis) {
+                window.repeats.incrementAndGet();
+                return true;
+            }
+            end(fingerprint, window, summaries);
+        }
+        if (windows.size() < maxFingerprints) {
+            windows.putIfAbsent(fingerprint, new Window(loggingEvent, now + windowMillis));
+        }
+        return false;
+    }
+
+    /**
+     * emits the summaries of all windows, e.g. on stop.
+     */
+    void flush(Consumer<ILoggingEvent> summaries) {
+        sweep(Long.MAX_VALUE, summaries);
+    }
+
+    private void sweep(long now, Consumer<ILoggingEvent> summaries) {
+        for (Map.Entry<Fingerprint, Window> entry : windows.entrySet()) {
+            if (now >= entry.getValue().endEpochMillis) {
+                end(entry.getKey(), entry.getValue(), summaries);
+            }
+        }
+    }
+
+    private void end(Fingerprint fingerprint, Window window, Consumer<ILoggingEvent> summaries) {
+        if (windows.remove(fingerprint, window) && window.repeats.get() > 0) {
+            summaries.accept(window.createSummary(fingerprint, windowMillis));
+        }
+    }
+
+    private static final class Fingerprint {
+        private final String loggerName;
+        private final Level level;
+        private final String message;
+        private final String throwableClassName;
+
+        private Fingerprint(ILoggingEvent event) {
+            loggerName = event.getLoggerName();
+            level = event.getLevel();
+            message = event.getMessage();
+            final IThrowableProxy throwableProxy = event.getThrowableProxy();
+            throwableClassName = throwableProxy == null ? null : throwableProxy.getClassName();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            final Fingerprint fingerprint = (Fingerprint) other;
+            return level == fingerprint.level
+                    && Objects.equals(loggerName, fingerprint.loggerName)
+                    && Objects.equals(message, fingerprint.message)
+                    && Objects.equals(throwableClassName, fingerprint.throwableClassName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(loggerName, level, message, throwableClassName);
+        }
+    }
+
+    private static final class Window {
+        private final long endEpochMillis;
+        private final String threadName;
+        private final LoggerContextVO loggerContext;
+        private final AtomicInteger repeats = new AtomicInteger();
+
+        private Window(ILoggingEvent firstEvent, long endEpochMillis) {
+            this.endEpochMillis = endEpochMillis;
+            threadName = firstEvent.getThreadName();
+            loggerContext = firstEvent.getLoggerContextVO();
+        }
+
+        private ILoggingEvent createSummary(Fingerprint fingerprint, long windowMillis) {
+            final StringBuilder message = new StringBuilder("repeated ").append(repeats.get())
+                    .append(" times within ").append(windowMillis).append(" ms: ").append(fingerprint.message);
+            if (fingerprint.throwableClassName != null) {
+                message.append(" (").append(fingerprint.throwableClassName).append(')');
+            }
+            final LoggingEvent summary = new LoggingEvent();
+            summary.setLoggerName(fingerprint.loggerName);
+            summary.setLevel(fingerprint.level);
+            summary.setMessage(message.toString());
+            summary.setThreadName(threadName);
+            summary.setLoggerContextRemoteView(loggerContext);
+            summary.setTimeStamp(System.currentTimeMillis());
+            summary.setMDCPropertyMap(Collections.emptyMap());
+            // there is no caller, the summary is not logged via a logger
+            summary.setCallerData(CallerData.EMPTY_CALLER_DATA_ARRAY);
+            return summary;
+        }
+    }
+}
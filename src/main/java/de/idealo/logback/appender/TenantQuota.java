@@ -0,0 +1,122 @@
+package de.idealo.logback.appender;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+/**
+ * Limits the events per tenant with token buckets, so a single noisy tenant cannot use up the buffer and the
+ * bandwidth to redis. The tenant of an event is the value of a MDC field, events without it are not limited.<br/>
+ * <br/>
+ * Each tenant may log ratePerSecond events on average with bursts of up to burst events. Events over the quota are
+ * dropped, or every n-th of them is kept if sampling is configured. The buckets are spread over stripes with their
+ * own lock, each stripe keeps its least recently used tenants only, so the memory is bounded for high-cardinality
+ * values. Thread safe.
+ */
+final class TenantQuota {
+
+    private static final int STRIPES = 16;
+
+    private final String mdcKey;
+    private final double tokensPerNano;
+    private final double burst;
+    private final int sampling;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param sampling
+     *            keeps every n-th event over the quota, drops all of them if not positive
+     */
+    TenantQuota(String mdcKey, double ratePerSecond, int burst, int sampling, int maxTenants) {
+        this.mdcKey = mdcKey;
+        tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.sampling = sampling;
+        final int maxTenantsPerStripe = Math.max(1, maxTenants / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxTenantsPerStripe);
+        }
+    }
+
+    /**
+     * @return true, if the event exceeds the quota of its tenant and must be dropped
+     */
+    boolean exceeded(DeferredProcessingAware event) {
+        if (!(event instanceof ILoggingEvent)) {
+            return false;
+        }
+        final Map<String, String> mdc = ((ILoggingEvent) event).getMDCPropertyMap();
+        final String tenant = mdc == null ? null : mdc.get(mdcKey);
+        if (tenant == null) {
+            return false;
+        }
+        final Stripe stripe = stripes[(tenant.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        synchronized (stripe) {
+            TokenBucket bucket = stripe.buckets.get(tenant);
+            final long now = System.nanoTime();
+            if (bucket == null) {
+                bucket = new TokenBucket(burst, now);
+                stripe.buckets.put(tenant, bucket);
+            }
+            return !bucket.tryAcquire(now);
+        }
+    }
+
+    /**
+     * @return events over the quota per tracked tenant, including the kept samples
+     */
+    Map<String, Long> getExceededEvents() {
+        final Map<String, Long> counts = new TreeMap<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.buckets.forEach((tenant, bucket) -> {
+                    if (bucket.exceededEvents > 0) {
+                        counts.put(tenant, bucket.exceededEvents);
+                    }
+                });
+            }
+        }
+        return counts;
+    }
+
+    private final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos;
+        private long exceededEvents;
+
+        private TokenBucket(double tokens, long nowNanos) {
+            this.tokens = tokens;
+            lastRefillNanos = nowNanos;
+        }
+
+        private boolean tryAcquire(long nowNanos) {
+            tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+            if (tokens >= 1d) {
+                tokens -= 1d;
+                return true;
+            }
+            exceededEvents++;
+            return sampling > 0 && exceededEvents % sampling == 0;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<String, TokenBucket> buckets;
+
+        private Stripe(int maxTenants) {
+            buckets = new LinkedHashMap<String, TokenBucket>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                    return size() > maxTenants;
+                }
+            };
+        }
+    }
+}
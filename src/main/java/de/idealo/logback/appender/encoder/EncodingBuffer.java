@@ -0,0 +1,182 @@
+package de.idealo.logback.appender.encoder;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that is reused for encoding one event after another.<br/>
+ * <br/>
+ * Unlike {@link java.io.ByteArrayOutputStream} it is not synchronized and gives access to the backing array,
+ * so encoded bytes can be handed over without intermediate copies. Instances are not thread safe.
+ */
+public final class EncodingBuffer {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    /** buffers grown beyond this size by a single huge event are shrunk again on reset */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private byte[] bytes;
+    private int size;
+
+    public EncodingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EncodingBuffer(int initialCapacity) {
+        bytes = new byte[initialCapacity];
+    }
+
+    public void reset() {
+        size = 0;
+        if (bytes.length > MAX_RETAINED_CAPACITY) {
+            bytes = new byte[DEFAULT_CAPACITY];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return backing array, valid bytes range from 0 to {@link #size()} (exclusive)
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    public void write(int b) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) b;
+    }
+
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    public void write(byte[] b, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(b, offset, bytes, size, length);
+        size += length;
+    }
+
+    public void writeDecimal(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            write('-');
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long limit = 10; digits < 19 && remaining >= limit; limit *= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        size += digits;
+    }
+
+    /**
+     * writes the given string, which must only contain ASCII characters.
+     */
+    public void writeAscii(String value) {
+        final int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * writes the given string UTF-8 encoded and escaped as content of a JSON string (without quotes).
+     */
+    public void writeJsonEscaped(String value) {
+        final int length = value.length();
+        // worst case of a single char: 6 bytes for control characters (backslash u 4 hex digits)
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                if (size == bytes.length) {
+                    ensureCapacity(length - i);
+                }
+                bytes[size++] = (byte) c;
+            } else {
+                i = writeEscapedChar(value, i, c);
+            }
+        }
+    }
+
+    private int writeEscapedChar(String value, int index, char c) {
+        ensureCapacity(6);
+        if (c < 0x80) {
+            bytes[size++] = '\\';
+            switch (c) {
+                case '"':
+                case '\\':
+                    bytes[size++] = (byte) c;
+                    break;
+                case '\n':
+                    bytes[size++] = 'n';
+                    break;
+                case '\r':
+                    bytes[size++] = 'r';
+                    break;
+                case '\t':
+                    bytes[size++] = 't';
+                    break;
+                case '\b':
+                    bytes[size++] = 'b';
+                    break;
+                case '\f':
+                    bytes[size++] = 'f';
+                    break;
+                default:
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX_DIGITS[c >> 4];
+                    bytes[size++] = HEX_DIGITS[c & 0xF];
+            }
+            return index;
+        }
+        if (c < 0x800) {
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            return index;
+        }
+        if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+            final int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            return index + 1;
+        }
+        if (Character.isSurrogate(c)) {
+            // unpaired surrogate, replaced like String.getBytes(UTF_8) does
+            bytes[size++] = '?';
+            return index;
+        }
+        bytes[size++] = (byte) (0xE0 | (c >> 12));
+        bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        return index;
+    }
+
+    private void ensureCapacity(int additionalBytes) {
+        final int required = size + additionalBytes;
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length << 1));
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package de.idealo.logback.appender.encoder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+/**
+ * Allocation-light JSON encoder for logging events.<br/>
+ * <br/>
+ * Writes the JSON document byte by byte into a reused {@link EncodingBuffer} instead of building it with a
+ * generator. Field names and static fields (e.g. app name and host) are escaped once on start.
+ * The created document has the following structure:
+ *
+ * <pre>
+ * {"timestamp":"2015-09-15T14:35:19.256+0200","level":"INFO","logger":"LoggingTest","thread":"main",
+ *  "message":"hello","mdcKey1":"value1","stack_trace":"...","app":"myApp","host":"myHost"}
+ * </pre>
+ *
+ * With stack trace deduplication, events carry the hash of their stack trace as {@code stack_hash} and only the first
+ * event of a stack trace within the window carries the {@code stack_trace} itself.
+ */
+public class RedisJsonEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final DateTimeFormatter SECONDS_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final DateTimeFormatter OFFSET_FORMATTER = DateTimeFormatter.ofPattern("xx");
+
+    private static final byte[] TIMESTAMP_START = ascii("{\"timestamp\":\"");
+    private static final byte[] LEVEL_START = ascii("\",\"level\":\"");
+    private static final byte[] LOGGER_START = ascii("\",\"logger\":\"");
+    private static final byte[] THREAD_START = ascii("\",\"thread\":\"");
+    private static final byte[] MESSAGE_START = ascii("\",\"message\":\"");
+    private static final byte[] STACK_TRACE_START = ascii(",\"stack_trace\":\"");
+    private static final byte[] STACK_HASH_START = ascii(",\"stack_hash\":\"");
+    private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final byte[] FILE_START = ascii(",\"file\":\"");
+    private static final byte[] LINE_START = ascii("\",\"line\":");
+    private static final byte[] FIELD_SEPARATOR = ascii("\":\"");
+    private static final byte[] ESCAPED_NEW_LINE = ascii("\\n");
+    private static final byte[] ESCAPED_TAB = ascii("\\t");
+    private static final byte[] ESCAPED_FRAME_START = ascii("\\tat ");
+    private static final byte[] ESCAPED_COMMON_FRAMES_START = ascii("\\t... ");
+    private static final byte[] COMMON_FRAMES_END = ascii(" common frames omitted");
+    private static final String CAUSE_PREFIX = "Caused by: ";
+    private static final String SUPPRESSED_PREFIX = "Suppressed: ";
+
+    private final List<String> staticFields = new ArrayList<>();
+    private final ThreadLocal<EncodingBuffer> buffers = ThreadLocal.withInitial(EncodingBuffer::new);
+    private boolean includeMdc = true;
+    private boolean includeStackTrace = true;
+    private boolean includeCallerData = false;
+    private ZoneId timeZone = ZoneId.systemDefault();
+    private long stackTraceDedupWindowMillis = 0L;
+    private int stackTraceDedupCacheSize = 1024;
+    /**
+     * hash of the recently sent stack traces and the timestamp of the event that carried them in full, guarded by
+     * itself. marked on encode, events that are not sent unmark them with {@link #forgetStackTrace(ILoggingEvent)}.
+     */
+    private Map<Long, Long> sentStackTraces;
+
+    private byte[] staticFieldBytes = EMPTY_BYTES;
+    private volatile CachedSecond cachedSecond = new CachedSecond(Long.MIN_VALUE, EMPTY_BYTES, EMPTY_BYTES);
+
+    @Override
+    public void start() {
+        final EncodingBuffer buffer = new EncodingBuffer();
+        for (String staticField : staticFields) {
+            final int separator = staticField.indexOf('=');
+            if (separator < 1) {
+                addError("static field '" + staticField + "' must be configured as name=value");
+                return;
+            }
+            buffer.write(',');
+            buffer.write('"');
+            buffer.writeJsonEscaped(staticField.substring(0, separator).trim());
+            buffer.write(FIELD_SEPARATOR);
+            buffer.writeJsonEscaped(staticField.substring(separator + 1).trim());
+            buffer.write('"');
+        }
+        staticFieldBytes = buffer.toByteArray();
+        if (stackTraceDedupWindowMillis > 0) {
+            sentStackTraces = createLruMap(stackTraceDedupCacheSize);
+        }
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return EMPTY_BYTES;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        final EncodingBuffer buffer = buffers.get();
+        buffer.reset();
+        encode(event, buffer);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * appends the JSON document of the given event to the given buffer.
+     */
+    public void encode(ILoggingEvent event, EncodingBuffer buffer) {
+        buffer.write(TIMESTAMP_START);
+        writeTimestamp(event.getTimeStamp(), buffer);
+        buffer.write(LEVEL_START);
+        writeLevel(event.getLevel(), buffer);
+        buffer.write(LOGGER_START);
+        writeEscaped(event.getLoggerName(), buffer);
+        buffer.write(THREAD_START);
+        writeEscaped(event.getThreadName(), buffer);
+        buffer.write(MESSAGE_START);
+        writeEscaped(event.getFormattedMessage(), buffer);
+        buffer.write('"');
+        if (includeMdc) {
+            writeMdc(event.getMDCPropertyMap(), buffer);
+        }
+        if (includeCallerData) {
+            writeCallerData(event, buffer);
+        }
+        if (includeStackTrace) {
+            writeStackTrace(event.getThrowableProxy(), event.getTimeStamp(), buffer);
+        }
+        buffer.write(staticFieldBytes);
+        buffer.write('}');
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return EMPTY_BYTES;
+    }
+
+    /**
+     * adds a field with a constant value to each document.
+     *
+     * @param staticField
+     *            field in the format name=value, e.g. app=${projectName}
+     */
+    public void addStaticField(String staticField) {
+        staticFields.add(staticField);
+    }
+
+    public void setIncludeMdc(boolean includeMdc) {
+        this.includeMdc = includeMdc;
+    }
+
+    public void setIncludeStackTrace(boolean includeStackTrace) {
+        this.includeStackTrace = includeStackTrace;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+
+    public boolean isIncludeMdc() {
+        return includeMdc;
+    }
+
+    public boolean isIncludeCallerData() {
+        return includeCallerData;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = ZoneId.of(timeZone);
+    }
+
+    /**
+     * sends each distinct stack trace in full only once per window, all events get its hash as field stack_hash.
+     * disabled if not positive.
+     */
+    public void setStackTraceDedupWindowMillis(long stackTraceDedupWindowMillis) {
+        this.stackTraceDedupWindowMillis = stackTraceDedupWindowMillis;
+    }
+
+    /**
+     * maximum number of stack trace hashes remembered for the deduplication, the least recently seen are evicted.
+     */
+    public void setStackTraceDedupCacheSize(int stackTraceDedupCacheSize) {
+        this.stackTraceDedupCacheSize = stackTraceDedupCacheSize;
+    }
+
+    private void writeTimestamp(long epochMillis, EncodingBuffer buffer) {
+        final long epochSecond = Math.floorDiv(epochMillis, 1000L);
+        CachedSecond second = cachedSecond;
+        if (second.epochSecond != epochSecond) {
+            second = new CachedSecond(epochSecond, timeZone);
+            cachedSecond = second;
+        }
+        buffer.write(second.dateTime);
+        final int millis = (int) Math.floorMod(epochMillis, 1000L);
+        buffer.write('.');
+        buffer.write('0' + millis / 100);
+        buffer.write('0' + millis / 10 % 10);
+        buffer.write('0' + millis % 10);
+        buffer.write(second.offset);
+    }
+
+    private static void writeLevel(Level level, EncodingBuffer buffer) {
+        if (level != null) {
+            buffer.writeAscii(level.levelStr);
+        }
+    }
+
+    private static void writeMdc(Map<String, String> mdc, EncodingBuffer buffer) {
+        if (mdc == null || mdc.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : mdc.entrySet()) {
+            buffer.write(',');
+            buffer.write('"');
+            writeEscaped(entry.getKey(), buffer);
+            buffer.write(FIELD_SEPARATOR);
+            writeEscaped(entry.getValue(), buffer);
+            buffer.write('"');
+        }
+    }
+
+    private static void writeCallerData(ILoggingEvent event, EncodingBuffer buffer) {
+        final StackTraceElement[] callerData = event.getCallerData();
+        if (callerData == null || callerData.length == 0) {
+            return;
+        }
+        buffer.write(FILE_START);
+        writeEscaped(callerData[0].getFileName(), buffer);
+        buffer.write(LINE_START);
+        buffer.writeDecimal(callerData[0].getLineNumber());
+    }
+
+    private void writeStackTrace(IThrowableProxy throwableProxy, long epochMillis, EncodingBuffer buffer) {
+        if (throwableProxy == null) {
+            return;
+        }
+        if (sentStackTraces != null) {
+            final long hash = hash(throwableProxy, FNV_OFFSET_BASIS);
+            buffer.write(STACK_HASH_START);
+            writeHex(hash, buffer);
+            buffer.write('"');
+            if (!isFirstInWindow(hash, epochMillis)) {
+                return;
+            }
+        }
+        buffer.write(STACK_TRACE_START);
+        writeThrowable(throwableProxy, null, 0, buffer);
+        buffer.write('"');
+    }
+
+    /**
+     * writes the throwable in the format of {@link ch.qos.logback.classic.spi.ThrowableProxyUtil#asString(IThrowableProxy)},
+     * without building intermediate strings.
+     */
+    private static void writeThrowable(IThrowableProxy throwableProxy, String prefix, int indent, EncodingBuffer buffer) {
+        writeIndent(indent, buffer);
+        if (prefix != null) {
+            buffer.writeAscii(prefix);
+        }
+        writeEscaped(throwableProxy.getClassName(), buffer);
+        if (throwableProxy.getMessage() != null) {
+            buffer.write(':');
+            buffer.write(' ');
+            buffer.writeJsonEscaped(throwableProxy.getMessage());
+        }
+        buffer.write(ESCAPED_NEW_LINE);
+
+        final StackTraceElementProxy[] frames = throwableProxy.getStackTraceElementProxyArray();
+        final int commonFrames = throwableProxy.getCommonFrames();
+        for (int i = 0; i < frames.length - commonFrames; i++) {
+            writeIndent(indent, buffer);
+            buffer.write(ESCAPED_FRAME_START);
+            writeStackTraceElement(frames[i].getStackTraceElement(), buffer);
+            buffer.write(ESCAPED_NEW_LINE);
+        }
+        if (commonFrames > 0) {
+            writeIndent(indent, buffer);
+            buffer.write(ESCAPED_COMMON_FRAMES_START);
+            buffer.writeDecimal(commonFrames);
+            buffer.write(COMMON_FRAMES_END);
+            buffer.write(ESCAPED_NEW_LINE);
+        }
+        final IThrowableProxy[] suppressed = throwableProxy.getSuppressed();
+        if (suppressed != null) {
+            for (IThrowableProxy suppressedProxy : suppressed) {
+                writeThrowable(suppressedProxy, SUPPRESSED_PREFIX, indent + 1, buffer);
+            }
+        }
+        if (throwableProxy.getCause() != null) {
+            writeThrowable(throwableProxy.getCause(), CAUSE_PREFIX, indent, buffer);
+        }
+    }
+
+    /**
+     * forgets that the stack trace of the given event was sent in full, if this event carried it. called for events
+     * that were encoded but not sent, so the next occurrence of the stack trace is sent in full again.
+     */
+    public void forgetStackTrace(ILoggingEvent event) {
+        if (sentStackTraces == null || !includeStackTrace || event.getThrowableProxy() == null) {
+            return;
+        }
+        final long hash = hash(event.getThrowableProxy(), FNV_OFFSET_BASIS);
+        synchronized (sentStackTraces) {
+            sentStackTraces.remove(hash, event.getTimeStamp());
+        }
+    }
+
+    private boolean isFirstInWindow(long hash, long epochMillis) {
+        synchronized (sentStackTraces) {
+            final Long sentEpochMillis = sentStackTraces.get(hash);
+            if (sentEpochMillis != null && epochMillis - sentEpochMillis < stackTraceDedupWindowMillis) {
+                return false;
+            }
+            sentStackTraces.put(hash, epochMillis);
+            return true;
+        }
+    }
+
+    /**
+     * FNV-1a hash of the class names and frames of the throwable, its suppressed throwables and causes. messages are
+     * left out, they often contain values that differ between occurrences of the same stack trace.
+     */
+    private static long hash(IThrowableProxy throwableProxy, long hash) {
+        long result = hash(throwableProxy.getClassName(), hash);
+        for (StackTraceElementProxy frame : throwableProxy.getStackTraceElementProxyArray()) {
+            final StackTraceElement element = frame.getStackTraceElement();
+            result = hash(element.getClassName(), result);
+            result = hash(element.getMethodName(), result);
+            result = hash(element.getFileName(), result);
+            result = hash(element.getLineNumber(), result);
+        }
+        final IThrowableProxy[] suppressed = throwableProxy.getSuppressed();
+        if (suppressed != null) {
+            for (IThrowableProxy suppressedProxy : suppressed) {
+                result = hash(suppressedProxy, hash('S', result));
+            }
+        }
+        if (throwableProxy.getCause() != null) {
+            result = hash(throwableProxy.getCause(), hash('C', result));
+        }
+        return result;
+    }
+
+    private static long hash(String value, long hash) {
+        long result = hash;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                result = hash(value.charAt(i), result);
+            }
+        }
+        // separates the values
+        return hash(-1, result);
+    }
+
+    private static long hash(int value, long hash) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private static void writeHex(long value, EncodingBuffer buffer) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            buffer.write(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private static <K, V> Map<K, V> createLruMap(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static void writeIndent(int indent, EncodingBuffer buffer) {
+        for (int i = 0; i < indent; i++) {
+            buffer.write(ESCAPED_TAB);
+        }
+    }
+
+    private static void writeStackTraceElement(StackTraceElement element, EncodingBuffer buffer) {
+        writeEscaped(element.getClassName(), buffer);
+        buffer.write('.');
+        writeEscaped(element.getMethodName(), buffer);
+        buffer.write('(');
+        if (element.isNativeMethod()) {
+            buffer.writeAscii("Native Method");
+        } else if (element.getFileName() == null) {
+            buffer.writeAscii("Unknown Source");
+        } else {
+            writeEscaped(element.getFileName(), buffer);
+            if (element.getLineNumber() >= 0) {
+                buffer.write(':');
+                buffer.writeDecimal(element.getLineNumber());
+            }
+        }
+        buffer.write(')');
+    }
+
+    private static void writeEscaped(String value, EncodingBuffer buffer) {
+        if (value != null) {
+            buffer.writeJsonEscaped(value);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * formatted date, time and zone offset of one second. events of the same second only format the millis.
+     */
+    private static final class CachedSecond {
+        private final long epochSecond;
+        private final byte[] dateTime;
+        private final byte[] offset;
+
+        private CachedSecond(long epochSecond, byte[] dateTime, byte[] offset) {
+            this.epochSecond = epochSecond;
+            this.dateTime = dateTime;
+            this.offset = offset;
+        }
+
+        private CachedSecond(long epochSecond, ZoneId timeZone) {
+            this.epochSecond = epochSecond;
+            final ZonedDateTime dateTime = Instant.ofEpochSecond(epochSecond).atZone(timeZone);
+            this.dateTime = ascii(SECONDS_FORMATTER.format(dateTime));
+            this.offset = ascii(OFFSET_FORMATTER.format(dateTime));
+        }
+    }
+}
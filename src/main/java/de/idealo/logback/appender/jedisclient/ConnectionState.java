@@ -0,0 +1,12 @@
+package de.idealo.logback.appender.jedisclient;
+
+/**
+ * State of the connection to redis.
+ */
+public enum ConnectionState {
+    /** initial connection is being established in the background */
+    CONNECTING,
+    CONNECTED,
+    /** no connection, next send attempt will try to reconnect */
+    DISCONNECTED;
+}
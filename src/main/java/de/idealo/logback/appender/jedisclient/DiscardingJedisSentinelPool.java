@@ -0,0 +1,25 @@
+package de.idealo.logback.appender.jedisclient;
+
+import java.util.Set;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
+
+/**
+ * Sentinel pool that can destroy a borrowed connection, e.g. the connection to the previous master after a failover.
+ * Given back with {@link Jedis#close()}, a connection that is not broken is kept in the pool and may be handed out
+ * again without validation (testOnBorrow=false).
+ */
+class DiscardingJedisSentinelPool extends JedisSentinelPool {
+
+    DiscardingJedisSentinelPool(String masterName, Set<String> sentinels, GenericObjectPoolConfig poolConfig,
+            int connectionTimeout, int soTimeout, String password, int database) {
+        super(masterName, sentinels, poolConfig, connectionTimeout, soTimeout, password, database);
+    }
+
+    void discard(Jedis jedis) {
+        returnBrokenResource(jedis);
+    }
+}
@@ -4,15 +4,13 @@ import static de.idealo.logback.appender.utils.ThreadUtils.createThread;
 
 import java.io.Closeable;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import redis.clients.jedis.Client;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisException;
@@ -26,19 +24,29 @@ public class JedisClient implements Closeable {
     private final JedisClientProvider clientProvider;
     private final long retryInitializeIntervalMillis;
 
-    private Jedis client;
+    private volatile Jedis client;
     private volatile boolean initializing;
     private volatile boolean shutdown;
+    /** counts the connections taken from the pool, see {@link #useClient(Jedis)} */
+    private volatile long connectionGeneration;
 
+    /**
+     * creates the client and establishes the initial connection in the background,
+     * so that an unreachable redis does not block the caller (e.g. application startup).
+     */
     public JedisClient(JedisClientProvider clientProvider, int maxInitTries, long retryInitializeIntervalMillis) {
+        if (maxInitTries < 1) {
+            throw new IllegalArgumentException("max tries must be greater than 0");
+        }
         this.clientProvider = clientProvider;
         log = LoggerFactory.getLogger(getClass());
         this.retryInitializeIntervalMillis = retryInitializeIntervalMillis;
         initializing = true;
-        initClient(maxInitTries);
+        createThread(() -> initClient(maxInitTries), getClass().getSimpleName(), true).start();
     }
 
     public Optional<Pipeline> getPipeline() {
+        switchToCurrentMaster();
         return Optional.ofNullable(client).map(Jedis::pipelined);
     }
 
@@ -54,7 +62,41 @@ public class JedisClient implements Closeable {
             log.warn("Intentionally ignoring exception while closing the jedis client."
                     + " The client will be re-initialized afterwards.", ex);
         }
-        initClient(1);
+        useClient(getValidClientOrNull());
+    }
+
+    /**
+     * @return number of the current connection, that changes whenever another connection is used
+     */
+    public long getConnectionGeneration() {
+        return connectionGeneration;
+    }
+
+    /**
+     * sends a PING on the current connection.
+     *
+     * @return false, if there is no connection or it is broken
+     */
+    public boolean ping() {
+        switchToCurrentMaster();
+        final Jedis jedis = client;
+        if (jedis == null) {
+            return false;
+        }
+        try {
+            jedis.ping();
+            return true;
+        } catch (JedisException ex) {
+            log.debug("ping failed", ex);
+            return false;
+        }
+    }
+
+    public ConnectionState getConnectionState() {
+        if (initializing) {
+            return ConnectionState.CONNECTING;
+        }
+        return client == null ? ConnectionState.DISCONNECTED : ConnectionState.CONNECTED;
     }
 
     @Override
@@ -67,36 +109,76 @@ public class JedisClient implements Closeable {
         return initializing;
     }
 
+    @SuppressWarnings("squid:S2142") // rule=Interrupted exceptions should not be ignored: the thread ends anyway
     private void initClient(int maxTries) {
-        if (maxTries < 1) {
-            throw new IllegalArgumentException("max tries must be greater than 0");
-        }
-        client = getValidClientOrNull();
-        if (client != null || maxTries == 1) {
+        try {
+            for (int currentTry = 1; !shutdown; currentTry++) {
+                if (currentTry > 1) {
+                    log.info("connect retry {}", currentTry);
+                }
+                useClient(getValidClientOrNull());
+                if (client != null || currentTry >= maxTries) {
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(retryInitializeIntervalMillis);
+            }
+        } catch (InterruptedException ex) {
+            log.trace("connecting interrupted", ex);
+        } finally {
             initializing = false;
+        }
+    }
+
+    /**
+     * replaces the connection, if a sentinel failover moved the master to another node.<br/>
+     * <br/>
+     * without this check the old connection would be used until a write fails, which takes at least one socket
+     * timeout, or forever, because the old master accepts the connection as replica. the stale connection is
+     * destroyed instead of being given back, otherwise the pool could hand it out again without validation
+     * (testOnBorrow=false). the new connection must point at the current master, else there is no connection until
+     * the next reconnect.
+     */
+    private void switchToCurrentMaster() {
+        final Jedis jedis = client;
+        if (jedis == null || initializing) {
+            return;
+        }
+        final HostAndPort master = clientProvider.getCurrentMaster().orElse(null);
+        if (master == null || isConnectedTo(jedis, master)) {
             return;
         }
-        final ScheduledExecutorService retryExecutorService = Executors.newScheduledThreadPool(1,
-                runnable -> createThread(runnable, getClass().getSimpleName(), true));
-
-        final AtomicInteger currentTry = new AtomicInteger(1);
-        retryExecutorService.scheduleAtFixedRate(
-                () -> retryConnect(retryExecutorService, currentTry, maxTries),
-                retryInitializeIntervalMillis,
-                retryInitializeIntervalMillis,
-                TimeUnit.MILLISECONDS);
+        final Client connection = jedis.getClient();
+        log.info("redis master switched from {}:{} to {}, reconnecting", connection.getHost(), connection.getPort(), master);
+        try {
+            jedis.disconnect();
+        } catch (JedisException ex) {
+            log.debug("unable to disconnect from previous master", ex);
+        }
+        clientProvider.discardJedisClient(jedis);
+        Jedis newClient = getValidClientOrNull();
+        if (newClient != null && !isConnectedTo(newClient, master)) {
+            log.warn("new connection does not point at master {}, discarding it", master);
+            clientProvider.discardJedisClient(newClient);
+            newClient = null;
+        }
+        useClient(newClient);
     }
 
-    private void retryConnect(ExecutorService retryExecutorService, AtomicInteger currentTry, int maxTries) {
-        currentTry.incrementAndGet();
-        log.info("connect retry {}", currentTry);
-        client = getValidClientOrNull();
-        if (client != null || currentTry.get() >= maxTries || shutdown) {
-            initializing = false;
-            retryExecutorService.shutdown();
+    /**
+     * the writers reset the state of the previous connection, e.g. loaded scripts, if the generation changed
+     */
+    private void useClient(Jedis jedis) {
+        client = jedis;
+        if (jedis != null) {
+            connectionGeneration++;
         }
     }
 
+    private static boolean isConnectedTo(Jedis jedis, HostAndPort master) {
+        final Client connection = jedis.getClient();
+        return connection == null || (master.getHost().equals(connection.getHost()) && master.getPort() == connection.getPort());
+    }
+
     private Jedis getValidClientOrNull() {
         return clientProvider.getJedisClient().orElse(null);
     }
@@ -6,7 +6,9 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
 import redis.clients.jedis.util.Pool;
 
 public class JedisClientProvider implements Closeable {
@@ -37,6 +39,39 @@ public class JedisClientProvider implements Closeable {
         }
     }
 
+    /**
+     * provides the current master of a sentinel installation. jedis' sentinel pool subscribes to the
+     * {@code +switch-master} events of all sentinels and updates the master as soon as a failover is announced.
+     *
+     * @return current master, empty if the pool is not created yet or does not connect via sentinels
+     */
+    public synchronized Optional<HostAndPort> getCurrentMaster() {
+        if (pool instanceof JedisSentinelPool) {
+            return Optional.ofNullable(((JedisSentinelPool) pool).getCurrentHostMaster());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * destroys the given connection instead of giving it back to the pool, so that it is not handed out again.
+     */
+    public void discardJedisClient(Jedis jedis) {
+        final Pool<Jedis> currentPool = getCreatedPool();
+        try {
+            if (currentPool instanceof DiscardingJedisSentinelPool) {
+                ((DiscardingJedisSentinelPool) currentPool).discard(jedis);
+            } else {
+                jedis.close();
+            }
+        } catch (Exception ex) {
+            log.debug("unable to discard jedis client", ex);
+        }
+    }
+
+    private synchronized Pool<Jedis> getCreatedPool() {
+        return pool;
+    }
+
     private synchronized Pool<Jedis> getPool() {
         if (pool == null) {
             pool = poolFactory.createPool(connectionConfig);
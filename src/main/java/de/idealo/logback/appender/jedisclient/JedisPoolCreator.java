@@ -17,22 +17,37 @@ import redis.clients.jedis.JedisSentinelPool;
  */
 public class JedisPoolCreator {
 
-    private final GenericObjectPoolConfig objectPoolConfig;
-
-    public JedisPoolCreator() {
-        objectPoolConfig = new GenericObjectPoolConfig();
-        objectPoolConfig.setTestOnBorrow(true);
-    }
-
     public JedisPool createJedisPool(RedisConnectionConfig connectionConfig) {
-        return new JedisPool(objectPoolConfig, connectionConfig.getHost(), connectionConfig.getPort(),
-                connectionConfig.getTimeout(), connectionConfig.getPassword(), connectionConfig.getDatabase(), connectionConfig.isSsl());
+        if (connectionConfig.getUnixSocket() != null) {
+            // jedis connections always open tcp sockets
+            throw new IllegalArgumentException("unix socket '" + connectionConfig.getUnixSocket() + "' is only supported by transport "
+                    + RedisConnectionConfig.Transport.NIO);
+        }
+        return new JedisPool(createPoolConfig(connectionConfig), connectionConfig.getHost(), connectionConfig.getPort(),
+                connectionConfig.getConnectionTimeout(), connectionConfig.getSoTimeout(), connectionConfig.getPassword(),
+                connectionConfig.getDatabase(), null, connectionConfig.isSsl());
     }
 
     public JedisSentinelPool createJedisSentinelPool(RedisConnectionConfig connectionConfig) {
-        return new JedisSentinelPool(connectionConfig.getSentinelMasterName(),
+        return new DiscardingJedisSentinelPool(connectionConfig.getSentinelMasterName(),
                 getSentinels(connectionConfig.getSentinels()),
-                objectPoolConfig, connectionConfig.getTimeout(), connectionConfig.getPassword(), connectionConfig.getDatabase());
+                createPoolConfig(connectionConfig), connectionConfig.getConnectionTimeout(), connectionConfig.getSoTimeout(),
+                connectionConfig.getPassword(), connectionConfig.getDatabase());
+    }
+
+    static GenericObjectPoolConfig createPoolConfig(RedisConnectionConfig connectionConfig) {
+        final GenericObjectPoolConfig objectPoolConfig = new GenericObjectPoolConfig();
+        objectPoolConfig.setMaxTotal(connectionConfig.getMaxTotal());
+        objectPoolConfig.setMaxIdle(connectionConfig.getMaxIdle());
+        objectPoolConfig.setMinIdle(connectionConfig.getMinIdle());
+        objectPoolConfig.setMaxWaitMillis(connectionConfig.getMaxWaitMillis());
+        objectPoolConfig.setTestOnBorrow(connectionConfig.isTestOnBorrow());
+        objectPoolConfig.setTestWhileIdle(connectionConfig.isTestWhileIdle());
+        objectPoolConfig.setTimeBetweenEvictionRunsMillis(connectionConfig.getHealthCheckIntervalMillis());
+        objectPoolConfig.setMinEvictableIdleTimeMillis(connectionConfig.getMinEvictableIdleTimeMillis());
+        // each health check run validates all idle connections
+        objectPoolConfig.setNumTestsPerEvictionRun(-1);
+        return objectPoolConfig;
     }
 
     static Set<String> getSentinels(String sentinelsAsString) {
@@ -1,5 +1,8 @@
 package de.idealo.logback.appender.jedisclient;
 
+import org.apache.commons.pool2.impl.BaseObjectPoolConfig;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
 import lombok.Getter;
 import lombok.Setter;
 import redis.clients.jedis.Protocol;
@@ -12,16 +15,71 @@ import redis.clients.jedis.Protocol;
 public class RedisConnectionConfig {
     private RedisScheme scheme;
     private Method method = Method.RPUSH;
+    private Transport transport = Transport.JEDIS;
+    /**
+     * sends batches after CLIENT REPLY OFF without reading replies: at-most-once delivery, events may get lost
+     * unnoticed. requires transport NIO and redis 3.2+
+     */
+    private boolean unacknowledged = false;
+    /** maximum time between two confirmation probes in unacknowledged mode, 0 confirms each batch */
+    private long confirmationIntervalMillis = 1_000L;
+    /**
+     * shares the connection with all writers of the same endpoint (all connection settings equal) that opt in, their
+     * batches are sent one after the other on it
+     */
+    private boolean shareConnection = false;
     private String host = Protocol.DEFAULT_HOST;
     private int port = Protocol.DEFAULT_PORT;
+    /** path of the unix domain socket of a local redis, replaces host and port. requires transport NIO and java 16+ */
+    private String unixSocket = null;
     private String key = null;
+    /**
+     * logback pattern that resolves the key per event (e.g. logs:%level or audit:%X{tenant}), key is the default for
+     * events with an empty key
+     */
+    private String keyPattern = null;
+    /** method EVALSHA: keeps only the newest entries of the list, unbounded if not positive */
+    private int maxLength = 0;
+    /**
+     * expiry of the list in seconds, disabled if not positive. method EVALSHA sets it with each batch, method RPUSH
+     * once per key and connection, e.g. per time bucket of the keyPattern
+     */
+    private int expireSeconds = 0;
+    /** method EVALSHA: hash that counts the ingested events and batches, disabled if null */
+    private String counterKey = null;
     private int timeout = Protocol.DEFAULT_TIMEOUT;
+    /** timeout for establishing connections in millis, defaults to timeout */
+    private int connectionTimeout = -1;
+    /** socket read timeout in millis, defaults to timeout */
+    private int soTimeout = -1;
     private String password = null;
     private int database = Protocol.DEFAULT_DATABASE;
     private boolean ssl = false;
     private String sentinels;
     private String sentinelMasterName;
 
+    // connection pool, see GenericObjectPoolConfig
+    private int maxTotal = GenericObjectPoolConfig.DEFAULT_MAX_TOTAL;
+    private int maxIdle = GenericObjectPoolConfig.DEFAULT_MAX_IDLE;
+    private int minIdle = GenericObjectPoolConfig.DEFAULT_MIN_IDLE;
+    private long maxWaitMillis = BaseObjectPoolConfig.DEFAULT_MAX_WAIT_MILLIS;
+    /** validates connections with a PING, when they are taken from the pool */
+    private boolean testOnBorrow = true;
+    /** validates idle connections with a PING in the background health check */
+    private boolean testWhileIdle = BaseObjectPoolConfig.DEFAULT_TEST_WHILE_IDLE;
+    /** interval of the background health check (idle validation and eviction), disabled by default (not positive) */
+    private long healthCheckIntervalMillis = BaseObjectPoolConfig.DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
+    /** idle time after which connections are evicted by the health check */
+    private long minEvictableIdleTimeMillis = BaseObjectPoolConfig.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
+
+    public int getConnectionTimeout() {
+        return connectionTimeout < 0 ? timeout : connectionTimeout;
+    }
+
+    public int getSoTimeout() {
+        return soTimeout < 0 ? timeout : soTimeout;
+    }
+
     public enum RedisScheme {
         NODE,
         SENTINEL;
@@ -29,6 +87,15 @@ public class RedisConnectionConfig {
 
     public enum Method {
         RPUSH,
-        PUBLISH;
+        PUBLISH,
+        /** RPUSH, LTRIM, EXPIRE and counters in one lua script call, see {@link de.idealo.logback.appender.jediswriter.BufferedJedisScriptPusher} */
+        EVALSHA;
+    }
+
+    public enum Transport {
+        /** pooled jedis connections (default) */
+        JEDIS,
+        /** RESP over a non-blocking socket channel, see {@link de.idealo.logback.appender.transport.nio.NioTransport} */
+        NIO;
     }
 }
@@ -3,27 +3,45 @@ package de.idealo.logback.appender.jediswriter;
 import static de.idealo.logback.appender.utils.ThreadUtils.createThread;
 
 import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
 
 import ch.qos.logback.core.spi.DeferredProcessingAware;
-import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.SafeEncoder;
 
 public abstract class AbstractBufferedJedisWriter implements Closeable {
 
     private static final int SEND_EVENT_TRIES = 2;
+    /** interval in which pending flush barriers and close check, whether the initial connection is established */
+    private static final long BARRIER_RETRY_MILLIS = 50L;
+    /** minimum interval of the warnings about events dropped because the buffer was full */
+    private static final long DROPPED_EVENTS_WARNING_INTERVAL_MILLIS = 10_000L;
 
     /*
      * logger must not be static: logback may not be initialized, when class is loaded.
@@ -31,33 +49,98 @@ public abstract class AbstractBufferedJedisWriter implements Closeable {
      */
     private final Logger log;
 
-    private final Function<DeferredProcessingAware, String> messageCreator;
+    private final Function<DeferredProcessingAware, byte[]> messageCreator;
+    private final Function<DeferredProcessingAware, String> keyResolver;
+    /** notified of the events that were encoded but not sent, null if not needed */
+    private final Consumer<DeferredProcessingAware> unsentEventListener;
     private final String redisKey;
-    private final int maxBufferItems;
-    private final long flushBufferIntervalMillis;
+    private final byte[] redisKeyBytes;
+    private volatile int maxBufferItems;
+    private volatile long flushBufferIntervalMillis;
+    private final long heartbeatIntervalMillis;
 
-    private final JedisClient client;
-    private final LinkedBlockingQueue<DeferredProcessingAware> bufferedEvents;
+    private final Predicate<DeferredProcessingAware> priorityFilter;
+    private volatile int maxPriorityBufferItems;
+    private volatile long flushPriorityBufferIntervalMillis;
+
+    private final RedisTransport transport;
+    /** lock of the transport, shared with the other writers of a shared transport */
+    private final Object transportLock;
+    /** connection the state of the subclasses belongs to, guarded by the lock of the transport */
+    private long connectionGeneration;
+    private final EventBuffer<DeferredProcessingAware> bufferedEvents;
+    /** lane of the events accepted by the priority filter with its own capacity, null if disabled */
+    private final LinkedBlockingQueue<DeferredProcessingAware> priorityEvents;
     private final Thread bufferFlusher;
+    /**
+     * values of the current batch per destination key, guarded by the lock of the transport. the values of the fixed
+     * key are reused for all batches, the destinations of resolved keys are removed after each batch.
+     */
+    private final Map<String, Destination> destinations = new LinkedHashMap<>();
+    /** counts the appended events per dimension, null if disabled */
+    private final VolumeCounter volumeCounter;
+    /** further destinations that receive the same encoded events, see {@link #addSink(AbstractBufferedJedisWriter)} */
+    private final List<AbstractBufferedJedisWriter> sinks = new CopyOnWriteArrayList<>();
+    /** batches encoded by the writer this writer is a sink of, sent by the flushing thread of this writer */
+    private final BlockingQueue<EncodedBatch> forwardedBatches;
     private final AtomicLong lastFlushEpochMillis;
+    private final AtomicLong lastPriorityFlushEpochMillis;
     private final AtomicInteger flusherThreadActions = new AtomicInteger(0);
+    /** notified when the batching settings change or a flush is requested, so the flusher does not sleep for the interval */
+    private final Object flusherWakeUp = new Object();
+    /** flushes requested by {@link #flush()}, completed by the flushing thread */
+    private final Queue<CompletableFuture<Void>> pendingBarriers = new ConcurrentLinkedQueue<>();
+    /**
+     * batches drained but not sent yet, they complete with true if they were sent. drained and registered under the
+     * drain lock, so a flush barrier knows all batches drained before its own batch.
+     */
+    private final Set<CompletableFuture<Boolean>> inFlightBatches = ConcurrentHashMap.newKeySet();
+    private final Object drainLock = new Object();
+    /** closed on shutdown, close awaits the offers in progress before the buffers are drained */
+    private final StripedGate offerGate = new StripedGate();
+    /** events dropped because the buffer was full or the writer was closed, since the last warning */
+    private final AtomicLong unreportedDroppedEvents = new AtomicLong();
+    private final AtomicLong lastDroppedEventsWarningEpochMillis = new AtomicLong();
+    private final long shutdownTimeoutMillis;
+    /** set on close, if events were dropped or abandoned. flush barriers of the closed writer fail then. */
+    private volatile boolean eventsAbandoned;
+    private volatile boolean closed;
+    /** last successful send or heartbeat attempt */
+    private volatile long lastRoundTripEpochMillis;
+    private volatile long lastHeartbeatRoundTripMicros = -1L;
     private volatile boolean shutdown;
 
-    AbstractBufferedJedisWriter(JedisClient client,
-            Function<DeferredProcessingAware, String> messageCreator,
+    AbstractBufferedJedisWriter(RedisTransport transport,
+            Function<DeferredProcessingAware, byte[]> messageCreator,
             String redisKey,
-            int maxBufferItems,
-            long flushBufferIntervalMillis) {
+            JedisWriterConfiguration configuration) {
         log = LoggerFactory.getLogger(getClass());
 
         this.messageCreator = messageCreator;
-        this.client = client;
+        keyResolver = configuration.getKeyResolver();
+        unsentEventListener = configuration.getUnsentEventListener();
+        this.transport = transport;
+        transportLock = transport.getLock();
         this.redisKey = redisKey;
-        this.maxBufferItems = maxBufferItems;
-        this.flushBufferIntervalMillis = flushBufferIntervalMillis;
+        redisKeyBytes = redisKey == null ? null : SafeEncoder.encode(redisKey);
+        maxBufferItems = configuration.getMaxBufferedMessages();
+        // as many batches as fit into the buffer of the forwarding writer
+        forwardedBatches = new LinkedBlockingQueue<>(Math.max(1, configuration.getBufferCapacity() / Math.max(1, maxBufferItems)));
+        shutdownTimeoutMillis = configuration.getShutdownTimeoutMillis();
+        flushBufferIntervalMillis = configuration.getFlushBufferIntervalMillis();
+        heartbeatIntervalMillis = configuration.getHeartbeatIntervalMillis();
         shutdown = false;
-        bufferedEvents = new LinkedBlockingQueue<>();
+        bufferedEvents = new EventBuffer<>(configuration.getBufferCapacity(), configuration.getBufferStripes(), configuration.getMergeOrder());
+        priorityFilter = configuration.getPriorityFilter();
+        maxPriorityBufferItems = configuration.getMaxPriorityBufferedMessages();
+        flushPriorityBufferIntervalMillis = configuration.getFlushPriorityBufferIntervalMillis();
+        priorityEvents = priorityFilter == null ? null : new LinkedBlockingQueue<>(configuration.getPriorityBufferCapacity());
+        volumeCounter = configuration.getVolumeDimension() == null || configuration.getVolumeKey() == null ? null
+                : new VolumeCounter(configuration.getVolumeDimension(), configuration.getVolumeKey(),
+                        configuration.getVolumeIntervalMillis(), configuration.getVolumeExpireSeconds());
         lastFlushEpochMillis = new AtomicLong(System.currentTimeMillis());
+        lastPriorityFlushEpochMillis = new AtomicLong(lastFlushEpochMillis.get());
+        lastRoundTripEpochMillis = lastFlushEpochMillis.get();
 
         bufferFlusher = createThread(this::flushPeriodically, getClass().getSimpleName(), true);
         bufferFlusher.start();
@@ -67,69 +150,537 @@ public abstract class AbstractBufferedJedisWriter implements Closeable {
         return redisKey;
     }
 
+    byte[] getRedisKeyBytes() {
+        return redisKeyBytes;
+    }
+
+    /**
+     * adds a writer that receives each batch of this writer as well. the events are encoded once by this writer and
+     * handed to the bounded queue of the sink, its flushing thread sends them with its own transport and handles
+     * failures on its own. copies that cannot be sent or do not fit into the queue are dropped with a warning, a slow
+     * or failing sink does not delay this writer and the other sinks. the sink is closed together with this writer.
+     */
+    void addSink(AbstractBufferedJedisWriter sink) {
+        sinks.add(sink);
+    }
+
+    List<AbstractBufferedJedisWriter> getSinks() {
+        return sinks;
+    }
+
+    /**
+     * changes the batch size of the running writer, the buffered events are kept.
+     */
+    public void setMaxBufferedMessages(int maxBufferedMessages) {
+        maxBufferItems = maxBufferedMessages;
+        wakeUpFlusher();
+    }
+
+    /**
+     * changes the maximum delay of a batch of the running writer, the next batch is already sent with the new interval.
+     */
+    public void setFlushBufferIntervalMillis(long flushBufferIntervalMillis) {
+        this.flushBufferIntervalMillis = flushBufferIntervalMillis;
+        wakeUpFlusher();
+    }
+
+    /**
+     * changes the batch size of the high priority lane, without effect if the lane is disabled.
+     */
+    public void setMaxPriorityBufferedMessages(int maxPriorityBufferedMessages) {
+        maxPriorityBufferItems = maxPriorityBufferedMessages;
+        wakeUpFlusher();
+    }
+
+    /**
+     * changes the maximum delay of high priority events, without effect if the lane is disabled.
+     */
+    public void setFlushPriorityBufferIntervalMillis(long flushPriorityBufferIntervalMillis) {
+        this.flushPriorityBufferIntervalMillis = flushPriorityBufferIntervalMillis;
+        wakeUpFlusher();
+    }
+
+    /**
+     * the flusher is not interrupted: an interrupt during a send would close the channel of the nio transport.
+     */
+    private void wakeUpFlusher() {
+        synchronized (flusherWakeUp) {
+            flusherWakeUp.notifyAll();
+        }
+    }
+
+    /**
+     * @return state of the connection of this writer, sinks are not considered
+     */
+    public ConnectionState getConnectionState() {
+        return transport.getConnectionState();
+    }
+
+    /**
+     * @return number of events waiting in the regular buffer, without the high priority lane
+     */
+    public int getBufferedEvents() {
+        return bufferedEvents.size();
+    }
+
+    /**
+     * @return round trip time of the last successful heartbeat in microseconds, -1 if there was none
+     */
+    public long getLastHeartbeatRoundTripMicros() {
+        return lastHeartbeatRoundTripMicros;
+    }
+
     public void append(DeferredProcessingAware event) {
-        if (event != null && !bufferedEvents.offer(event)) {
-            final String encodedEvent = messageCreator.apply(event);
-            log.warn("unable to add event {} to buffer", encodedEvent);
+        final boolean priority = event != null && priorityEvents != null && priorityFilter.test(event);
+        if (event != null && !offer(event, priority)) {
+            countDroppedEvent();
         }
-        if (maxBatchSizeReached() || maxBatchWaitTimeReached()) {
+        if (priority) {
+            if (priorityEvents.size() >= maxPriorityBufferItems || maxPriorityBatchWaitTimeReached()) {
+                flushPriorityBuffer();
+            }
+        } else if (maxBatchSizeReached() || maxBatchWaitTimeReached()) {
             flushBuffer();
         }
     }
 
+    /**
+     * high priority events use their own lane, so they are neither delayed by a full batch of other events nor
+     * dropped because the other events used up the buffer. if the lane is full, they fall back to the other buffer.
+     * the appender is not synchronized and may append while it is stopped: close waits for the offers in progress
+     * before it drains the buffers, later offers are rejected. so each event is sent, abandoned or dropped with a
+     * warning.
+     *
+     * @return false, if the event was dropped because the buffer is full or the writer is closed
+     */
+    private boolean offer(DeferredProcessingAware event, boolean priority) {
+        if (!offerGate.enter()) {
+            return false;
+        }
+        try {
+            if (volumeCounter != null) {
+                volumeCounter.count(event);
+            }
+            return priority && priorityEvents.offer(event) || bufferedEvents.offer(event);
+        } finally {
+            offerGate.exit();
+        }
+    }
+
+    /**
+     * the dropped event is not encoded on the application thread, a full buffer would slow down the application
+     * further. the number of dropped events is logged at most once per interval, the rest on close.
+     */
+    private void countDroppedEvent() {
+        unreportedDroppedEvents.incrementAndGet();
+        final long nowEpochMillis = System.currentTimeMillis();
+        final long lastWarningEpochMillis = lastDroppedEventsWarningEpochMillis.get();
+        if (nowEpochMillis - lastWarningEpochMillis >= DROPPED_EVENTS_WARNING_INTERVAL_MILLIS
+                && lastDroppedEventsWarningEpochMillis.compareAndSet(lastWarningEpochMillis, nowEpochMillis)) {
+            reportDroppedEvents();
+        }
+    }
+
+    private void reportDroppedEvents() {
+        final long droppedEvents = unreportedDroppedEvents.getAndSet(0L);
+        if (droppedEvents > 0) {
+            log.warn("buffer full or writer closed, dropped {} events since the last warning", droppedEvents);
+        }
+    }
+
     private boolean maxBatchSizeReached() {
-        return bufferedEvents.size() >= maxBufferItems;
+        return bufferedEvents.holds(maxBufferItems);
     }
 
     private boolean maxBatchWaitTimeReached() {
         return lastFlushEpochMillis.get() + flushBufferIntervalMillis <= System.currentTimeMillis();
     }
 
-    private void flushBuffer() {
+    private boolean maxPriorityBatchWaitTimeReached() {
+        return lastPriorityFlushEpochMillis.get() + flushPriorityBufferIntervalMillis <= System.currentTimeMillis();
+    }
+
+    /**
+     * sends the buffered events of both lanes, high priority events first.
+     *
+     * @return completes with true, if the events were sent. null, if they were kept buffered.
+     */
+    private CompletableFuture<Boolean> flushBuffer(boolean awaitEarlierBatches) {
         try {
-            final List<DeferredProcessingAware> toPush = new ArrayList<>(bufferedEvents.size());
-            bufferedEvents.drainTo(toPush);
-            final String[] values = toPush.stream().map(messageCreator).toArray(String[]::new);
-            for (int i = 1; i <= SEND_EVENT_TRIES; i++) {
-                if (sendValuesToRedis(values)) {
-                    return;
-                }
+            if (!shutdown && transport.getConnectionState() == ConnectionState.CONNECTING) {
+                // keeps the events buffered until the initial connection is established
+                return null;
             }
-            log.warn("unable to send events to redis: {}", Arrays.asList(values));
+            return sendBatch(new ArrayList<>(bufferedEvents.size()), toPush -> {
+                if (priorityEvents != null) {
+                    priorityEvents.drainTo(toPush);
+                    lastPriorityFlushEpochMillis.set(System.currentTimeMillis());
+                }
+                bufferedEvents.drainTo(toPush);
+            }, true, awaitEarlierBatches);
         } finally {
             lastFlushEpochMillis.set(System.currentTimeMillis());
         }
     }
 
-    private boolean sendValuesToRedis(String... values) {
-        if (values.length == 0) {
+    private void flushBuffer() {
+        flushBuffer(false);
+    }
+
+    /**
+     * sends only the high priority events, without waiting for a batch of the other events.
+     */
+    private void flushPriorityBuffer() {
+        try {
+            if (!shutdown && transport.getConnectionState() == ConnectionState.CONNECTING) {
+                return;
+            }
+            sendBatch(new ArrayList<>(priorityEvents.size()), priorityEvents::drainTo, false, false);
+        } finally {
+            lastPriorityFlushEpochMillis.set(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * drains the events with the given drainer into the given list and sends them.
+     *
+     * @param withVolumes
+     *            sends ended volume buckets, even if no events were drained
+     * @param awaitEarlierBatches
+     *            the result also waits for the batches drained before this one, that are still sent by other threads
+     * @return completes with true, if this batch (and the earlier batches) were sent
+     */
+    private CompletableFuture<Boolean> sendBatch(List<DeferredProcessingAware> toPush, Consumer<List<DeferredProcessingAware>> drainer,
+            boolean withVolumes, boolean awaitEarlierBatches) {
+        final CompletableFuture<Boolean> batch = new CompletableFuture<>();
+        final List<CompletableFuture<Boolean>> awaitedBatches = new ArrayList<>();
+        synchronized (drainLock) {
+            if (awaitEarlierBatches) {
+                awaitedBatches.addAll(inFlightBatches);
+            }
+            inFlightBatches.add(batch);
+            drainer.accept(toPush);
+        }
+        awaitedBatches.add(batch);
+        boolean sent = false;
+        try {
+            sent = toPush.isEmpty() && !(withVolumes && hasVolumesToSend()) || sendEvents(toPush);
+        } finally {
+            inFlightBatches.remove(batch);
+            batch.complete(sent);
+        }
+        return allSent(awaitedBatches);
+    }
+
+    private static CompletableFuture<Boolean> allSent(List<CompletableFuture<Boolean>> batches) {
+        if (batches.size() == 1) {
+            return batches.get(0);
+        }
+        CompletableFuture<Boolean> sent = CompletableFuture.completedFuture(true);
+        for (CompletableFuture<Boolean> batch : batches) {
+            sent = sent.thenCombine(batch, Boolean::logicalAnd);
+        }
+        return sent;
+    }
+
+    /**
+     * requests to send all events appended before this call.<br/>
+     * <br/>
+     * The flushing thread sends the buffered events at once, without waiting for a full batch or the flush interval.
+     * The result completes when they and the events sent by other threads at the same time were sent, or exceptionally
+     * if some of them were dropped. While the initial connection is established, the events stay buffered and the
+     * result is not completed. Dependent actions without executor run on the thread that sent the last batch.
+     * Events sent to the sinks are not awaited.
+     */
+    public CompletableFuture<Void> flush() {
+        final CompletableFuture<Void> barrier = new CompletableFuture<>();
+        pendingBarriers.add(barrier);
+        if (closed) {
+            completeBarriersOfClosedWriter();
+        } else {
+            wakeUpFlusher();
+        }
+        return barrier;
+    }
+
+    private void flushBarriers() {
+        final List<CompletableFuture<Void>> barriers = new ArrayList<>();
+        CompletableFuture<Void> barrier;
+        while ((barrier = pendingBarriers.poll()) != null) {
+            barriers.add(barrier);
+        }
+        if (barriers.isEmpty()) {
+            return;
+        }
+        final CompletableFuture<Boolean> sent = flushBuffer(true);
+        if (sent == null) {
+            pendingBarriers.addAll(barriers);
+            return;
+        }
+        completeBarriers(barriers, sent);
+    }
+
+    /**
+     * the buffer was drained by close, the barriers wait for the batches still sent by other threads.
+     */
+    private void completeBarriersOfClosedWriter() {
+        final List<CompletableFuture<Void>> barriers = new ArrayList<>();
+        CompletableFuture<Void> barrier;
+        while ((barrier = pendingBarriers.poll()) != null) {
+            barriers.add(barrier);
+        }
+        if (barriers.isEmpty()) {
+            return;
+        }
+        final List<CompletableFuture<Boolean>> batches = new ArrayList<>(inFlightBatches);
+        batches.add(CompletableFuture.completedFuture(!eventsAbandoned));
+        completeBarriers(barriers, allSent(batches));
+    }
+
+    private static void completeBarriers(List<CompletableFuture<Void>> barriers, CompletableFuture<Boolean> sent) {
+        sent.whenComplete((allSent, ex) -> {
+            for (CompletableFuture<Void> flushed : barriers) {
+                if (Boolean.TRUE.equals(allSent)) {
+                    flushed.complete(null);
+                } else {
+                    flushed.completeExceptionally(new IllegalStateException("unable to send all events to redis", ex));
+                }
+            }
+        });
+    }
+
+    private long getBarrierWaitMillis() {
+        if (pendingBarriers.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        return transport.getConnectionState() == ConnectionState.CONNECTING ? BARRIER_RETRY_MILLIS : 0L;
+    }
+
+    /**
+     * ended volume buckets are sent with the regular flush interval, even if there are no events.
+     */
+    private boolean hasVolumesToSend() {
+        return volumeCounter != null && (shutdown || volumeCounter.hasCompletedBuckets());
+    }
+
+    /**
+     * @return true, if the events were sent by this writer. sinks are not considered.
+     */
+    private boolean sendEvents(List<DeferredProcessingAware> events) {
+        // encoded once, the sinks send the same bytes
+        final List<byte[]> values = new ArrayList<>(events.size());
+        for (DeferredProcessingAware event : events) {
+            values.add(messageCreator.apply(event));
+        }
+        if (!events.isEmpty()) {
+            // handed over first, so the sinks send in parallel to this writer
+            final EncodedBatch batch = new EncodedBatch(events, values);
+            for (AbstractBufferedJedisWriter sink : sinks) {
+                sink.forward(batch);
+            }
+        }
+        final boolean sent = send(events, values);
+        if (!sent) {
+            notifyUnsentEvents(events);
+        }
+        return sent;
+    }
+
+    private void notifyUnsentEvents(List<DeferredProcessingAware> events) {
+        if (unsentEventListener != null) {
+            events.forEach(unsentEventListener);
+        }
+    }
+
+    /**
+     * hands a batch of the writer this writer is a sink of to the flushing thread, the batch is dropped if the queue
+     * is full.
+     */
+    private void forward(EncodedBatch batch) {
+        if (forwardedBatches.offer(batch)) {
+            wakeUpFlusher();
+        } else {
+            log.warn("queue of sink {} is full, dropping {} events", redisKey, batch.events.size());
+        }
+    }
+
+    private boolean hasForwardedBatchesToSend() {
+        // kept queued until the initial connection is established, like the buffered events
+        return !forwardedBatches.isEmpty() && transport.getConnectionState() != ConnectionState.CONNECTING;
+    }
+
+    /**
+     * @return true, if the forwarded batch was sent
+     */
+    private boolean sendForwardedBatch(EncodedBatch batch) {
+        try {
+            return send(batch.events, batch.values);
+        } catch (RuntimeException ex) {
+            log.warn("unable to send events to sink {}", redisKey, ex);
+            return false;
+        }
+    }
+
+    /**
+     * sends the given encoded events with the transport of this writer, together with the ended volume buckets. a
+     * failed send is retried once after a reconnect, the events are dropped with a warning if it fails again, the
+     * volume buckets are kept for the next batch unless the failed pipeline may have applied them.
+     *
+     * @return false, if the events were dropped
+     */
+    private boolean send(List<DeferredProcessingAware> events, List<byte[]> values) {
+        final List<VolumeCounter.Bucket> volumes = volumeCounter == null ? new ArrayList<>()
+                : volumeCounter.takeCompletedBuckets(shutdown);
+        if (events.isEmpty() && volumes.isEmpty()) {
             return true;
         }
-        synchronized (client) {
+        synchronized (transportLock) {
             /*
-             * RedisBatchAppender-doc stated, that jedis client is not thread safe.
-             * logback's AppenderBase.doAppend is synchronized, so no concurrent logs can access this method,
-             * but flushing thread could be active
+             * the transports are not thread safe. RedisBatchAppender is an UnsynchronizedAppenderBase, so application
+             * threads flush full batches concurrently with each other, the flushing thread and close. the drain lock
+             * orders the batches as they are drained from the buffers, the lock of the transport (shared by the writers
+             * of a shared transport) guards the pipeline, the destinations and the state of the connection.
              */
             try {
-                final Pipeline pipeline = client.getPipeline().orElse(null);
-                if (pipeline != null) {
-                    final long start = System.currentTimeMillis();
-                    addValuesToPipeline(pipeline, values);
-                    pipeline.sync();
-                    logSendStatistics(values.length, start);
-                    return true;
+                // added in the form of the transport once, retries send the same values
+                for (int i = 0; i < events.size(); i++) {
+                    getDestination(events.get(i)).values.add(values.get(i));
+                }
+                for (int i = 1; i <= SEND_EVENT_TRIES; i++) {
+                    if (sendValuesToRedis(events.size(), volumes)) {
+                        return true;
+                    }
+                }
+                for (Destination destination : destinations.values()) {
+                    if (destination.values.size() > 0) {
+                        log.warn("unable to send events to redis: {}", destination.values.toStrings());
+                    }
+                }
+                if (!volumes.isEmpty()) {
+                    volumeCounter.restore(volumes);
+                }
+                return false;
+            } finally {
+                for (Destination destination : destinations.values()) {
+                    destination.values.clear();
+                }
+                if (keyResolver != null) {
+                    destinations.clear();
                 }
-            } catch (JedisException ex) {
-                log.info("unable to send {} events, reconnecting to redis", values.length, ex);
             }
-            client.reconnect();
-            return false;
         }
     }
 
+    private Destination getDestination(DeferredProcessingAware event) {
+        final String key = keyResolver == null ? redisKey : keyResolver.apply(event);
+        Destination destination = destinations.get(key);
+        if (destination == null) {
+            final byte[] keyBytes = keyResolver == null ? redisKeyBytes : SafeEncoder.encode(key);
+            destination = new Destination(keyBytes, transport.createBatchValues());
+            destinations.put(key, destination);
+        }
+        return destination;
+    }
+
+    private static String toString(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * sends the values of all destinations and the volume counters with one pipeline.
+     *
+     * @param volumes
+     *            cleared if the pipeline failed after the increments were added, redis may have applied them already.
+     *            they are neither sent again nor restored, so no event is counted twice.
+     */
+    private boolean sendValuesToRedis(int events, List<VolumeCounter.Bucket> volumes) {
+        boolean volumesAdded = false;
+        try {
+            final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+            if (pipeline != null) {
+                resetIfReconnected();
+                final long start = System.currentTimeMillis();
+                for (Destination destination : destinations.values()) {
+                    if (destination.values.size() > 0) {
+                        addValuesToPipeline(pipeline, destination.key, destination.values);
+                    }
+                }
+                if (!volumes.isEmpty()) {
+                    volumesAdded = true;
+                    volumeCounter.addToPipeline(pipeline, volumes);
+                }
+                pipeline.sync();
+                lastRoundTripEpochMillis = System.currentTimeMillis();
+                logSendStatistics(events, start);
+                return true;
+            }
+        } catch (JedisException ex) {
+            log.info("unable to send {} events, reconnecting to redis", events, ex);
+            if (volumesAdded) {
+                log.warn("volume counters of {} buckets may have been lost in the failed pipeline", volumes.size());
+                volumes.clear();
+            }
+        }
+        reconnect();
+        return false;
+    }
+
+    private void reconnect() {
+        transport.reconnect();
+        connectionGeneration = transport.getConnectionGeneration();
+        onReconnect();
+    }
+
+    /**
+     * a writer sharing the transport may have reconnected it since the last batch of this writer.
+     */
+    private void resetIfReconnected() {
+        final long currentGeneration = transport.getConnectionGeneration();
+        if (currentGeneration != connectionGeneration) {
+            connectionGeneration = currentGeneration;
+            onReconnect();
+        }
+    }
+
+    /**
+     * called after the transport reconnected because of a failed send or heartbeat, or before the first batch on a
+     * connection established by another writer, while holding the lock of the transport. e.g. state of the previous
+     * connection can be reset here.
+     */
+    void onReconnect() {
+        // nothing to reset by default
+    }
+
     /**
-     * adds the given values to the given pipeline.<br/>
+     * keeps an idle connection alive (e.g. against the server's timeout setting) and detects broken connections,
+     * before the next batch is sent.
+     */
+    private void sendHeartbeat() {
+        lastRoundTripEpochMillis = System.currentTimeMillis();
+        if (transport.getConnectionState() == ConnectionState.CONNECTING) {
+            return;
+        }
+        synchronized (transportLock) {
+            final long startNanos = System.nanoTime();
+            if (transport.ping()) {
+                lastHeartbeatRoundTripMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+                log.trace("heartbeat round trip took {}us", lastHeartbeatRoundTripMicros);
+            } else {
+                log.info("heartbeat failed, reconnecting to redis");
+                reconnect();
+            }
+        }
+    }
+
+    private long getHeartbeatWaitMillis() {
+        if (heartbeatIntervalMillis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return heartbeatIntervalMillis - (System.currentTimeMillis() - lastRoundTripEpochMillis);
+    }
+
+    /**
+     * adds the given values to the given pipeline. called once per destination key of a batch.<br/>
      * <br/>
      * only calls to the appropriate send-method (e.g. rpush, publish) are permitted.
      * exceptions must not be swallowed, but passed to the caller.<br/>
@@ -137,15 +688,18 @@ public abstract class AbstractBufferedJedisWriter implements Closeable {
      * an example implementation (for rpush) would be
      *
      * <pre>
-     * pipeline.rpush(getRedisKey(), events);
+     * pipeline.rpush(key, values);
      * </pre>
      *
      * @param pipeline
      *            pipeline that receives the event
+     * @param key
+     *            destination of the values, e.g. list or channel
      * @param values
-     *            events to be sent to redis
+     *            encoded events to be sent to redis, in the form provided by the transport
+     *            (e.g. already framed as RESP bulk strings)
      */
-    abstract void addValuesToPipeline(Pipeline pipeline, String... values);
+    abstract void addValuesToPipeline(RedisPipeline pipeline, byte[] key, BatchValues values);
 
     private void logSendStatistics(int events, long startEpochMillis) {
         if (log.isDebugEnabled()) {
@@ -157,11 +711,144 @@ public abstract class AbstractBufferedJedisWriter implements Closeable {
 
     @Override
     public void close() {
+        if (shutdown) {
+            // the transport may be shared, it must be closed once by each writer
+            return;
+        }
         log.info("closing {}", getClass().getSimpleName());
         shutdown = true;
-        flushBuffer();
-        client.close();
+        offerGate.close();
+        drainOnClose();
+        reportDroppedEvents();
+        closed = true;
+        completeBarriersOfClosedWriter();
+        transport.close();
         bufferFlusher.interrupt();
+        for (AbstractBufferedJedisWriter sink : sinks) {
+            sink.close();
+        }
+    }
+
+    /**
+     * sends the buffered events in batches until the shutdown timeout elapsed, the sinks send their copies in
+     * parallel with their own flushing threads. the remaining events are logged as warning, like the events that could
+     * not be sent.
+     */
+    private void drainOnClose() {
+        final long startMillis = System.currentTimeMillis();
+        final long deadlineMillis = shutdownTimeoutMillis > 0 ? startMillis + shutdownTimeoutMillis : Long.MAX_VALUE;
+        awaitInitialConnection(deadlineMillis);
+        long sentEvents = 0L;
+        long droppedEvents = 0L;
+        boolean drained = false;
+        while (!drained && System.currentTimeMillis() < deadlineMillis) {
+            final List<DeferredProcessingAware> toPush = new ArrayList<>(maxBufferItems);
+            if (sendBatch(toPush, this::drainBatch, true, false).join()) {
+                sentEvents += toPush.size();
+            } else {
+                droppedEvents += toPush.size();
+            }
+            drained = toPush.isEmpty();
+        }
+        synchronized (forwardedBatches) {
+            EncodedBatch batch;
+            while (System.currentTimeMillis() < deadlineMillis && (batch = forwardedBatches.poll()) != null) {
+                if (sendForwardedBatch(batch)) {
+                    sentEvents += batch.events.size();
+                } else {
+                    droppedEvents += batch.events.size();
+                }
+            }
+        }
+        final long abandonedEvents = droppedEvents + abandonBufferedEvents() + abandonForwardedBatches();
+        eventsAbandoned = abandonedEvents > 0;
+        final long elapsedMillis = System.currentTimeMillis() - startMillis;
+        if (eventsAbandoned) {
+            log.warn("sent {} buffered events on close in {} ms, abandoned {} events", sentEvents, elapsedMillis, abandonedEvents);
+        } else {
+            log.info("sent {} buffered events on close in {} ms", sentEvents, elapsedMillis);
+        }
+    }
+
+    /**
+     * @return number of forwarded events left after the shutdown timeout, they are logged as warning
+     */
+    private long abandonForwardedBatches() {
+        long abandonedEvents = 0L;
+        EncodedBatch batch;
+        while ((batch = forwardedBatches.poll()) != null) {
+            final List<String> values = new ArrayList<>(batch.values.size());
+            for (byte[] value : batch.values) {
+                values.add(toString(value));
+            }
+            log.warn("shutdown timeout elapsed, unable to send events to sink {}: {}", redisKey, values);
+            abandonedEvents += batch.events.size();
+        }
+        return abandonedEvents;
+    }
+
+    /**
+     * waits until the initial connection is established or the shutdown timeout elapsed, the buffered events would
+     * be dropped on a connection that is still connecting.
+     */
+    private void awaitInitialConnection(long deadlineMillis) {
+        long remainingMillis = deadlineMillis - System.currentTimeMillis();
+        while (transport.getConnectionState() == ConnectionState.CONNECTING && remainingMillis > 0 && hasEventsToSend()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(Math.min(BARRIER_RETRY_MILLIS, remainingMillis));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remainingMillis = deadlineMillis - System.currentTimeMillis();
+        }
+    }
+
+    private boolean hasEventsToSend() {
+        return bufferedEvents.size() > 0 || priorityEvents != null && !priorityEvents.isEmpty() || !forwardedBatches.isEmpty();
+    }
+
+    /**
+     * drains at most one batch, high priority events first.
+     */
+    private void drainBatch(List<DeferredProcessingAware> toPush) {
+        final int maxEvents = maxBufferItems;
+        if (priorityEvents != null) {
+            priorityEvents.drainTo(toPush, maxEvents);
+        }
+        bufferedEvents.drainTo(toPush, maxEvents - toPush.size());
+    }
+
+    /**
+     * @return number of events left in the buffer after the shutdown timeout, they are logged as warning
+     */
+    private long abandonBufferedEvents() {
+        long abandonedEvents = 0L;
+        final List<DeferredProcessingAware> remaining = new ArrayList<>(maxBufferItems);
+        do {
+            remaining.clear();
+            drainBatch(remaining);
+            if (!remaining.isEmpty()) {
+                final List<String> values = new ArrayList<>(remaining.size());
+                for (DeferredProcessingAware event : remaining) {
+                    values.add(toString(messageCreator.apply(event)));
+                }
+                log.warn("shutdown timeout elapsed, unable to send events to redis: {}", values);
+                notifyUnsentEvents(remaining);
+                abandonedEvents += remaining.size();
+            }
+        } while (!remaining.isEmpty());
+        return abandonedEvents;
+    }
+
+    private static final class EncodedBatch {
+        private final List<DeferredProcessingAware> events;
+        private final List<byte[]> values;
+
+        private EncodedBatch(List<DeferredProcessingAware> events, List<byte[]> values) {
+            this.events = events;
+            this.values = values;
+        }
     }
 
     int getFlusherThreadActions() {
@@ -173,19 +860,68 @@ public abstract class AbstractBufferedJedisWriter implements Closeable {
         while (!shutdown) {
             try {
                 final long flushWaitMillis = flushBufferIntervalMillis - (System.currentTimeMillis() - lastFlushEpochMillis.get());
-                if (flushWaitMillis <= 0) {
+                final long priorityFlushWaitMillis = getPriorityFlushWaitMillis();
+                final long heartbeatWaitMillis = getHeartbeatWaitMillis();
+                final long barrierWaitMillis = getBarrierWaitMillis();
+                if (barrierWaitMillis <= 0) {
+                    flushBarriers();
+                } else if (hasForwardedBatchesToSend()) {
+                    // close waits for the batch in progress
+                    synchronized (forwardedBatches) {
+                        final EncodedBatch batch = forwardedBatches.poll();
+                        if (batch != null) {
+                            sendForwardedBatch(batch);
+                        }
+                    }
+                } else if (flushWaitMillis <= 0) {
                     flushBuffer();
                     flusherThreadActions.incrementAndGet();
+                } else if (priorityFlushWaitMillis <= 0) {
+                    flushPriorityBuffer();
+                } else if (heartbeatWaitMillis <= 0) {
+                    sendHeartbeat();
                 } else {
-                    TimeUnit.MILLISECONDS.sleep(flushWaitMillis);
+                    synchronized (flusherWakeUp) {
+                        // a batch may have been forwarded since the check above
+                        if (!hasForwardedBatchesToSend()) {
+                            flusherWakeUp.wait(Math.min(Math.min(flushWaitMillis, barrierWaitMillis), Math.min(priorityFlushWaitMillis, heartbeatWaitMillis)));
+                        }
+                    }
                 }
             } catch (InterruptedException ex) {
                 // ignores InterruptedException by purpose, shutdown must be set to stop it
-                // setting interrupt flag would break sleep method
+                // setting interrupt flag would break wait method
                 log.trace("ignoring thread interruption", ex);
             } catch (Exception ex) {
                 log.warn("unexpected exception occured while running flushing thread", ex);
             }
         }
     }
+
+    /**
+     * the flusher wakes up at least once per priority interval, because appended high priority events do not
+     * notify it.
+     */
+    private long getPriorityFlushWaitMillis() {
+        if (priorityEvents == null || flushPriorityBufferIntervalMillis <= 0) {
+            // without interval, high priority events are sent on append
+            return Long.MAX_VALUE;
+        }
+        final long waitMillis = flushPriorityBufferIntervalMillis - (System.currentTimeMillis() - lastPriorityFlushEpochMillis.get());
+        if (waitMillis <= 0 && priorityEvents.isEmpty()) {
+            lastPriorityFlushEpochMillis.set(System.currentTimeMillis());
+            return flushPriorityBufferIntervalMillis;
+        }
+        return waitMillis;
+    }
+
+    private static final class Destination {
+        private final byte[] key;
+        private final BatchValues values;
+
+        private Destination(byte[] key, BatchValues values) {
+            this.key = key;
+            this.values = values;
+        }
+    }
 }
@@ -2,25 +2,23 @@ package de.idealo.logback.appender.jediswriter;
 
 import java.util.function.Function;
 
-import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
 
 import ch.qos.logback.core.spi.DeferredProcessingAware;
-import redis.clients.jedis.Pipeline;
 
 public class BufferedJedisPublisher extends AbstractBufferedJedisWriter {
 
-    BufferedJedisPublisher(JedisClient client,
-            Function<DeferredProcessingAware, String> messageCreator,
+    BufferedJedisPublisher(RedisTransport transport,
+            Function<DeferredProcessingAware, byte[]> messageCreator,
             String redisKey,
-            int maxBufferItems,
-            long flushBufferIntervalMillis) {
-        super(client, messageCreator, redisKey, maxBufferItems, flushBufferIntervalMillis);
+            JedisWriterConfiguration configuration) {
+        super(transport, messageCreator, redisKey, configuration);
     }
 
     @Override
-    void addValuesToPipeline(Pipeline pipeline, String... values) {
-        for (String value : values) {
-            pipeline.publish(getRedisKey(), value);
-        }
+    void addValuesToPipeline(RedisPipeline pipeline, byte[] key, BatchValues values) {
+        pipeline.publish(key, values);
     }
 }
@@ -1,24 +1,58 @@
 package de.idealo.logback.appender.jediswriter;
 
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Function;
 
-import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
 
 import ch.qos.logback.core.spi.DeferredProcessingAware;
-import redis.clients.jedis.Pipeline;
 
+/**
+ * Pushes each batch to the list of its key (RPUSH).<br/>
+ * <br/>
+ * If an expiry is configured, an EXPIRE is added to the pipeline the first time a key is written on a connection.
+ * Together with a time-bucketed key pattern (e.g. {@code logs:%d{yyyyMMddHHmm}}) each bucket expires once, without
+ * LTRIM or scanning and without an extra round trip.
+ */
 public class BufferedJedisRPusher extends AbstractBufferedJedisWriter {
 
-    BufferedJedisRPusher(JedisClient client,
-            Function<DeferredProcessingAware, String> messageCreator,
+    /** keys of the recently written buckets, older ones are forgotten and at most get another EXPIRE */
+    private static final int MAX_EXPIRED_KEYS = 1024;
+
+    private final int expireSeconds;
+    /** keys whose expiry is set on the current connection, guarded by the lock of the transport */
+    private final Map<ByteBuffer, Boolean> expiredKeys = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+            return size() > MAX_EXPIRED_KEYS;
+        }
+    };
+
+    BufferedJedisRPusher(RedisTransport transport,
+            Function<DeferredProcessingAware, byte[]> messageCreator,
             String redisKey,
-            int maxBufferItems,
-            long flushBufferIntervalMillis) {
-        super(client, messageCreator, redisKey, maxBufferItems, flushBufferIntervalMillis);
+            JedisWriterConfiguration configuration) {
+        super(transport, messageCreator, redisKey, configuration);
+        expireSeconds = configuration.getConnectionConfig().getExpireSeconds();
+    }
+
+    @Override
+    void addValuesToPipeline(RedisPipeline pipeline, byte[] key, BatchValues values) {
+        pipeline.rpush(key, values);
+        if (expireSeconds > 0 && expiredKeys.put(ByteBuffer.wrap(key), Boolean.TRUE) == null) {
+            pipeline.expire(key, expireSeconds);
+        }
     }
 
     @Override
-    void addValuesToPipeline(Pipeline pipeline, String... values) {
-        pipeline.rpush(getRedisKey(), values);
+    void onReconnect() {
+        // the failed batch may not have set the expiry, e.g. of a new bucket
+        expiredKeys.clear();
     }
 }
@@ -0,0 +1,106 @@
+package de.idealo.logback.appender.jediswriter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Function;
+
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Sends each batch with one call of a lua script, that pushes the events to the list and optionally caps its length
+ * (LTRIM), sets its expiry (EXPIRE) and counts the ingested events and batches in a hash (HINCRBY) atomically.<br/>
+ * <br/>
+ * The first batch of a connection is sent with EVAL, which caches the script in redis, all further batches with
+ * EVALSHA. After a reconnect, e.g. because redis answered with NOSCRIPT after a restart or failover, the next try
+ * sends the script again.
+ */
+public class BufferedJedisScriptPusher extends AbstractBufferedJedisWriter {
+
+    static final String SCRIPT = ""
+            + "local length = 0\n"
+            // unpack is limited by the lua stack size
+            + "for i = 3, #ARGV, 1000 do\n"
+            + "  length = redis.call('RPUSH', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))\n"
+            + "end\n"
+            + "local maxLength = tonumber(ARGV[1])\n"
+            + "if maxLength > 0 and length > maxLength then\n"
+            + "  redis.call('LTRIM', KEYS[1], -maxLength, -1)\n"
+            + "end\n"
+            + "local expireSeconds = tonumber(ARGV[2])\n"
+            + "if expireSeconds > 0 then\n"
+            + "  redis.call('EXPIRE', KEYS[1], expireSeconds)\n"
+            + "end\n"
+            + "if #KEYS > 1 then\n"
+            + "  redis.call('HINCRBY', KEYS[2], 'events', #ARGV - 2)\n"
+            + "  redis.call('HINCRBY', KEYS[2], 'batches', 1)\n"
+            + "end\n"
+            + "return length\n";
+    static final byte[] SCRIPT_BYTES = SafeEncoder.encode(SCRIPT);
+    static final byte[] SCRIPT_SHA1 = sha1Hex(SCRIPT_BYTES);
+
+    private final int keyCount;
+    private final byte[][] keysAndArguments;
+    /** guarded by the lock of the transport */
+    private boolean scriptLoadRequired = true;
+
+    BufferedJedisScriptPusher(RedisTransport transport,
+            Function<DeferredProcessingAware, byte[]> messageCreator,
+            RedisConnectionConfig connectionConfig,
+            JedisWriterConfiguration configuration) {
+        super(transport, messageCreator, connectionConfig.getKey(), configuration);
+        final byte[] maxLength = Protocol.toByteArray(connectionConfig.getMaxLength());
+        final byte[] expireSeconds = Protocol.toByteArray(connectionConfig.getExpireSeconds());
+        if (connectionConfig.getCounterKey() == null) {
+            keyCount = 1;
+            keysAndArguments = new byte[][] { getRedisKeyBytes(), maxLength, expireSeconds };
+        } else {
+            keyCount = 2;
+            keysAndArguments = new byte[][] { getRedisKeyBytes(), SafeEncoder.encode(connectionConfig.getCounterKey()), maxLength,
+                    expireSeconds };
+        }
+    }
+
+    @Override
+    void addValuesToPipeline(RedisPipeline pipeline, byte[] key, BatchValues values) {
+        final byte[][] keysAndArgumentsOfKey = key == getRedisKeyBytes() ? keysAndArguments : withKey(key);
+        if (scriptLoadRequired) {
+            pipeline.eval(SCRIPT_BYTES, keyCount, keysAndArgumentsOfKey, values);
+            scriptLoadRequired = false;
+        } else {
+            pipeline.evalsha(SCRIPT_SHA1, keyCount, keysAndArgumentsOfKey, values);
+        }
+    }
+
+    private byte[][] withKey(byte[] key) {
+        final byte[][] keysAndArgumentsOfKey = keysAndArguments.clone();
+        keysAndArgumentsOfKey[0] = key;
+        return keysAndArgumentsOfKey;
+    }
+
+    @Override
+    void onReconnect() {
+        // redis may have lost the script (NOSCRIPT), e.g. after a restart or when a replica became master
+        scriptLoadRequired = true;
+    }
+
+    private static byte[] sha1Hex(byte[] script) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(script);
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString().getBytes(StandardCharsets.US_ASCII);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not available", ex);
+        }
+    }
+}
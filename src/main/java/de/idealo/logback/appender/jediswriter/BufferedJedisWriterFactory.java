@@ -1,7 +1,9 @@
 package de.idealo.logback.appender.jediswriter;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Function;
 
 import de.idealo.logback.appender.jedisclient.JedisClient;
@@ -9,6 +11,11 @@ import de.idealo.logback.appender.jedisclient.JedisClientProvider;
 import de.idealo.logback.appender.jedisclient.JedisPoolFactory;
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig.Method;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig.Transport;
+import de.idealo.logback.appender.transport.JedisTransport;
+import de.idealo.logback.appender.transport.RedisTransport;
+import de.idealo.logback.appender.transport.TransportRegistry;
+import de.idealo.logback.appender.transport.nio.NioTransport;
 
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.spi.DeferredProcessingAware;
@@ -16,44 +23,120 @@ import ch.qos.logback.core.spi.DeferredProcessingAware;
 public class BufferedJedisWriterFactory {
 
     private final JedisPoolFactory jedisPoolFactory;
+    private final TransportRegistry transportRegistry;
 
     public BufferedJedisWriterFactory(JedisPoolFactory jedisPoolFactory) {
+        this(jedisPoolFactory, TransportRegistry.processWide());
+    }
+
+    BufferedJedisWriterFactory(JedisPoolFactory jedisPoolFactory, TransportRegistry transportRegistry) {
         this.jedisPoolFactory = jedisPoolFactory;
+        this.transportRegistry = transportRegistry;
     }
 
-    @SuppressWarnings("squid:S2095") // rule=resource should be closed: JedisClient is closed when writer is shut down
+    /**
+     * creates the writer of the connection config, that fans the encoded events out to the writers of the sinks.
+     */
     public AbstractBufferedJedisWriter createJedisWriter(JedisWriterConfiguration writerConfiguration) {
+        final List<AbstractBufferedJedisWriter> sinkWriters = new ArrayList<>();
+        try {
+            for (RedisConnectionConfig sinkConfig : writerConfiguration.getSinks()) {
+                sinkWriters.add(createSingleJedisWriter(writerConfiguration.toBuilder()
+                        .connectionConfig(sinkConfig)
+                        .keyResolver(null)
+                        .volumeDimension(null)
+                        // the copies of the sinks do not decide, whether an event was sent
+                        .unsentEventListener(null)
+                        .sinks(Collections.emptyList())
+                        .build()));
+            }
+            final AbstractBufferedJedisWriter writer = createSingleJedisWriter(writerConfiguration);
+            sinkWriters.forEach(writer::addSink);
+            return writer;
+        } catch (RuntimeException ex) {
+            sinkWriters.forEach(AbstractBufferedJedisWriter::close);
+            throw ex;
+        }
+    }
+
+    @SuppressWarnings("squid:S2095") // rule=resource should be closed: transport is closed when writer is shut down
+    private AbstractBufferedJedisWriter createSingleJedisWriter(JedisWriterConfiguration writerConfiguration) {
         final RedisConnectionConfig connectionConfig = writerConfiguration.getConnectionConfig();
         final Method method = connectionConfig.getMethod();
         if (method == null) {
             throw getUnsupportedWriterTypeException(null);
         }
         final Encoder<DeferredProcessingAware> encoder = writerConfiguration.getEncoder();
-        final Function<DeferredProcessingAware, String> messageCreator = event -> new String(encoder.encode(event), StandardCharsets.UTF_8);
+        final Function<DeferredProcessingAware, byte[]> messageCreator = event -> encoder.encode(event);
 
-        final JedisClientProvider clientProvider = new JedisClientProvider(jedisPoolFactory, writerConfiguration.getConnectionConfig());
-        final JedisClient client = new JedisClient(clientProvider,
-                writerConfiguration.getMaxInitializeTries(),
-                writerConfiguration.getRetryInitializeIntervalMillis());
+        final RedisTransport transport = createTransport(writerConfiguration);
 
         switch (method) {
             case RPUSH:
-                return new BufferedJedisRPusher(client,
+                return new BufferedJedisRPusher(transport,
                         messageCreator,
                         connectionConfig.getKey(),
-                        writerConfiguration.getMaxBufferedMessages(),
-                        writerConfiguration.getFlushBufferIntervalMillis());
+                        writerConfiguration);
             case PUBLISH:
-                return new BufferedJedisPublisher(client,
+                return new BufferedJedisPublisher(transport,
                         messageCreator,
                         connectionConfig.getKey(),
-                        writerConfiguration.getMaxBufferedMessages(),
-                        writerConfiguration.getFlushBufferIntervalMillis());
+                        writerConfiguration);
+            case EVALSHA:
+                return new BufferedJedisScriptPusher(transport,
+                        messageCreator,
+                        connectionConfig,
+                        writerConfiguration);
             default:
                 throw getUnsupportedWriterTypeException(method.name());
         }
     }
 
+    /**
+     * provides the shared transport of the endpoint, the settings of the first writer of an endpoint apply
+     * (e.g. the initialization retries).
+     */
+    private RedisTransport createTransport(JedisWriterConfiguration writerConfiguration) {
+        final RedisConnectionConfig connectionConfig = writerConfiguration.getConnectionConfig();
+        if (!connectionConfig.isShareConnection()) {
+            return createOwnTransport(writerConfiguration);
+        }
+        return transportRegistry.acquire(getEndpoint(connectionConfig), () -> createOwnTransport(writerConfiguration));
+    }
+
+    private RedisTransport createOwnTransport(JedisWriterConfiguration writerConfiguration) {
+        final RedisConnectionConfig connectionConfig = writerConfiguration.getConnectionConfig();
+        final Transport transport = connectionConfig.getTransport();
+        if (transport == Transport.NIO) {
+            return new NioTransport(connectionConfig,
+                    writerConfiguration.getMaxInitializeTries(),
+                    writerConfiguration.getRetryInitializeIntervalMillis());
+        }
+        if (transport != Transport.JEDIS) {
+            throw new IllegalArgumentException("transport '" + transport + "' is not supported, only " + Arrays.asList(Transport.values()));
+        }
+        if (connectionConfig.isUnacknowledged()) {
+            // jedis reads a reply for each pipelined command
+            throw new IllegalArgumentException("unacknowledged mode is only supported by transport " + Transport.NIO);
+        }
+        final JedisClientProvider clientProvider = new JedisClientProvider(jedisPoolFactory, connectionConfig);
+        return new JedisTransport(new JedisClient(clientProvider,
+                writerConfiguration.getMaxInitializeTries(),
+                writerConfiguration.getRetryInitializeIntervalMillis()));
+    }
+
+    /**
+     * @return all settings used to connect, writers with equal endpoints share the transport
+     */
+    private static List<Object> getEndpoint(RedisConnectionConfig config) {
+        return Arrays.asList(config.getTransport(), config.isUnacknowledged(), config.getConfirmationIntervalMillis(),
+                config.getScheme(), config.getHost(), config.getPort(), config.getUnixSocket(),
+                config.getSentinels(), config.getSentinelMasterName(), config.getDatabase(), config.getPassword(), config.isSsl(),
+                config.getConnectionTimeout(), config.getSoTimeout(),
+                config.getMaxTotal(), config.getMaxIdle(), config.getMinIdle(), config.getMaxWaitMillis(),
+                config.isTestOnBorrow(), config.isTestWhileIdle(), config.getHealthCheckIntervalMillis(), config.getMinEvictableIdleTimeMillis());
+    }
+
     private IllegalArgumentException getUnsupportedWriterTypeException(String type) {
         throw new IllegalArgumentException("writer type '" + type + "' is not supported, only " + Arrays.asList(Method.values()));
     }
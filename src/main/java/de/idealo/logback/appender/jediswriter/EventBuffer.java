@@ -0,0 +1,106 @@
+package de.idealo.logback.appender.jediswriter;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Bounded buffer of the events waiting to be sent, appended by the application threads and drained by the flushing
+ * thread.<br/>
+ * <br/>
+ * With more than one stripe each appending thread uses the queue of its stripe (selected by thread id), so threads
+ * of different stripes do not contend for the same lock. The capacity is divided between the stripes, a stripe may be
+ * full while others have space left. Events of one thread keep their order, events of different threads are ordered
+ * by the given comparator on drain, or per stripe without comparator.
+ *
+ * @param <E>
+ *            type of the events
+ */
+public final class EventBuffer<E> {
+
+    private final LinkedBlockingQueue<E>[] stripes;
+    private final int stripeMask;
+    private final Comparator<? super E> mergeOrder;
+
+    /**
+     * @param capacity
+     *            maximum number of buffered events of all stripes
+     * @param stripes
+     *            number of stripes, rounded up to the next power of two
+     * @param mergeOrder
+     *            order of the events of different stripes in the drained batch, e.g. by timestamp. null keeps them
+     *            grouped by stripe.
+     */
+    public EventBuffer(int capacity, int stripes, Comparator<? super E> mergeOrder) {
+        final int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        final int stripeCapacity = Math.max(1, (capacity + stripeCount - 1) / stripeCount);
+        // generic arrays cannot be created, the array only ever holds queues of E
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final LinkedBlockingQueue<E>[] queues = new LinkedBlockingQueue[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            queues[i] = new LinkedBlockingQueue<>(stripeCapacity);
+        }
+        this.stripes = queues;
+        stripeMask = stripeCount - 1;
+        this.mergeOrder = stripeCount > 1 ? mergeOrder : null;
+    }
+
+    /**
+     * @return false, if the stripe of the current thread is full
+     */
+    public boolean offer(E event) {
+        return currentStripe().offer(event);
+    }
+
+    /**
+     * @return true, if the buffer holds at least the given number of events. the sizes of the other stripes are only
+     *         summed up, if the stripe of the current thread holds its share of them.
+     */
+    public boolean holds(int events) {
+        return currentStripe().size() >= (events + stripeMask) / stripes.length && size() >= events;
+    }
+
+    public int size() {
+        int size = 0;
+        for (LinkedBlockingQueue<E> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * moves all buffered events to the end of the given list.
+     */
+    public void drainTo(List<E> events) {
+        final int start = events.size();
+        for (LinkedBlockingQueue<E> stripe : stripes) {
+            stripe.drainTo(events);
+        }
+        if (mergeOrder != null) {
+            // the stripes are ordered runs, the merge sort of the list merges them in linear time
+            events.subList(start, events.size()).sort(mergeOrder);
+        }
+    }
+
+    /**
+     * moves at most the given number of buffered events to the end of the given list, taken from the stripes one
+     * after the other.
+     */
+    public void drainTo(List<E> events, int maxEvents) {
+        final int start = events.size();
+        for (LinkedBlockingQueue<E> stripe : stripes) {
+            final int remaining = maxEvents - (events.size() - start);
+            if (remaining <= 0) {
+                break;
+            }
+            stripe.drainTo(events, remaining);
+        }
+        if (mergeOrder != null) {
+            events.subList(start, events.size()).sort(mergeOrder);
+        }
+    }
+
+    private LinkedBlockingQueue<E> currentStripe() {
+        return stripes[(int) Thread.currentThread().getId() & stripeMask];
+    }
+}
@@ -1,5 +1,12 @@
 package de.idealo.logback.appender.jediswriter;
 
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
 
 import ch.qos.logback.core.encoder.Encoder;
@@ -11,12 +18,60 @@ import lombok.NonNull;
 
 @AllArgsConstructor
 @Getter
-@Builder
+@Builder(toBuilder = true)
 public class JedisWriterConfiguration {
+    public static final int DEFAULT_BUFFER_CAPACITY = 100_000;
+    public static final int DEFAULT_PRIORITY_BUFFER_CAPACITY = 10_000;
+
     private final int maxInitializeTries;
     private final long retryInitializeIntervalMillis;
     private final int maxBufferedMessages;
     private final long flushBufferIntervalMillis;
+    /**
+     * maximum number of events waiting to be sent, e.g. while the initial connection is established. the events are
+     * buffered unencoded, with roughly 1 KB per event the default takes about 100 MB of heap if redis is unreachable
+     */
+    @Builder.Default
+    private final int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+    /** number of append buffers, application threads are spread over them, see {@link EventBuffer} */
+    @Builder.Default
+    private final int bufferStripes = 1;
+    /** order of the events of different buffer stripes in a batch, grouped by stripe if null */
+    private final Comparator<DeferredProcessingAware> mergeOrder;
+    /** interval of PINGs on an idle connection, disabled if not positive */
+    @Builder.Default
+    private final long heartbeatIntervalMillis = 0L;
+    /** selects the events of the high priority lane (e.g. ERROR events), the lane is disabled if null */
+    private final Predicate<DeferredProcessingAware> priorityFilter;
+    /** batch size of the high priority lane */
+    @Builder.Default
+    private final int maxPriorityBufferedMessages = 100;
+    /** maximum delay of high priority events, they are sent on append if not positive */
+    @Builder.Default
+    private final long flushPriorityBufferIntervalMillis = 100L;
+    /** capacity reserved for high priority events, in addition to bufferCapacity */
+    @Builder.Default
+    private final int priorityBufferCapacity = DEFAULT_PRIORITY_BUFFER_CAPACITY;
+    /** resolves the redis key of each event, the key of the connection config is used for all events if null */
+    private final Function<DeferredProcessingAware, String> keyResolver;
+    /** resolves the dimension (hash field) of the volume counters, e.g. logger and level, disabled if null */
+    private final Function<DeferredProcessingAware, String> volumeDimension;
+    /** prefix of the hashes of the volume counters, disabled if null */
+    private final String volumeKey;
+    /** duration of one volume bucket, each bucket is sent to its own hash */
+    @Builder.Default
+    private final long volumeIntervalMillis = 60_000L;
+    /** expiry of the hashes of the volume counters, no expiry if not positive */
+    @Builder.Default
+    private final int volumeExpireSeconds = 0;
+    /** maximum duration of sending the buffered events on close, the remaining events are logged. unlimited if not positive */
+    @Builder.Default
+    private final long shutdownTimeoutMillis = 10_000L;
+    /** notified of each event that was encoded but not sent, e.g. so its stack trace is sent in full again. optional */
+    private final Consumer<DeferredProcessingAware> unsentEventListener;
+    /** further destinations (method, key and connection) that receive the same encoded events */
+    @Builder.Default
+    private final List<RedisConnectionConfig> sinks = Collections.emptyList();
     @NonNull
     private final Encoder<DeferredProcessingAware> encoder;
     @NonNull
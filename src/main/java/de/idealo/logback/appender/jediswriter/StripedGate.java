@@ -0,0 +1,54 @@
+package de.idealo.logback.appender.jediswriter;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Guards a short section of the application threads (e.g. adding an event to the buffer) against a close, that must
+ * see the effects of all threads that entered before.<br/>
+ * <br/>
+ * Threads entered before the close are awaited by it, threads entering later are rejected. The threads count
+ * themselves in the stripe of their thread id, each stripe on its own cache line, so entering does not contend on a
+ * single counter.
+ */
+final class StripedGate {
+
+    private static final int STRIPES = 16;
+    /** ints per cache line of 64 bytes */
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray entered = new AtomicIntegerArray(STRIPES * PADDING);
+    private volatile boolean closed;
+
+    /**
+     * @return false, if the gate is closed. otherwise the section must be left with {@link #exit()}.
+     */
+    boolean enter() {
+        final int index = currentStripe();
+        entered.incrementAndGet(index);
+        if (closed) {
+            entered.decrementAndGet(index);
+            return false;
+        }
+        return true;
+    }
+
+    void exit() {
+        entered.decrementAndGet(currentStripe());
+    }
+
+    /**
+     * rejects further threads and waits until the threads that entered before left the section.
+     */
+    void close() {
+        closed = true;
+        for (int i = 0; i < STRIPES; i++) {
+            while (entered.get(i * PADDING) > 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static int currentStripe() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+}
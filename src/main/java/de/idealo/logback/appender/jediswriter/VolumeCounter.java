@@ -0,0 +1,158 @@
+package de.idealo.logback.appender.jediswriter;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import de.idealo.logback.appender.transport.RedisPipeline;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Counts the appended events per dimension (e.g. logger and level) in time buckets, that are sent as hash counters
+ * (HINCRBY) with the next batch after the bucket ended. The hash of a bucket is named after its start in UTC, e.g.
+ * {@code logs:volume:202409011230}.<br/>
+ * <br/>
+ * Counting is lock-free with striped counters, the number of dimensions per bucket is bounded, further dimensions are
+ * counted as {@value #OTHER_DIMENSION}. A bucket ends once all increments started before its end are done, an event
+ * is counted in exactly one bucket.
+ */
+final class VolumeCounter {
+
+    static final String OTHER_DIMENSION = "other";
+    private static final int MAX_DIMENSIONS = 10_000;
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmm").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter SECOND_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    private final Function<DeferredProcessingAware, String> dimension;
+    private final String keyPrefix;
+    private final long intervalMillis;
+    private final int expireSeconds;
+    private final DateTimeFormatter bucketFormatter;
+    private final ConcurrentLinkedDeque<Bucket> completedBuckets = new ConcurrentLinkedDeque<>();
+    private volatile Bucket currentBucket;
+
+    VolumeCounter(Function<DeferredProcessingAware, String> dimension, String key, long intervalMillis, int expireSeconds) {
+        this.dimension = dimension;
+        keyPrefix = key + ":";
+        this.intervalMillis = intervalMillis;
+        this.expireSeconds = expireSeconds;
+        bucketFormatter = intervalMillis % 60_000L == 0 ? MINUTE_FORMATTER : SECOND_FORMATTER;
+        currentBucket = new Bucket(bucketStart(System.currentTimeMillis()));
+    }
+
+    void count(DeferredProcessingAware event) {
+        final String name = dimension.apply(event);
+        Bucket bucket = rotate(System.currentTimeMillis());
+        while (!bucket.gate.enter()) {
+            // ended by another thread since it was read, the next bucket is already current
+            bucket = currentBucket;
+        }
+        try {
+            LongAdder counter = bucket.counters.get(name);
+            if (counter == null) {
+                counter = bucket.counters.size() < MAX_DIMENSIONS
+                        ? bucket.counters.computeIfAbsent(name, k -> new LongAdder())
+                        : bucket.counters.computeIfAbsent(OTHER_DIMENSION, k -> new LongAdder());
+            }
+            counter.increment();
+        } finally {
+            bucket.gate.exit();
+        }
+    }
+
+    /**
+     * @return true, if a bucket ended and waits to be sent
+     */
+    boolean hasCompletedBuckets() {
+        rotate(System.currentTimeMillis());
+        return !completedBuckets.isEmpty();
+    }
+
+    /**
+     * removes the ended buckets, they must be sent or {@link #restore(List) restored}.
+     *
+     * @param includeCurrent
+     *            ends the current bucket as well, e.g. on shutdown
+     */
+    List<Bucket> takeCompletedBuckets(boolean includeCurrent) {
+        final long now = System.currentTimeMillis();
+        rotate(includeCurrent ? Long.MAX_VALUE : now);
+        final List<Bucket> buckets = new ArrayList<>();
+        Bucket bucket;
+        while ((bucket = completedBuckets.pollFirst()) != null) {
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    /**
+     * puts buckets, that could not be sent, back to be sent with the next batch.
+     */
+    void restore(List<Bucket> buckets) {
+        for (int i = buckets.size() - 1; i >= 0; i--) {
+            completedBuckets.addFirst(buckets.get(i));
+        }
+    }
+
+    void addToPipeline(RedisPipeline pipeline, List<Bucket> buckets) {
+        for (Bucket bucket : buckets) {
+            final byte[] key = SafeEncoder.encode(keyPrefix + bucketFormatter.format(Instant.ofEpochMilli(bucket.startEpochMillis)));
+            boolean counted = false;
+            for (Map.Entry<String, LongAdder> entry : bucket.counters.entrySet()) {
+                final long count = entry.getValue().sum();
+                if (count > 0) {
+                    pipeline.hincrBy(key, SafeEncoder.encode(entry.getKey()), count);
+                    counted = true;
+                }
+            }
+            if (counted && expireSeconds > 0) {
+                pipeline.expire(key, expireSeconds);
+            }
+        }
+    }
+
+    private Bucket rotate(long now) {
+        Bucket bucket = currentBucket;
+        if (now - bucket.startEpochMillis < intervalMillis) {
+            return bucket;
+        }
+        synchronized (this) {
+            bucket = currentBucket;
+            if (now - bucket.startEpochMillis >= intervalMillis) {
+                final Bucket endedBucket = bucket;
+                bucket = new Bucket(bucketStart(now == Long.MAX_VALUE ? System.currentTimeMillis() + intervalMillis : now));
+                currentBucket = bucket;
+                // the counters are final afterwards, increments that missed the end are counted in the new bucket
+                endedBucket.gate.close();
+                if (!endedBucket.counters.isEmpty()) {
+                    completedBuckets.addLast(endedBucket);
+                }
+            }
+            return bucket;
+        }
+    }
+
+    private long bucketStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, intervalMillis);
+    }
+
+    static final class Bucket {
+        private final long startEpochMillis;
+        private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+        /** closed when the bucket ended, so no increment is added after the counters were taken */
+        private final StripedGate gate = new StripedGate();
+
+        private Bucket(long startEpochMillis) {
+            this.startEpochMillis = startEpochMillis;
+        }
+    }
+}
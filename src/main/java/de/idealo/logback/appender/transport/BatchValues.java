@@ -0,0 +1,31 @@
+package de.idealo.logback.appender.transport;
+
+import java.util.List;
+
+/**
+ * Encoded events of one batch, in the form the transport sends them best.
+ * Instances are reused for consecutive batches and are not thread safe.
+ *
+ * @see RedisTransport#createBatchValues()
+ */
+public interface BatchValues {
+
+    void add(byte[] value);
+
+    int size();
+
+    /**
+     * removes all values, e.g. before the next batch is added.
+     */
+    void clear();
+
+    /**
+     * @return values as separate arrays, for transports and commands that cannot use the batch as is
+     */
+    byte[][] toByteArrays();
+
+    /**
+     * @return values decoded as UTF-8, e.g. to log events that could not be sent
+     */
+    List<String> toStrings();
+}
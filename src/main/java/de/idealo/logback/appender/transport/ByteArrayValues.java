@@ -0,0 +1,42 @@
+package de.idealo.logback.appender.transport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the encoded events as they are, e.g. to pass them to jedis.
+ */
+public class ByteArrayValues implements BatchValues {
+
+    private final List<byte[]> values = new ArrayList<>();
+
+    @Override
+    public void add(byte[] value) {
+        values.add(value);
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public void clear() {
+        values.clear();
+    }
+
+    @Override
+    public byte[][] toByteArrays() {
+        return values.toArray(new byte[values.size()][]);
+    }
+
+    @Override
+    public List<String> toStrings() {
+        final List<String> strings = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            strings.add(new String(value, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+}
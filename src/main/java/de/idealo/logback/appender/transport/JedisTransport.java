@@ -0,0 +1,127 @@
+package de.idealo.logback.appender.transport;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.JedisClient;
+
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Default transport, sends the batches via a pooled jedis connection.
+ */
+public class JedisTransport implements RedisTransport {
+
+    private final JedisClient client;
+
+    public JedisTransport(JedisClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Optional<RedisPipeline> getPipeline() {
+        return client.getPipeline().map(JedisPipeline::new);
+    }
+
+    @Override
+    public BatchValues createBatchValues() {
+        return new ByteArrayValues();
+    }
+
+    @Override
+    public void reconnect() {
+        client.reconnect();
+    }
+
+    @Override
+    public boolean ping() {
+        return client.ping();
+    }
+
+    @Override
+    public ConnectionState getConnectionState() {
+        return client.getConnectionState();
+    }
+
+    @Override
+    public long getConnectionGeneration() {
+        return client.getConnectionGeneration();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private static final class JedisPipeline implements RedisPipeline {
+        private final Pipeline pipeline;
+
+        private JedisPipeline(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void rpush(byte[] key, byte[]... values) {
+            pipeline.rpush(key, values);
+        }
+
+        @Override
+        public void rpush(byte[] key, BatchValues values) {
+            pipeline.rpush(key, values.toByteArrays());
+        }
+
+        @Override
+        public void publish(byte[] channel, byte[] message) {
+            pipeline.publish(channel, message);
+        }
+
+        @Override
+        public void publish(byte[] channel, BatchValues messages) {
+            for (byte[] message : messages.toByteArrays()) {
+                pipeline.publish(channel, message);
+            }
+        }
+
+        @Override
+        public void expire(byte[] key, int seconds) {
+            pipeline.expire(key, seconds);
+        }
+
+        @Override
+        public void hincrBy(byte[] key, byte[] field, long value) {
+            pipeline.hincrBy(key, field, value);
+        }
+
+        @Override
+        public void eval(byte[] script, int keyCount, byte[][] keysAndArguments, BatchValues values) {
+            pipeline.eval(script, keyCount, concat(keysAndArguments, values));
+        }
+
+        @Override
+        public void evalsha(byte[] sha1, int keyCount, byte[][] keysAndArguments, BatchValues values) {
+            pipeline.evalsha(sha1, keyCount, concat(keysAndArguments, values));
+        }
+
+        /**
+         * jedis only reports error replies (e.g. WRONGTYPE, READONLY, OOM) on access to the responses, the first one is
+         * thrown like the nio transport does.
+         */
+        @Override
+        public void sync() {
+            for (Object reply : pipeline.syncAndReturnAll()) {
+                if (reply instanceof JedisDataException) {
+                    throw (JedisDataException) reply;
+                }
+            }
+        }
+
+        private static byte[][] concat(byte[][] arguments, BatchValues values) {
+            final byte[][] valueArray = values.toByteArrays();
+            final byte[][] params = Arrays.copyOf(arguments, arguments.length + valueArray.length);
+            System.arraycopy(valueArray, 0, params, arguments.length, valueArray.length);
+            return params;
+        }
+    }
+}
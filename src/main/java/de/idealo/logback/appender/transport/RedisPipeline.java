@@ -0,0 +1,54 @@
+package de.idealo.logback.appender.transport;
+
+/**
+ * Commands of one batch, sent to redis on {@link #sync()}.
+ */
+public interface RedisPipeline {
+
+    void rpush(byte[] key, byte[]... values);
+
+    /**
+     * pushes all values of the batch with a single RPUSH.
+     */
+    void rpush(byte[] key, BatchValues values);
+
+    void publish(byte[] channel, byte[] message);
+
+    /**
+     * publishes each value of the batch as separate message.
+     */
+    void publish(byte[] channel, BatchValues messages);
+
+    /**
+     * sets the expiry of the given key in seconds.
+     */
+    void expire(byte[] key, int seconds);
+
+    /**
+     * increments the given field of the hash by the given value.
+     */
+    void hincrBy(byte[] key, byte[] field, long value);
+
+    /**
+     * runs the given lua script, redis caches it for {@link #evalsha(byte[], int, byte[][], BatchValues)}.
+     *
+     * @param keysAndArguments
+     *            the first keyCount elements are the keys, the rest are arguments. the values of the batch are
+     *            appended as further arguments.
+     */
+    void eval(byte[] script, int keyCount, byte[][] keysAndArguments, BatchValues values);
+
+    /**
+     * runs a cached lua script, see {@link #eval(byte[], int, byte[][], BatchValues)}. redis replies with a NOSCRIPT
+     * error, if the script is not cached (e.g. after a restart or failover).
+     *
+     * @param sha1
+     *            SHA1 digest of the script as hex string
+     */
+    void evalsha(byte[] sha1, int keyCount, byte[][] keysAndArguments, BatchValues values);
+
+    /**
+     * sends all queued commands and reads their replies.
+     */
+    void sync();
+}
@@ -0,0 +1,57 @@
+package de.idealo.logback.appender.transport;
+
+import java.io.Closeable;
+import java.util.Optional;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+
+/**
+ * Connection to redis as used by the writers.<br/>
+ * <br/>
+ * Implementations are not thread safe, callers synchronize on {@link #getLock()}.
+ * Failures are reported as {@link redis.clients.jedis.exceptions.JedisException}, regardless of the implementation.
+ *
+ * @see JedisTransport
+ * @see de.idealo.logback.appender.transport.nio.NioTransport
+ */
+public interface RedisTransport extends Closeable {
+
+    /**
+     * @return pipeline for the next batch, empty if there is no connection
+     */
+    Optional<RedisPipeline> getPipeline();
+
+    /**
+     * @return container for the encoded events of a batch, that is passed to the pipeline
+     */
+    BatchValues createBatchValues();
+
+    void reconnect();
+
+    /**
+     * sends a PING on the current connection.
+     *
+     * @return false, if there is no connection or it is broken
+     */
+    boolean ping();
+
+    ConnectionState getConnectionState();
+
+    /**
+     * @return monitor that guards the connection, also used by the transport when it (re)connects in the background.
+     *         all writers of a shared transport use the same one.
+     */
+    default Object getLock() {
+        return this;
+    }
+
+    /**
+     * @return number of the current connection, that changes whenever a new connection was established. writers
+     *         compare it before each batch and reset the state of the previous connection, also if another writer
+     *         of a shared transport reconnected.
+     */
+    long getConnectionGeneration();
+
+    @Override
+    void close();
+}
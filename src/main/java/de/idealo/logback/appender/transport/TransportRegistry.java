@@ -0,0 +1,110 @@
+package de.idealo.logback.appender.transport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+
+/**
+ * Shares one transport (and so one connection) between all writers of the same redis endpoint, e.g. appenders of
+ * several logger contexts. The writers synchronize on the lock of the shared transport, their batches are sent one
+ * after the other on the same connection. The transport is closed, when the last writer closed it.
+ */
+public final class TransportRegistry {
+
+    private static final TransportRegistry PROCESS_REGISTRY = new TransportRegistry();
+
+    private final Map<Object, SharedTransport> transports = new HashMap<>();
+
+    /**
+     * @return registry of the writers of all appenders loaded by the same class loader
+     */
+    public static TransportRegistry processWide() {
+        return PROCESS_REGISTRY;
+    }
+
+    /**
+     * provides the transport of the given endpoint. each call must be matched by one {@link RedisTransport#close()} of
+     * the returned transport.
+     *
+     * @param endpoint
+     *            identity of the endpoint, equal for all settings that are used to connect
+     * @param transportFactory
+     *            creates the transport for the first writer of the endpoint
+     */
+    public synchronized RedisTransport acquire(Object endpoint, Supplier<RedisTransport> transportFactory) {
+        SharedTransport transport = transports.get(endpoint);
+        if (transport == null) {
+            transport = new SharedTransport(endpoint, transportFactory.get());
+            transports.put(endpoint, transport);
+        }
+        transport.references++;
+        return transport;
+    }
+
+    synchronized int size() {
+        return transports.size();
+    }
+
+    private synchronized void release(SharedTransport transport) {
+        if (--transport.references == 0) {
+            transports.remove(transport.endpoint);
+            transport.delegate.close();
+        }
+    }
+
+    private final class SharedTransport implements RedisTransport {
+        private final Object endpoint;
+        private final RedisTransport delegate;
+        /** guarded by the registry */
+        private int references;
+
+        private SharedTransport(Object endpoint, RedisTransport delegate) {
+            this.endpoint = endpoint;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<RedisPipeline> getPipeline() {
+            return delegate.getPipeline();
+        }
+
+        @Override
+        public BatchValues createBatchValues() {
+            return delegate.createBatchValues();
+        }
+
+        @Override
+        public void reconnect() {
+            delegate.reconnect();
+        }
+
+        @Override
+        public boolean ping() {
+            return delegate.ping();
+        }
+
+        @Override
+        public ConnectionState getConnectionState() {
+            return delegate.getConnectionState();
+        }
+
+        @Override
+        public Object getLock() {
+            // the delegate connects in the background with its own lock
+            return delegate.getLock();
+        }
+
+        @Override
+        public long getConnectionGeneration() {
+            return delegate.getConnectionGeneration();
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of direct buffers with a fixed size. Direct buffers are expensive to allocate and are written to the socket
+ * without the intermediate copy that heap buffers need. Instances are not thread safe.
+ */
+final class DirectBufferPool {
+
+    private final int bufferSize;
+    private final int maxRetainedBuffers;
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+
+    DirectBufferPool(int bufferSize, int maxRetainedBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxRetainedBuffers = maxRetainedBuffers;
+    }
+
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = freeBuffers.pollLast();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (freeBuffers.size() < maxRetainedBuffers) {
+            freeBuffers.addLast(buffer);
+        }
+    }
+
+    int getRetainedBuffers() {
+        return freeBuffers.size();
+    }
+}
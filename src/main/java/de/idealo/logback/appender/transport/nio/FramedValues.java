@@ -0,0 +1,175 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.idealo.logback.appender.transport.BatchValues;
+
+/**
+ * Values of a batch, framed as RESP bulk strings while they are added.<br/>
+ * <br/>
+ * The frames are written into pooled direct buffers once. Sending a RPUSH only adds the small command header in
+ * front of them and writes header and frames with one gathering write, also when the batch is sent again after a
+ * failure. Instances are not thread safe and use the buffer pool of the transport, so they must only be used while
+ * holding the lock of the transport.
+ */
+final class FramedValues implements BatchValues {
+
+    private final RespCommandBuffer frames;
+    private int[] lengths = new int[64];
+    private int size;
+    private boolean flipped;
+
+    FramedValues(DirectBufferPool bufferPool) {
+        frames = new RespCommandBuffer(bufferPool);
+    }
+
+    @Override
+    public void add(byte[] value) {
+        if (flipped) {
+            throw new IllegalStateException("values were already sent, clear them first");
+        }
+        if (size == lengths.length) {
+            lengths = Arrays.copyOf(lengths, size << 1);
+        }
+        lengths[size++] = value.length;
+        frames.writeBulkString(value);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        frames.release();
+        size = 0;
+        flipped = false;
+    }
+
+    @Override
+    public byte[][] toByteArrays() {
+        final byte[][] values = new byte[size][];
+        final FrameCursor cursor = new FrameCursor();
+        for (int i = 0; i < size; i++) {
+            cursor.skipFrameHeader(lengths[i]);
+            values[i] = new byte[lengths[i]];
+            cursor.read(values[i]);
+            cursor.skip(2);
+        }
+        return values;
+    }
+
+    @Override
+    public List<String> toStrings() {
+        final List<String> strings = new ArrayList<>(size);
+        for (byte[] value : toByteArrays()) {
+            strings.add(new String(value, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    /**
+     * appends all frames to the given commands without copying them.
+     */
+    void writeFramesTo(RespCommandBuffer commands) {
+        commands.writeChunks(getChunks(), frames.getChunkCount());
+    }
+
+    /**
+     * copies the frames one by one to the given commands, e.g. to send each value with its own command.
+     *
+     * @param beforeEachFrame
+     *            writes the start of the command for the next frame
+     */
+    void copyFramesTo(RespCommandBuffer commands, Runnable beforeEachFrame) {
+        final FrameCursor cursor = new FrameCursor();
+        for (int i = 0; i < size; i++) {
+            beforeEachFrame.run();
+            cursor.copy(commands, frameLength(lengths[i]));
+        }
+    }
+
+    private ByteBuffer[] getChunks() {
+        if (!flipped) {
+            frames.flip();
+            flipped = true;
+        }
+        return frames.getChunks();
+    }
+
+    private static int frameLength(int valueLength) {
+        // $<length>\r\n<value>\r\n
+        return 1 + decimalDigits(valueLength) + 2 + valueLength + 2;
+    }
+
+    private static int decimalDigits(int value) {
+        int digits = 1;
+        for (int remaining = value; remaining >= 10; remaining /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * reads the frames sequentially across the chunks, without changing the positions of the chunks.
+     */
+    private final class FrameCursor {
+        private final ByteBuffer[] chunks;
+        private final int chunkCount = frames.getChunkCount();
+        private int chunkIndex;
+
+        private FrameCursor() {
+            final ByteBuffer[] flippedChunks = getChunks();
+            chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = flippedChunks[i].duplicate();
+            }
+        }
+
+        void skipFrameHeader(int valueLength) {
+            skip(1 + decimalDigits(valueLength) + 2);
+        }
+
+        void skip(int bytes) {
+            int remaining = bytes;
+            while (remaining > 0) {
+                final ByteBuffer chunk = currentChunk();
+                final int skipped = Math.min(remaining, chunk.remaining());
+                chunk.position(chunk.position() + skipped);
+                remaining -= skipped;
+            }
+        }
+
+        void read(byte[] target) {
+            int offset = 0;
+            while (offset < target.length) {
+                final ByteBuffer chunk = currentChunk();
+                final int bytes = Math.min(target.length - offset, chunk.remaining());
+                chunk.get(target, offset, bytes);
+                offset += bytes;
+            }
+        }
+
+        void copy(RespCommandBuffer commands, int length) {
+            int remaining = length;
+            while (remaining > 0) {
+                final ByteBuffer chunk = currentChunk();
+                final int bytes = Math.min(remaining, chunk.remaining());
+                commands.write(chunk, bytes);
+                remaining -= bytes;
+            }
+        }
+
+        private ByteBuffer currentChunk() {
+            while (!chunks[chunkIndex].hasRemaining()) {
+                chunkIndex++;
+            }
+            return chunks[chunkIndex];
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Non-blocking socket channel to redis. Commands are written with gathering writes, replies are parsed in place from
+ * a direct read buffer. A selector is only used to wait (with the configured socket timeout) while the socket is not
+ * ready. Instances are not thread safe.
+ */
+final class NioConnection implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey selectionKey;
+    private final int soTimeoutMillis;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final RespReplyReader replyReader = new RespReplyReader();
+    private boolean broken;
+
+    private NioConnection(SocketChannel channel, int soTimeoutMillis) throws IOException {
+        this.channel = channel;
+        this.soTimeoutMillis = soTimeoutMillis;
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        selectionKey = channel.register(selector, 0);
+    }
+
+    /**
+     * connects to the given tcp or unix domain socket address. connecting to a unix domain socket does not wait for
+     * the other side, so the connection timeout only applies to tcp.
+     */
+    static NioConnection open(SocketAddress address, int connectionTimeoutMillis, int soTimeoutMillis) throws IOException {
+        final boolean unixDomainSocket = UnixDomainSockets.isUnixAddress(address);
+        final SocketChannel channel = unixDomainSocket ? UnixDomainSockets.openChannel() : SocketChannel.open();
+        try {
+            if (unixDomainSocket) {
+                channel.connect(address);
+            } else {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                channel.socket().connect(address, connectionTimeoutMillis);
+            }
+            return new NioConnection(channel, soTimeoutMillis);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * sends the commands of the given buffer and reads the given number of replies.
+     *
+     * @throws JedisDataException
+     *             if redis replied with an error, the connection stays usable
+     * @throws JedisConnectionException
+     *             on I/O errors and timeouts, the connection is broken afterwards
+     */
+    void execute(RespCommandBuffer commands, int replies) {
+        if (broken) {
+            throw new JedisConnectionException("connection is broken");
+        }
+        try {
+            write(commands.flip(), commands.getChunkCount());
+            readReplies(replies);
+        } catch (IOException ex) {
+            broken = true;
+            throw new JedisConnectionException(ex);
+        } catch (JedisConnectionException ex) {
+            broken = true;
+            throw ex;
+        }
+        final String error = replyReader.takeError();
+        if (error != null) {
+            throw new JedisDataException(error);
+        }
+    }
+
+    private void write(ByteBuffer[] buffers, int count) throws IOException {
+        int offset = 0;
+        while (offset < count) {
+            final long written = channel.write(buffers, offset, count - offset);
+            while (offset < count && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+            if (written == 0 && offset < count) {
+                awaitReady(SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void readReplies(int replies) throws IOException {
+        replyReader.expect(replies);
+        while (true) {
+            readBuffer.flip();
+            replyReader.consume(readBuffer);
+            readBuffer.compact();
+            if (replyReader.isComplete()) {
+                return;
+            }
+            if (!readBuffer.hasRemaining()) {
+                throw new JedisConnectionException("reply line exceeds the read buffer of " + READ_BUFFER_SIZE + " bytes");
+            }
+            // replies of a batch that was just written are rarely there yet: waits first instead of an empty read
+            awaitReady(SelectionKey.OP_READ);
+            if (channel.read(readBuffer) < 0) {
+                throw new JedisConnectionException("connection closed by redis");
+            }
+        }
+    }
+
+    private void awaitReady(int operation) throws IOException {
+        if (selectionKey.interestOps() != operation) {
+            // the interest is kept between calls, changing it costs a system call on the next select
+            selectionKey.interestOps(operation);
+        }
+        final int selected = selector.select(soTimeoutMillis);
+        selector.selectedKeys().clear();
+        if (selected == 0) {
+            throw new SocketTimeoutException("redis did not respond within " + soTimeoutMillis + "ms");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        broken = true;
+        replyReader.reset();
+        try {
+            selector.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.util.concurrent.TimeUnit;
+
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Pipeline that encodes the commands directly into the pooled buffers of the connection.
+ * It is reused for all batches of one connection.<br/>
+ * <br/>
+ * In unacknowledged mode RPUSH, PUBLISH, EXPIRE and HINCRBY are sent after {@code CLIENT REPLY OFF}, so redis sends no
+ * replies for them and {@link #sync()} only writes the batch. A {@code CLIENT REPLY ON} is added as confirmation probe,
+ * when the last confirmed reply is older than the confirmation interval, and before each command that needs a reply
+ * (e.g. PING). Reading its reply detects broken connections, but events sent since the last confirmation may be lost.
+ * EVAL and EVALSHA are always sent with replies, so a lost script (NOSCRIPT) is reported and loaded again.
+ */
+final class NioPipeline implements RedisPipeline {
+
+    private static final byte[] RPUSH = Protocol.Command.RPUSH.getRaw();
+    private static final byte[] PUBLISH = Protocol.Command.PUBLISH.getRaw();
+    private static final byte[] PING = Protocol.Command.PING.getRaw();
+    private static final byte[] EXPIRE = Protocol.Command.EXPIRE.getRaw();
+    private static final byte[] HINCRBY = Protocol.Command.HINCRBY.getRaw();
+    private static final byte[] EVAL = Protocol.Command.EVAL.getRaw();
+    private static final byte[] EVALSHA = Protocol.Command.EVALSHA.getRaw();
+    private static final byte[] CLIENT = Protocol.Command.CLIENT.getRaw();
+    private static final byte[] REPLY = SafeEncoder.encode("REPLY");
+    private static final byte[] OFF = SafeEncoder.encode("OFF");
+    private static final byte[] ON = SafeEncoder.encode("ON");
+
+    private final NioConnection connection;
+    private final RespCommandBuffer commands;
+    private final boolean unacknowledged;
+    private final long confirmationIntervalNanos;
+    private int commandCount;
+    /** reply mode of the connection after the sent commands */
+    private boolean repliesOff;
+    /** reply mode of the connection after the queued commands */
+    private boolean queuedRepliesOff;
+    private long lastConfirmationNanos = System.nanoTime();
+
+    /**
+     * @param unacknowledged
+     *            sends RPUSH, PUBLISH, EXPIRE and HINCRBY without replies, scripts are always sent with replies
+     * @param confirmationIntervalMillis
+     *            maximum time between two confirmation probes in unacknowledged mode, 0 confirms each batch
+     */
+    NioPipeline(NioConnection connection, DirectBufferPool bufferPool, boolean unacknowledged, long confirmationIntervalMillis) {
+        this.connection = connection;
+        commands = new RespCommandBuffer(bufferPool);
+        this.unacknowledged = unacknowledged;
+        confirmationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(confirmationIntervalMillis);
+    }
+
+    @Override
+    public void rpush(byte[] key, byte[]... values) {
+        startUnacknowledged();
+        commands.writeArrayHeader(2 + values.length);
+        commands.writeBulkString(RPUSH);
+        commands.writeBulkString(key);
+        for (byte[] value : values) {
+            commands.writeBulkString(value);
+        }
+        countReplies(1);
+    }
+
+    /**
+     * sends values framed on encoding as they are: the command header is followed by the frames.
+     */
+    @Override
+    public void rpush(byte[] key, BatchValues values) {
+        if (!(values instanceof FramedValues)) {
+            rpush(key, values.toByteArrays());
+            return;
+        }
+        startUnacknowledged();
+        commands.writeArrayHeader(2 + values.size());
+        commands.writeBulkString(RPUSH);
+        commands.writeBulkString(key);
+        ((FramedValues) values).writeFramesTo(commands);
+        countReplies(1);
+    }
+
+    @Override
+    public void publish(byte[] channel, byte[] message) {
+        startUnacknowledged();
+        commands.writeCommand(PUBLISH, channel, message);
+        countReplies(1);
+    }
+
+    @Override
+    public void publish(byte[] channel, BatchValues messages) {
+        if (!(messages instanceof FramedValues)) {
+            for (byte[] message : messages.toByteArrays()) {
+                publish(channel, message);
+            }
+            return;
+        }
+        startUnacknowledged();
+        ((FramedValues) messages).copyFramesTo(commands, () -> {
+            commands.writeArrayHeader(3);
+            commands.writeBulkString(PUBLISH);
+            commands.writeBulkString(channel);
+        });
+        countReplies(messages.size());
+    }
+
+    @Override
+    public void expire(byte[] key, int seconds) {
+        startUnacknowledged();
+        commands.writeCommand(EXPIRE, key, Protocol.toByteArray(seconds));
+        countReplies(1);
+    }
+
+    @Override
+    public void hincrBy(byte[] key, byte[] field, long value) {
+        startUnacknowledged();
+        commands.writeCommand(HINCRBY, key, field, Protocol.toByteArray(value));
+        countReplies(1);
+    }
+
+    @Override
+    public void eval(byte[] script, int keyCount, byte[][] keysAndArguments, BatchValues values) {
+        script(EVAL, script, keyCount, keysAndArguments, values);
+    }
+
+    @Override
+    public void evalsha(byte[] sha1, int keyCount, byte[][] keysAndArguments, BatchValues values) {
+        script(EVALSHA, sha1, keyCount, keysAndArguments, values);
+    }
+
+    private void script(byte[] command, byte[] script, int keyCount, byte[][] keysAndArguments, BatchValues values) {
+        // the reply reports NOSCRIPT, the script would never be loaded again otherwise
+        switchRepliesOn();
+        final boolean framed = values instanceof FramedValues;
+        final byte[][] valueArray = framed ? null : values.toByteArrays();
+        commands.writeArrayHeader(3 + keysAndArguments.length + (framed ? values.size() : valueArray.length));
+        commands.writeBulkString(command);
+        commands.writeBulkString(script);
+        commands.writeBulkString(Protocol.toByteArray(keyCount));
+        for (byte[] argument : keysAndArguments) {
+            commands.writeBulkString(argument);
+        }
+        if (framed) {
+            ((FramedValues) values).writeFramesTo(commands);
+        } else {
+            for (byte[] value : valueArray) {
+                commands.writeBulkString(value);
+            }
+        }
+        commandCount++;
+    }
+
+    void ping() {
+        command(PING);
+    }
+
+    /**
+     * queues a command, whose reply is read on sync, also in unacknowledged mode.
+     */
+    void command(byte[]... arguments) {
+        switchRepliesOn();
+        commands.writeCommand(arguments);
+        commandCount++;
+    }
+
+    /**
+     * queues {@code CLIENT REPLY ON}, that fails on redis before 3.2.
+     */
+    void clientReplyOn() {
+        command(CLIENT, REPLY, ON);
+    }
+
+    @Override
+    public void sync() {
+        if (commands.isEmpty()) {
+            return;
+        }
+        if (queuedRepliesOff && System.nanoTime() - lastConfirmationNanos >= confirmationIntervalNanos) {
+            switchRepliesOn();
+        }
+        try {
+            connection.execute(commands, commandCount);
+            if (commandCount > 0) {
+                lastConfirmationNanos = System.nanoTime();
+            }
+        } finally {
+            // commands were sent, also if redis replied with an error. otherwise the connection is broken anyway
+            repliesOff = queuedRepliesOff;
+            commands.release();
+            commandCount = 0;
+        }
+    }
+
+    /**
+     * drops commands of a failed batch, that were queued but not sent.
+     */
+    void clear() {
+        commands.release();
+        commandCount = 0;
+        queuedRepliesOff = repliesOff;
+    }
+
+    private void startUnacknowledged() {
+        if (unacknowledged && !queuedRepliesOff) {
+            // CLIENT REPLY OFF itself has no reply
+            commands.writeCommand(CLIENT, REPLY, OFF);
+            queuedRepliesOff = true;
+        }
+    }
+
+    private void switchRepliesOn() {
+        if (queuedRepliesOff) {
+            commands.writeCommand(CLIENT, REPLY, ON);
+            commandCount++;
+            queuedRepliesOff = false;
+        }
+    }
+
+    private void countReplies(int replies) {
+        if (!queuedRepliesOff) {
+            commandCount += replies;
+        }
+    }
+}
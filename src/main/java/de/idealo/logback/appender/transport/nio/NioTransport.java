@@ -0,0 +1,225 @@
+package de.idealo.logback.appender.transport.nio;
+
+import static de.idealo.logback.appender.utils.ThreadUtils.createThread;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig.RedisScheme;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
+
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Transport that talks RESP over a non-blocking socket channel instead of using jedis.<br/>
+ * <br/>
+ * Commands are encoded directly into pooled direct buffers and sent with one gathering write per batch, replies are
+ * parsed incrementally without creating reply objects. This saves the copies and allocations of jedis' output stream
+ * and response handling on the writer path. Only single nodes ({@link RedisScheme#NODE}) without SSL are supported.
+ * A node on the same host can be reached via its unix domain socket ({@link RedisConnectionConfig#getUnixSocket()}),
+ * which requires java 16 or newer.<br/>
+ * <br/>
+ * With {@link RedisConnectionConfig#isUnacknowledged()} batches are sent without reading replies, see
+ * {@link NioPipeline}. Delivery is at-most-once then: a broken connection is detected by the next confirmation probe
+ * at the latest, the events sent after the last confirmation and errors replied by redis (e.g. WRONGTYPE) get lost
+ * without notice.
+ */
+public class NioTransport implements RedisTransport {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_BUFFERS = 16;
+    private static final byte[] AUTH = Protocol.Command.AUTH.getRaw();
+    private static final byte[] SELECT = Protocol.Command.SELECT.getRaw();
+
+    /*
+     * logger must not be static: logback may not be initialized, when class is loaded.
+     * creating an final static field at this time may result in a null reference
+     */
+    private final Logger log;
+    private final RedisConnectionConfig connectionConfig;
+    private final long retryInitializeIntervalMillis;
+    private final DirectBufferPool bufferPool = new DirectBufferPool(BUFFER_SIZE, MAX_RETAINED_BUFFERS);
+
+    private volatile NioConnection connection;
+    private volatile NioPipeline pipeline;
+    private volatile boolean initializing;
+    private volatile boolean shutdown;
+    /** guarded by this transport, see {@link #getLock()} */
+    private volatile long connectionGeneration;
+
+    /**
+     * creates the transport and establishes the initial connection in the background.
+     */
+    public NioTransport(RedisConnectionConfig connectionConfig, int maxInitTries, long retryInitializeIntervalMillis) {
+        if (maxInitTries < 1) {
+            throw new IllegalArgumentException("max tries must be greater than 0");
+        }
+        if (connectionConfig.getScheme() != RedisScheme.NODE || connectionConfig.isSsl()) {
+            throw new IllegalArgumentException("nio transport only supports scheme " + RedisScheme.NODE + " without ssl");
+        }
+        if (connectionConfig.getConfirmationIntervalMillis() < 0) {
+            throw new IllegalArgumentException("confirmation interval must not be negative");
+        }
+        if (connectionConfig.getUnixSocket() != null && !UnixDomainSockets.isSupported()) {
+            throw new IllegalArgumentException("unix socket '" + connectionConfig.getUnixSocket() + "' requires java 16 or newer");
+        }
+        log = LoggerFactory.getLogger(getClass());
+        this.connectionConfig = connectionConfig;
+        this.retryInitializeIntervalMillis = retryInitializeIntervalMillis;
+        initializing = true;
+        createThread(() -> initConnection(maxInitTries), getClass().getSimpleName(), true).start();
+    }
+
+    @Override
+    public Optional<RedisPipeline> getPipeline() {
+        final NioPipeline currentPipeline = pipeline;
+        if (currentPipeline == null) {
+            return Optional.empty();
+        }
+        currentPipeline.clear();
+        return Optional.of(currentPipeline);
+    }
+
+    /**
+     * @return values that are framed as RESP bulk strings while they are added, see {@link FramedValues}
+     */
+    @Override
+    public BatchValues createBatchValues() {
+        return new FramedValues(bufferPool);
+    }
+
+    @Override
+    public void reconnect() {
+        if (initializing) {
+            return;
+        }
+        closeConnection();
+        connect();
+    }
+
+    @Override
+    public boolean ping() {
+        final NioPipeline currentPipeline = pipeline;
+        if (currentPipeline == null) {
+            return false;
+        }
+        try {
+            currentPipeline.clear();
+            currentPipeline.ping();
+            currentPipeline.sync();
+            return true;
+        } catch (JedisException ex) {
+            log.debug("ping failed", ex);
+            return false;
+        }
+    }
+
+    @Override
+    public ConnectionState getConnectionState() {
+        if (initializing) {
+            return ConnectionState.CONNECTING;
+        }
+        return connection == null ? ConnectionState.DISCONNECTED : ConnectionState.CONNECTED;
+    }
+
+    @Override
+    public long getConnectionGeneration() {
+        return connectionGeneration;
+    }
+
+    @Override
+    public void close() {
+        shutdown = true;
+        closeConnection();
+    }
+
+    boolean isInitializing() {
+        return initializing;
+    }
+
+    @SuppressWarnings("squid:S2142") // rule=Interrupted exceptions should not be ignored: the thread ends anyway
+    private void initConnection(int maxTries) {
+        try {
+            for (int currentTry = 1; !shutdown; currentTry++) {
+                if (currentTry > 1) {
+                    log.info("connect retry {}", currentTry);
+                }
+                if (connect() || currentTry >= maxTries) {
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(retryInitializeIntervalMillis);
+            }
+        } catch (InterruptedException ex) {
+            log.trace("connecting interrupted", ex);
+        } finally {
+            initializing = false;
+        }
+    }
+
+    /**
+     * synchronized on the lock of the transport, so the background connect does not interfere with a writer
+     */
+    private synchronized boolean connect() {
+        NioConnection newConnection = null;
+        try {
+            newConnection = NioConnection.open(getAddress(), connectionConfig.getConnectionTimeout(), connectionConfig.getSoTimeout());
+            final NioPipeline newPipeline = new NioPipeline(newConnection, bufferPool, connectionConfig.isUnacknowledged(),
+                    connectionConfig.getConfirmationIntervalMillis());
+            if (connectionConfig.getPassword() != null) {
+                newPipeline.command(AUTH, SafeEncoder.encode(connectionConfig.getPassword()));
+            }
+            if (connectionConfig.getDatabase() != Protocol.DEFAULT_DATABASE) {
+                newPipeline.command(SELECT, Protocol.toByteArray(connectionConfig.getDatabase()));
+            }
+            if (connectionConfig.isUnacknowledged()) {
+                // fails on redis without CLIENT REPLY, before unanswered commands bring the replies out of step
+                newPipeline.clientReplyOn();
+            }
+            newPipeline.sync();
+            connection = newConnection;
+            pipeline = newPipeline;
+            connectionGeneration++;
+            return true;
+        } catch (IOException | JedisException ex) {
+            log.warn("unable to connect to redis", ex);
+            closeQuietly(newConnection);
+            return false;
+        }
+    }
+
+    SocketAddress getAddress() {
+        if (connectionConfig.getUnixSocket() != null) {
+            return UnixDomainSockets.createAddress(connectionConfig.getUnixSocket());
+        }
+        return new InetSocketAddress(connectionConfig.getHost(), connectionConfig.getPort());
+    }
+
+    private synchronized void closeConnection() {
+        closeQuietly(connection);
+        connection = null;
+        pipeline = null;
+    }
+
+    private void closeQuietly(NioConnection nioConnection) {
+        if (nioConnection == null) {
+            return;
+        }
+        try {
+            nioConnection.close();
+        } catch (IOException ex) {
+            log.debug("Intentionally ignoring exception while closing the connection.", ex);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes commands in the <a href="https://redis.io/topics/protocol">redis protocol (RESP)</a> into a chain of pooled
+ * direct buffers, that is sent with a single gathering write. Instances are not thread safe.
+ */
+final class RespCommandBuffer {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private final DirectBufferPool bufferPool;
+    private final byte[] decimalScratch = new byte[20];
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    /** chunks of other buffers (see {@link #writeChunks(ByteBuffer[], int)}), that are not given back to the pool */
+    private boolean[] foreignChunks = new boolean[4];
+    private int chunkCount;
+    private ByteBuffer current;
+
+    RespCommandBuffer(DirectBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    void writeCommand(byte[]... arguments) {
+        writeArrayHeader(arguments.length);
+        for (byte[] argument : arguments) {
+            writeBulkString(argument);
+        }
+    }
+
+    void writeArrayHeader(int elements) {
+        writeByte('*');
+        writeDecimal(elements);
+        write(CRLF, 0, CRLF.length);
+    }
+
+    void writeBulkString(byte[] value) {
+        writeBulkString(value, 0, value.length);
+    }
+
+    void writeBulkString(byte[] value, int offset, int length) {
+        writeByte('$');
+        writeDecimal(length);
+        write(CRLF, 0, CRLF.length);
+        write(value, offset, length);
+        write(CRLF, 0, CRLF.length);
+    }
+
+    /**
+     * appends the given chunks (in read mode) without copying them, e.g. values framed on encoding.
+     * the chunks must not be modified until this buffer is released.
+     */
+    void writeChunks(ByteBuffer[] sourceChunks, int count) {
+        for (int i = 0; i < count; i++) {
+            addChunk(sourceChunks[i].duplicate(), true);
+        }
+        // further commands start in a new chunk of the pool
+        current = null;
+    }
+
+    /**
+     * copies the given number of bytes from the source buffer (in read mode).
+     */
+    void write(ByteBuffer source, int length) {
+        int remaining = length;
+        while (remaining > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextChunk();
+            }
+            final int bytes = Math.min(remaining, current.remaining());
+            final int limit = source.limit();
+            source.limit(source.position() + bytes);
+            current.put(source);
+            source.limit(limit);
+            remaining -= bytes;
+        }
+    }
+
+    boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    /**
+     * prepares the chunks for writing, no further commands may be added until {@link #release()}.
+     *
+     * @return chunks, the first {@link #getChunkCount()} elements are valid
+     */
+    ByteBuffer[] flip() {
+        for (int i = 0; i < chunkCount; i++) {
+            if (!foreignChunks[i]) {
+                chunks[i].flip();
+            }
+        }
+        return chunks;
+    }
+
+    ByteBuffer[] getChunks() {
+        return chunks;
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * gives the chunks back to the pool and clears the buffer for the next batch.
+     */
+    void release() {
+        for (int i = 0; i < chunkCount; i++) {
+            if (!foreignChunks[i]) {
+                bufferPool.release(chunks[i]);
+            }
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        current = null;
+    }
+
+    private void writeByte(int b) {
+        if (current == null || !current.hasRemaining()) {
+            nextChunk();
+        }
+        current.put((byte) b);
+    }
+
+    private void write(byte[] source, int offset, int length) {
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextChunk();
+            }
+            final int bytes = Math.min(remaining, current.remaining());
+            current.put(source, position, bytes);
+            position += bytes;
+            remaining -= bytes;
+        }
+    }
+
+    private void writeDecimal(long value) {
+        long remaining = value;
+        final boolean negative = remaining < 0;
+        if (negative) {
+            remaining = -remaining;
+        }
+        int position = decimalScratch.length;
+        do {
+            decimalScratch[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (negative) {
+            decimalScratch[--position] = '-';
+        }
+        write(decimalScratch, position, decimalScratch.length - position);
+    }
+
+    private void nextChunk() {
+        current = bufferPool.acquire();
+        addChunk(current, false);
+    }
+
+    private void addChunk(ByteBuffer chunk, boolean foreign) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount << 1);
+            foreignChunks = Arrays.copyOf(foreignChunks, chunkCount << 1);
+        }
+        foreignChunks[chunkCount] = foreign;
+        chunks[chunkCount++] = chunk;
+    }
+}
@@ -0,0 +1,133 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Incremental parser for replies in the <a href="https://redis.io/topics/protocol">redis protocol (RESP)</a>.<br/>
+ * <br/>
+ * The writers only need to know that all replies arrived and whether one of them was an error, so replies are
+ * skipped in place instead of being materialized. Nothing is allocated, except for the message of an error reply.
+ * Data of incomplete replies is left in the buffer and parsing continues after more bytes were read.
+ * Instances are not thread safe.
+ */
+final class RespReplyReader {
+
+    /** replies and nested array elements that still have to be read */
+    private long pendingElements;
+    /** remaining bytes (incl. CRLF) of a bulk string that is split across reads */
+    private long bulkBytesToSkip;
+    private String firstError;
+
+    void expect(int replies) {
+        pendingElements += replies;
+    }
+
+    boolean isComplete() {
+        return pendingElements == 0;
+    }
+
+    /**
+     * @return message of the first error reply since the last call, null if there was none
+     */
+    String takeError() {
+        final String error = firstError;
+        firstError = null;
+        return error;
+    }
+
+    void reset() {
+        pendingElements = 0;
+        bulkBytesToSkip = 0;
+        firstError = null;
+    }
+
+    /**
+     * consumes complete reply elements from the given buffer (in read mode).
+     */
+    void consume(ByteBuffer buffer) {
+        while (pendingElements > 0) {
+            if (bulkBytesToSkip > 0) {
+                final int skipped = (int) Math.min(bulkBytesToSkip, buffer.remaining());
+                buffer.position(buffer.position() + skipped);
+                bulkBytesToSkip -= skipped;
+                if (bulkBytesToSkip > 0) {
+                    return;
+                }
+                pendingElements--;
+                continue;
+            }
+            final int lineEnd = findLineEnd(buffer);
+            if (lineEnd < 0) {
+                return;
+            }
+            consumeLine(buffer, buffer.position(), lineEnd);
+            buffer.position(lineEnd + 2);
+        }
+    }
+
+    private void consumeLine(ByteBuffer buffer, int start, int end) {
+        final byte type = buffer.get(start);
+        switch (type) {
+            case '+':
+            case ':':
+                pendingElements--;
+                break;
+            case '-':
+                if (firstError == null) {
+                    firstError = toString(buffer, start + 1, end);
+                }
+                pendingElements--;
+                break;
+            case '$':
+                final long length = parseLong(buffer, start + 1, end);
+                if (length < 0) {
+                    pendingElements--;
+                } else {
+                    bulkBytesToSkip = length + 2;
+                }
+                break;
+            case '*':
+                final long elements = parseLong(buffer, start + 1, end);
+                pendingElements--;
+                if (elements > 0) {
+                    pendingElements += elements;
+                }
+                break;
+            default:
+                throw new JedisConnectionException("unknown reply type '" + (char) type + "'");
+        }
+    }
+
+    private static int findLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit() - 1; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseLong(ByteBuffer buffer, int start, int end) {
+        final boolean negative = start < end && buffer.get(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final byte digit = buffer.get(i);
+            if (digit < '0' || digit > '9') {
+                throw new JedisConnectionException("invalid number in reply");
+            }
+            value = value * 10 + digit - '0';
+        }
+        return negative ? -value : value;
+    }
+
+    private static String toString(ByteBuffer buffer, int start, int end) {
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
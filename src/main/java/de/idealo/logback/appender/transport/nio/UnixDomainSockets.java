@@ -0,0 +1,87 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Access to unix domain socket channels, which are available since java 16. The library is built for java 8, so
+ * the channels are created via reflection.
+ */
+final class UnixDomainSockets {
+
+    private static final ProtocolFamily UNIX = findUnixProtocolFamily();
+    private static final Method CREATE_ADDRESS = findMethod("java.net.UnixDomainSocketAddress", "of", String.class);
+    private static final Method OPEN_CHANNEL = findMethod(SocketChannel.class.getName(), "open", ProtocolFamily.class);
+
+    private UnixDomainSockets() {
+    }
+
+    static boolean isSupported() {
+        return UNIX != null && CREATE_ADDRESS != null && OPEN_CHANNEL != null;
+    }
+
+    static boolean isUnixAddress(SocketAddress address) {
+        return CREATE_ADDRESS != null && CREATE_ADDRESS.getDeclaringClass().isInstance(address);
+    }
+
+    static SocketAddress createAddress(String path) {
+        checkSupported();
+        return (SocketAddress) invoke(CREATE_ADDRESS, path);
+    }
+
+    static SocketChannel openChannel() throws IOException {
+        checkSupported();
+        try {
+            return (SocketChannel) OPEN_CHANNEL.invoke(null, UNIX);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IllegalStateException("unable to open unix domain socket channel", ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("unable to open unix domain socket channel", ex);
+        }
+    }
+
+    static ProtocolFamily getProtocolFamily() {
+        checkSupported();
+        return UNIX;
+    }
+
+    private static void checkSupported() {
+        if (!isSupported()) {
+            throw new IllegalArgumentException("unix domain sockets require java 16 or newer");
+        }
+    }
+
+    private static Object invoke(Method method, Object argument) {
+        try {
+            return method.invoke(null, argument);
+        } catch (InvocationTargetException ex) {
+            throw new IllegalArgumentException(ex.getCause().getMessage(), ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static ProtocolFamily findUnixProtocolFamily() {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(String className, String name, Class<?> parameterType) {
+        try {
+            return Class.forName(className).getMethod(name, parameterType);
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import de.idealo.logback.appender.DeferredProcessingPreparer.Field;
+import de.idealo.logback.appender.encoder.RedisJsonEncoder;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.EchoEncoder;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class DeferredProcessingPreparerTest {
+
+    @Test
+    public void fields_are_derived_from_pattern() {
+        final DeferredProcessingPreparer preparer = DeferredProcessingPreparer.create(patternEncoder("%d [%thread] %-5level %logger - %msg%n"), null);
+
+        assertThat(preparer.getFields(), containsInAnyOrder(Field.THREAD_NAME, Field.MESSAGE));
+    }
+
+    @Test
+    public void fields_of_composite_converters_are_derived() {
+        final DeferredProcessingPreparer preparer = DeferredProcessingPreparer.create(patternEncoder("%replace(%X{user}){'a', 'b'} %-5(%L)"), "auto");
+
+        assertThat(preparer.getFields(), containsInAnyOrder(Field.MDC, Field.CALLER_DATA));
+    }
+
+    @Test
+    public void fields_of_key_pattern_are_added() {
+        final PatternLayout keyLayout = new PatternLayout();
+        keyLayout.setContext(new LoggerContext());
+        keyLayout.setPattern("logs:%X{tenant}");
+        keyLayout.start();
+
+        final DeferredProcessingPreparer preparer = DeferredProcessingPreparer.create(patternEncoder("%msg"), null, keyLayout);
+
+        assertThat(preparer.getFields(), containsInAnyOrder(Field.MESSAGE, Field.MDC));
+    }
+
+    @Test
+    public void fields_are_derived_from_json_encoder() {
+        final RedisJsonEncoder encoder = new RedisJsonEncoder();
+        encoder.setIncludeCallerData(true);
+
+        assertThat(DeferredProcessingPreparer.create(encoder, null).getFields(),
+                containsInAnyOrder(Field.MESSAGE, Field.THREAD_NAME, Field.MDC, Field.CALLER_DATA));
+
+        encoder.setIncludeCallerData(false);
+        encoder.setIncludeMdc(false);
+
+        assertThat(DeferredProcessingPreparer.create(encoder, null).getFields(), containsInAnyOrder(Field.MESSAGE, Field.THREAD_NAME));
+    }
+
+    @Test
+    public void all_fields_on_unknown_encoder() {
+        final DeferredProcessingPreparer preparer = DeferredProcessingPreparer.create(new EchoEncoder<>(), "AUTO");
+
+        assertThat(preparer.getFields(), is(nullValue()));
+    }
+
+    @Test
+    public void configured_fields_override_encoder() {
+        assertThat(DeferredProcessingPreparer.create(patternEncoder("%msg"), "mdc, THREAD_NAME").getFields(),
+                containsInAnyOrder(Field.MDC, Field.THREAD_NAME));
+        assertThat(DeferredProcessingPreparer.create(patternEncoder("%msg"), "NONE").getFields(), is(empty()));
+        assertThat(DeferredProcessingPreparer.create(patternEncoder("%msg"), "ALL").getFields(), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exception_on_unknown_field() {
+        DeferredProcessingPreparer.create(patternEncoder("%msg"), "message,unknown");
+    }
+
+    @Test
+    public void only_used_fields_are_captured() {
+        final ILoggingEvent event = mock(ILoggingEvent.class);
+
+        DeferredProcessingPreparer.create(patternEncoder("%thread %X"), null).accept(event);
+
+        verify(event).getThreadName();
+        verify(event).getMDCPropertyMap();
+        verify(event, never()).getFormattedMessage();
+        verify(event, never()).getCallerData();
+        verify(event, never()).prepareForDeferredProcessing();
+    }
+
+    @Test
+    public void unknown_events_are_fully_prepared() {
+        final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+
+        DeferredProcessingPreparer.create(patternEncoder("%thread"), null).accept(event);
+
+        verify(event).prepareForDeferredProcessing();
+    }
+
+    private static PatternLayoutEncoder patternEncoder(String pattern) {
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(new LoggerContext());
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+}
@@ -0,0 +1,87 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class KeyPatternResolverTest {
+
+    private final LoggerContext context = new LoggerContext();
+
+    @Test
+    public void key_is_resolved_from_logger_level_marker_and_mdc() {
+        final KeyPatternResolver resolver = new KeyPatternResolver(context, "logs:%logger{0}:%level:%marker:%X{tenant}", "default");
+        final LoggingEvent event = createEvent();
+        event.setMarker(MarkerFactory.getMarker("AUDIT"));
+        event.setMDCPropertyMap(Collections.singletonMap("tenant", "shop1"));
+
+        assertThat(resolver.apply(event), is("logs:Service:WARN:AUDIT:shop1"));
+    }
+
+    @Test
+    public void key_is_resolved_per_time_bucket() {
+        final KeyPatternResolver resolver = new KeyPatternResolver(context, "logs:%d{yyyyMMddHHmm,UTC}", "default");
+        final LoggingEvent event = createEvent();
+        event.setTimeStamp(1442320519256L); // 2015-09-15T12:35:19.256Z
+
+        assertThat(resolver.apply(event), is("logs:201509151235"));
+    }
+
+    @Test
+    public void key_of_logger_and_level_is_cached() {
+        final KeyPatternResolver resolver = new KeyPatternResolver(context, "%logger:%level", "default");
+        final String key = resolver.apply(createEvent());
+
+        assertThat(key, is("de.idealo.Service:WARN"));
+        assertThat(resolver.apply(createEvent()), is(sameInstance(key)));
+        assertThat(resolver.apply(new LoggingEvent("fqcn", context.getLogger("de.idealo.Service"), Level.INFO, "message", null, null)),
+                is("de.idealo.Service:INFO"));
+    }
+
+    @Test
+    public void key_of_other_fields_is_not_cached() {
+        final KeyPatternResolver resolver = new KeyPatternResolver(context, "%level:%X{tenant}", "default");
+        final LoggingEvent event = createEvent();
+        event.setMDCPropertyMap(Collections.singletonMap("tenant", "shop1"));
+        final LoggingEvent otherEvent = createEvent();
+        otherEvent.setMDCPropertyMap(Collections.singletonMap("tenant", "shop2"));
+
+        assertThat(resolver.apply(event), is("WARN:shop1"));
+        assertThat(resolver.apply(otherEvent), is("WARN:shop2"));
+    }
+
+    @Test
+    public void default_key_on_empty_key() {
+        final KeyPatternResolver resolver = new KeyPatternResolver(context, "%X{tenant}", "default");
+
+        assertThat(resolver.apply(createEvent()), is("default"));
+    }
+
+    @Test
+    public void default_key_for_other_events() {
+        final KeyPatternResolver resolver = new KeyPatternResolver(context, "%level", "default");
+
+        assertThat(resolver.apply(mock(DeferredProcessingAware.class)), is("default"));
+    }
+
+    @Test
+    public void invalid_pattern_is_detected() {
+        assertThat(new KeyPatternResolver(context, "logs:%unknownConverter", "default").isValid(), is(false));
+        assertThat(new KeyPatternResolver(context, "logs:%level", "default").isValid(), is(true));
+    }
+
+    private LoggingEvent createEvent() {
+        return new LoggingEvent("fqcn", context.getLogger("de.idealo.Service"), Level.WARN, "message", null, null);
+    }
+}
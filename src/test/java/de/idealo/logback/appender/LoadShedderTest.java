@@ -0,0 +1,90 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class LoadShedderTest {
+
+    private static final int LOW = 20;
+    private static final int HIGH = 60;
+    private static final int CAPACITY = 100;
+    private static final int CRITICAL = 80;
+
+    private final LoggerContext context = new LoggerContext();
+    private final LoadShedder shedder = new LoadShedder(HIGH, LOW, CAPACITY);
+
+    @Test
+    public void nothing_is_shed_below_high_watermark() {
+        assertThat(shedder.shed(createEvent(Level.TRACE), HIGH - 1), is(false));
+        assertThat(shedder.isShedding(), is(false));
+    }
+
+    @Test
+    public void debug_and_trace_are_shed_above_high_watermark() {
+        assertThat(shedder.shed(createEvent(Level.TRACE), HIGH), is(true));
+        assertThat(shedder.shed(createEvent(Level.DEBUG), HIGH), is(true));
+        assertThat(shedder.shed(createEvent(Level.INFO), HIGH), is(false));
+        assertThat(shedder.shed(createEvent(Level.WARN), HIGH), is(false));
+    }
+
+    @Test
+    public void info_is_shed_above_critical_watermark() {
+        assertThat(shedder.shed(createEvent(Level.INFO), CRITICAL), is(true));
+        assertThat(shedder.shed(createEvent(Level.WARN), CAPACITY), is(false));
+        assertThat(shedder.shed(createEvent(Level.ERROR), CAPACITY), is(false));
+        // below critical watermark, but still above high watermark
+        assertThat(shedder.shed(createEvent(Level.INFO), HIGH), is(true));
+        assertThat(shedder.shed(createEvent(Level.INFO), HIGH - 1), is(false));
+        assertThat(shedder.shed(createEvent(Level.DEBUG), HIGH - 1), is(true));
+    }
+
+    @Test
+    public void shedding_stops_below_low_watermark() {
+        shedder.shed(createEvent(Level.DEBUG), HIGH);
+
+        assertThat(shedder.shed(createEvent(Level.DEBUG), LOW), is(true));
+        assertThat(shedder.shed(createEvent(Level.DEBUG), LOW - 1), is(false));
+        assertThat(shedder.isShedding(), is(false));
+        assertThat(shedder.shed(createEvent(Level.DEBUG), HIGH - 1), is(false));
+    }
+
+    @Test
+    public void events_without_level_are_kept() {
+        assertThat(shedder.shed(mock(DeferredProcessingAware.class), CAPACITY), is(false));
+    }
+
+    @Test
+    public void shed_events_are_counted_per_level() {
+        shedder.shed(createEvent(Level.TRACE), CAPACITY);
+        shedder.shed(createEvent(Level.DEBUG), CAPACITY);
+        shedder.shed(createEvent(Level.DEBUG), CAPACITY);
+        shedder.shed(createEvent(Level.INFO), CAPACITY);
+        shedder.shed(createEvent(Level.ERROR), CAPACITY);
+
+        assertThat(shedder.getShedEvents().toString(), is("{TRACE=1, DEBUG=2, INFO=1}"));
+    }
+
+    @Test
+    public void new_watermarks_continue_counters_and_state() {
+        shedder.shed(createEvent(Level.DEBUG), HIGH);
+
+        final LoadShedder changed = shedder.withWatermarks(HIGH * 2, LOW * 2, CAPACITY * 2);
+
+        assertThat(changed.isShedding(), is(true));
+        assertThat(changed.shed(createEvent(Level.DEBUG), LOW * 2), is(true));
+        assertThat(changed.shed(createEvent(Level.DEBUG), LOW * 2 - 1), is(false));
+        assertThat(changed.getShedEvents().get("DEBUG"), is(2L));
+    }
+
+    private LoggingEvent createEvent(Level level) {
+        return new LoggingEvent("fqcn", context.getLogger("LoggingTest"), level, "message", null, null);
+    }
+}
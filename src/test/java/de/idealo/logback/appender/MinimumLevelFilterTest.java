@@ -0,0 +1,39 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class MinimumLevelFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final MinimumLevelFilter filter = new MinimumLevelFilter(Level.WARN);
+
+    @Test
+    public void events_with_minimum_level_are_accepted() {
+        assertThat(filter.test(createEvent(Level.WARN)), is(true));
+        assertThat(filter.test(createEvent(Level.ERROR)), is(true));
+    }
+
+    @Test
+    public void events_below_minimum_level_are_rejected() {
+        assertThat(filter.test(createEvent(Level.INFO)), is(false));
+        assertThat(filter.test(createEvent(Level.DEBUG)), is(false));
+    }
+
+    @Test
+    public void other_events_are_rejected() {
+        assertThat(filter.test(mock(DeferredProcessingAware.class)), is(false));
+    }
+
+    private LoggingEvent createEvent(Level level) {
+        return new LoggingEvent("fqcn", context.getLogger("LoggingTest"), level, "message", null, null);
+    }
+}
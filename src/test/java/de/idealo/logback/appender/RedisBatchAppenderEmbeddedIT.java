@@ -5,6 +5,7 @@ import static java.util.stream.Collectors.joining;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.spy;
 
@@ -22,12 +23,18 @@ import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.slf4j.LoggerFactory;
 
+import de.idealo.logback.appender.encoder.RedisJsonEncoder;
+import de.idealo.logback.appender.jedisclient.ConnectionState;
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
 import de.idealo.logback.appender.utils.MDCUtils;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.pattern.PatternLayoutEncoderBase;
 import ch.qos.logback.core.util.StatusPrinter;
 import redis.clients.jedis.Jedis;
@@ -47,6 +54,7 @@ public class RedisBatchAppenderEmbeddedIT {
     private static final int REDIS_IDLE_TIMEOUT_IN_SECONDS = 3;
     private static final int SLEEP_TIME_IN_SECONDS_FOR_CONNECTION_TIMEOUT = REDIS_IDLE_TIMEOUT_IN_SECONDS + 2;
     private static final String REDIS_KEY_INTEGRATIONTEST = "integrationtest";
+    private static final int SHARED_DATABASE = 1;
     private static final MDCUtils MDC_UTILS = new MDCUtils();
 
     /** defined as retryInitializeIntervalInSeconds in logback-xml.xml */
@@ -176,6 +184,105 @@ public class RedisBatchAppenderEmbeddedIT {
         }
     }
 
+    @Test
+    public void appenders_of_same_endpoint_share_connection() throws Exception {
+        final long connectedClients = countClients();
+        final RedisBatchAppender first = createNodeAppender("shared1", true);
+        final RedisBatchAppender second = createNodeAppender("shared2", true);
+        try {
+            while (first.getConnectionState() != ConnectionState.CONNECTED) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            first.doAppend(new LoggingEvent("fqcn", createRedisLogger(), Level.INFO, "first", null, null));
+            second.doAppend(new LoggingEvent("fqcn", createRedisLogger(), Level.INFO, "second", null, null));
+
+            assertThat(countClients(), is(connectedClients + 1));
+        } finally {
+            first.stop();
+            second.stop();
+        }
+        redisClient.select(SHARED_DATABASE);
+        assertThat(redisClient.lrange("shared1", 0, -1), contains("first"));
+        assertThat(redisClient.lrange("shared2", 0, -1), contains("second"));
+    }
+
+    @Test
+    public void flushed_events_are_in_redis_without_stopping_appender() throws Exception {
+        final RedisBatchAppender appender = createNodeAppender("flushed");
+        try {
+            for (int i = 0; i < 10; i++) {
+                appender.doAppend(new LoggingEvent("fqcn", createRedisLogger(), Level.INFO, "event " + i, null, null));
+            }
+
+            assertThat(appender.flush(10, TimeUnit.SECONDS), is(true));
+
+            redisClient.select(SHARED_DATABASE);
+            assertThat(redisClient.llen("flushed"), is(10L));
+        } finally {
+            appender.stop();
+        }
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void caller_data_of_json_encoder_is_captured_on_logging_thread() throws Exception {
+        final LoggerContext context = new LoggerContext();
+        final RedisJsonEncoder encoder = new RedisJsonEncoder();
+        encoder.setContext(context);
+        encoder.setIncludeCallerData(true);
+        encoder.start();
+        final RedisBatchAppender appender = createNodeAppender("caller", false, context, encoder);
+        final Logger logger = context.getLogger("caller");
+        logger.addAppender((Appender) appender);
+        try {
+            logger.info("hi");
+
+            assertThat(appender.flush(10, TimeUnit.SECONDS), is(true));
+
+            redisClient.select(SHARED_DATABASE);
+            final JSONObject pushed = new JSONObject(redisClient.lindex("caller", 0));
+            assertThat(pushed.getString("file"), is(RedisBatchAppenderEmbeddedIT.class.getSimpleName() + ".java"));
+            assertThat(pushed.getInt("line") > 0, is(true));
+        } finally {
+            appender.stop();
+        }
+    }
+
+    private long countClients() {
+        return redisClient.clientList().split("\n").length;
+    }
+
+    private static RedisBatchAppender createNodeAppender(String key) {
+        return createNodeAppender(key, false);
+    }
+
+    private static RedisBatchAppender createNodeAppender(String key, boolean shareConnection) {
+        final LoggerContext context = new LoggerContext();
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg");
+        encoder.start();
+        return createNodeAppender(key, shareConnection, context, encoder);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static RedisBatchAppender createNodeAppender(String key, boolean shareConnection, LoggerContext context, Encoder<?> encoder) {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(LOCAL_REDIS_PORT);
+        // another endpoint than the appender of logback-test.xml
+        connectionConfig.setDatabase(SHARED_DATABASE);
+        connectionConfig.setKey(key);
+        connectionConfig.setShareConnection(shareConnection);
+
+        final RedisBatchAppender appender = new RedisBatchAppender();
+        appender.setContext(context);
+        appender.setConnectionConfig(connectionConfig);
+        appender.setEncoder((Encoder) encoder);
+        appender.start();
+        return appender;
+    }
+
     private static RedisConnectionConfig getRedisConnectionConfig() {
         RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
         connectionConfig.setSentinels("localhost," + "127.0.0.1:" + LOCAL_REDIS_PORT);
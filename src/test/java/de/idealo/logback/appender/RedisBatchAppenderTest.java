@@ -0,0 +1,167 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.idealo.logback.appender.jedisclient.JedisPoolFactory;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+
+public class RedisBatchAppenderTest {
+
+    private static final int SHED_HIGH_WATERMARK = 10;
+
+    private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    private LoggerContext context;
+    private RedisBatchAppender appender;
+    private ObjectName mbeanName;
+
+    @Before
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void setUp() throws Exception {
+        context = new LoggerContext();
+        context.setName("test");
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg");
+        encoder.start();
+
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setKey("key");
+        connectionConfig.setShareConnection(false);
+
+        // redis is never reached, appended events stay buffered
+        appender = new RedisBatchAppender(mock(JedisPoolFactory.class));
+        appender.setContext(context);
+        appender.setName("redis");
+        appender.setConnectionConfig(connectionConfig);
+        appender.setEncoder((Encoder) encoder);
+        appender.setRegisterMBean(true);
+        appender.start();
+        mbeanName = new ObjectName("de.idealo.logback.appender:type=RedisBatchAppender,context=\"test\",name=\"redis\"");
+    }
+
+    @After
+    public void tearDown() {
+        appender.stop();
+    }
+
+    @Test
+    public void mbean_is_registered_while_started() {
+        assertThat(mbeanServer.isRegistered(mbeanName), is(true));
+
+        appender.stop();
+
+        assertThat(mbeanServer.isRegistered(mbeanName), is(false));
+    }
+
+    @Test
+    public void batch_settings_are_changed_via_jmx() throws Exception {
+        mbeanServer.setAttribute(mbeanName, new Attribute("MaxBatchMessages", 5));
+        mbeanServer.setAttribute(mbeanName, new Attribute("MaxBatchSeconds", 1));
+
+        assertThat(appender.getMaxBatchMessages(), is(5));
+        assertThat(mbeanServer.getAttribute(mbeanName, "MaxBatchSeconds"), is(1));
+        assertThat(mbeanServer.getAttribute(mbeanName, "ConnectionState"), is("CONNECTING"));
+    }
+
+    @Test(expected = RuntimeMBeanException.class)
+    public void invalid_batch_size_is_rejected() throws Exception {
+        try {
+            mbeanServer.setAttribute(mbeanName, new Attribute("MaxBatchMessages", 0));
+        } finally {
+            assertThat(appender.getMaxBatchMessages(), is(1000));
+        }
+    }
+
+    @Test(expected = RuntimeMBeanException.class)
+    public void negative_priority_interval_is_rejected() throws Exception {
+        try {
+            mbeanServer.setAttribute(mbeanName, new Attribute("PriorityMaxBatchMillis", -1L));
+        } finally {
+            assertThat(appender.getPriorityMaxBatchMillis(), is(100L));
+        }
+    }
+
+    @Test
+    public void load_shedding_is_enabled_at_runtime() {
+        appender.setShedHighWatermark(SHED_HIGH_WATERMARK);
+
+        for (int i = 0; i < SHED_HIGH_WATERMARK * 2; i++) {
+            appender.doAppend(createEvent(Level.DEBUG));
+        }
+
+        assertThat(appender.getBufferedEvents(), is(SHED_HIGH_WATERMARK));
+        assertThat(appender.getShedEvents().get("DEBUG"), is((long) SHED_HIGH_WATERMARK));
+    }
+
+    @Test
+    public void invalid_watermarks_keep_previous_ones() {
+        appender.setShedHighWatermark(SHED_HIGH_WATERMARK);
+        try {
+            appender.setShedLowWatermark(SHED_HIGH_WATERMARK + 1);
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        assertThat(appender.getShedLowWatermark(), is(-1));
+        assertThat(appender.getShedEvents().isEmpty(), is(false));
+    }
+
+    @Test
+    public void load_shedding_is_disabled_at_runtime() {
+        appender.setShedHighWatermark(SHED_HIGH_WATERMARK);
+        appender.setShedHighWatermark(0);
+
+        assertThat(appender.getShedEvents(), is(Collections.<String, Long> emptyMap()));
+    }
+
+    @Test
+    public void unknown_deferred_processing_field_prevents_start() {
+        appender.stop();
+        appender.setDeferredProcessingFields("message,unknown");
+
+        appender.start();
+
+        assertThat(appender.isStarted(), is(false));
+    }
+
+    @Test
+    public void flush_times_out_while_connecting() throws Exception {
+        appender.doAppend(createEvent(Level.INFO));
+
+        assertThat(appender.flush(50, TimeUnit.MILLISECONDS), is(false));
+        assertThat(appender.getBufferedEvents(), is(1));
+    }
+
+    @Test
+    public void flush_of_stopped_appender_is_completed() {
+        final RedisBatchAppender stopped = new RedisBatchAppender();
+
+        assertThat(stopped.flush().isDone(), is(true));
+    }
+
+    private LoggingEvent createEvent(Level level) {
+        return new LoggingEvent("fqcn", context.getLogger("test"), level, "message", null, null);
+    }
+}
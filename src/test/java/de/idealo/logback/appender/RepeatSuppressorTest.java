@@ -0,0 +1,119 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class RepeatSuppressorTest {
+
+    private static final long WINDOW_MILLIS = 50L;
+
+    private final LoggerContext context = new LoggerContext();
+    private final List<ILoggingEvent> summaries = new ArrayList<>();
+
+    @Test
+    public void repetitions_within_window_are_suppressed() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(60_000L, 10);
+
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "failed {}", 1, new IllegalStateException()), summaries::add), is(false));
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "failed {}", 2, new IllegalStateException()), summaries::add), is(true));
+        assertThat(summaries, is(empty()));
+    }
+
+    @Test
+    public void events_with_other_fingerprint_are_kept() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(60_000L, 10);
+        suppressor.suppress(createEvent(Level.ERROR, "failed {}", 1, new IllegalStateException()), summaries::add);
+
+        assertThat(suppressor.suppress(createEvent(Level.WARN, "failed {}", 1, new IllegalStateException()), summaries::add), is(false));
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "other", 1, new IllegalStateException()), summaries::add), is(false));
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "failed {}", 1, new IllegalArgumentException()), summaries::add), is(false));
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "failed {}", 1, null), summaries::add), is(false));
+        assertThat(suppressor.suppress(mock(DeferredProcessingAware.class), summaries::add), is(false));
+    }
+
+    @Test
+    public void summary_is_emitted_after_window() throws InterruptedException {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(WINDOW_MILLIS, 10);
+        for (int i = 0; i < 5; i++) {
+            suppressor.suppress(createEvent(Level.ERROR, "failed {}", i, new IllegalStateException()), summaries::add);
+        }
+        TimeUnit.MILLISECONDS.sleep(WINDOW_MILLIS * 2);
+
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "failed {}", 5, new IllegalStateException()), summaries::add), is(false));
+
+        assertThat(summaries.size(), is(1));
+        final ILoggingEvent summary = summaries.get(0);
+        assertThat(summary.getFormattedMessage(), is("repeated 4 times within 50 ms: failed {} (java.lang.IllegalStateException)"));
+        assertThat(summary.getLevel(), is(Level.ERROR));
+        assertThat(summary.getLoggerName(), is("LoggingTest"));
+    }
+
+    @Test
+    public void summary_is_emitted_with_other_event_after_window() throws InterruptedException {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(WINDOW_MILLIS, 10);
+        suppressor.suppress(createEvent(Level.ERROR, "failed", 1, null), summaries::add);
+        suppressor.suppress(createEvent(Level.ERROR, "failed", 2, null), summaries::add);
+        TimeUnit.MILLISECONDS.sleep(WINDOW_MILLIS * 2);
+
+        suppressor.suppress(createEvent(Level.INFO, "other", 1, null), summaries::add);
+
+        assertThat(summaries.size(), is(1));
+        assertThat(summaries.get(0).getFormattedMessage(), is("repeated 1 times within 50 ms: failed"));
+    }
+
+    @Test
+    public void no_summary_without_repetitions() throws InterruptedException {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(WINDOW_MILLIS, 10);
+        suppressor.suppress(createEvent(Level.ERROR, "failed", 1, null), summaries::add);
+        TimeUnit.MILLISECONDS.sleep(WINDOW_MILLIS * 2);
+
+        suppressor.suppress(createEvent(Level.ERROR, "failed", 2, null), summaries::add);
+        suppressor.flush(summaries::add);
+
+        assertThat(summaries, is(empty()));
+    }
+
+    @Test
+    public void pending_summaries_are_emitted_on_flush() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(60_000L, 10);
+        suppressor.suppress(createEvent(Level.ERROR, "failed", 1, null), summaries::add);
+        suppressor.suppress(createEvent(Level.ERROR, "failed", 2, null), summaries::add);
+
+        suppressor.flush(summaries::add);
+
+        assertThat(summaries.size(), is(1));
+        assertThat(summaries.get(0).getFormattedMessage(), is("repeated 1 times within 60000 ms: failed"));
+    }
+
+    @Test
+    public void events_beyond_max_fingerprints_are_kept() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(60_000L, 1);
+        suppressor.suppress(createEvent(Level.ERROR, "first", 1, null), summaries::add);
+        suppressor.suppress(createEvent(Level.ERROR, "second", 1, null), summaries::add);
+
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "first", 2, null), summaries::add), is(true));
+        assertThat(suppressor.suppress(createEvent(Level.ERROR, "second", 2, null), summaries::add), is(false));
+        suppressor.flush(summaries::add);
+        assertThat(summaries.stream().map(ILoggingEvent::getFormattedMessage).toArray(), is(new Object[] { "repeated 1 times within 60000 ms: first" }));
+    }
+
+    private LoggingEvent createEvent(Level level, String message, Object argument, Throwable throwable) {
+        final LoggingEvent event = new LoggingEvent("fqcn", context.getLogger("LoggingTest"), level, message, throwable, new Object[] { argument });
+        event.setThreadName("main");
+        return event;
+    }
+}
@@ -0,0 +1,96 @@
+package de.idealo.logback.appender;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class TenantQuotaTest {
+
+    private static final String MDC_KEY = "tenant";
+
+    private final LoggerContext context = new LoggerContext();
+
+    @Test
+    public void events_over_burst_are_dropped() {
+        final TenantQuota quota = new TenantQuota(MDC_KEY, 1d, 3, 0, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(quota.exceeded(createEvent("noisy")), is(false));
+        }
+        assertThat(quota.exceeded(createEvent("noisy")), is(true));
+        assertThat(quota.exceeded(createEvent("quiet")), is(false));
+    }
+
+    @Test
+    public void tokens_are_refilled() throws InterruptedException {
+        final TenantQuota quota = new TenantQuota(MDC_KEY, 20d, 1, 0, 100);
+        assertThat(quota.exceeded(createEvent("noisy")), is(false));
+        assertThat(quota.exceeded(createEvent("noisy")), is(true));
+
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertThat(quota.exceeded(createEvent("noisy")), is(false));
+    }
+
+    @Test
+    public void events_without_tenant_are_not_limited() {
+        final TenantQuota quota = new TenantQuota(MDC_KEY, 1d, 1, 0, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(quota.exceeded(createEvent(null)), is(false));
+            assertThat(quota.exceeded(mock(DeferredProcessingAware.class)), is(false));
+        }
+    }
+
+    @Test
+    public void every_nth_event_over_quota_is_sampled() {
+        final TenantQuota quota = new TenantQuota(MDC_KEY, 1d, 1, 3, 100);
+        quota.exceeded(createEvent("noisy"));
+
+        int kept = 0;
+        for (int i = 0; i < 9; i++) {
+            kept += quota.exceeded(createEvent("noisy")) ? 0 : 1;
+        }
+
+        assertThat(kept, is(3));
+    }
+
+    @Test
+    public void events_over_quota_are_counted_per_tenant() {
+        final TenantQuota quota = new TenantQuota(MDC_KEY, 1d, 1, 0, 100);
+        for (int i = 0; i < 3; i++) {
+            quota.exceeded(createEvent("noisy"));
+        }
+        quota.exceeded(createEvent("quiet"));
+
+        assertThat(quota.getExceededEvents(), is(Collections.singletonMap("noisy", 2L)));
+    }
+
+    @Test
+    public void tracked_tenants_are_bounded() {
+        final TenantQuota quota = new TenantQuota(MDC_KEY, 1d, 1, 0, 32);
+        for (int i = 0; i < 1000; i++) {
+            quota.exceeded(createEvent("tenant" + i));
+            quota.exceeded(createEvent("tenant" + i));
+        }
+
+        assertThat(quota.getExceededEvents().size(), is(lessThanOrEqualTo(32)));
+    }
+
+    private LoggingEvent createEvent(String tenant) {
+        final LoggingEvent event = new LoggingEvent("fqcn", context.getLogger("LoggingTest"), Level.INFO, "message", null, null);
+        event.setMDCPropertyMap(tenant == null ? Collections.emptyMap() : Collections.singletonMap(MDC_KEY, tenant));
+        return event;
+    }
+}
@@ -0,0 +1,87 @@
+package de.idealo.logback.appender.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.idealo.logback.appender.jediswriter.EventBuffer;
+
+/**
+ * Compares the append cost of the single queue (one stripe) with striped buffers at 1, 8, 32 and 64 appending
+ * threads, while a flushing thread drains the buffer continuously. Run with the test classpath, e.g. from the IDE or
+ * via {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...EventBufferBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBufferBenchmark {
+
+    private static final int[] THREADS = { 1, 8, 32, 64 };
+    private static final Object EVENT = new Object();
+
+    @Param({ "1", "16", "64" })
+    private int stripes;
+
+    @Param({ "false", "true" })
+    private boolean mergeOrdered;
+
+    private EventBuffer<Object> buffer;
+    private Thread flusher;
+    private volatile boolean flushing;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        buffer = new EventBuffer<>(100_000, stripes, mergeOrdered ? (first, second) -> 0 : null);
+        flushing = true;
+        flusher = new Thread(this::drain, "flusher");
+        flusher.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        flushing = false;
+        flusher.join();
+    }
+
+    @Benchmark
+    public boolean offer() {
+        return buffer.offer(EVENT);
+    }
+
+    private void drain() {
+        final List<Object> batch = new ArrayList<>();
+        while (flushing) {
+            buffer.drainTo(batch);
+            batch.clear();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                    .include(EventBufferBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
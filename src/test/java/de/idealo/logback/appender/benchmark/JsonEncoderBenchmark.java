@@ -0,0 +1,108 @@
+package de.idealo.logback.appender.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.idealo.logback.appender.encoder.RedisJsonEncoder;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import net.logstash.logback.composite.loggingevent.LoggingEventJsonProviders;
+import net.logstash.logback.composite.loggingevent.LoggingEventPatternJsonProvider;
+import net.logstash.logback.composite.loggingevent.MdcJsonProvider;
+import net.logstash.logback.composite.loggingevent.StackTraceJsonProvider;
+import net.logstash.logback.encoder.LoggingEventCompositeJsonEncoder;
+
+/**
+ * Compares {@link RedisJsonEncoder} with the composite JSON encoder of logstash-logback-encoder configured as
+ * recommended in the README. Run with the test classpath, e.g. from the IDE or via
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...JsonEncoderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonEncoderBenchmark {
+
+    @Param({ "false", "true" })
+    private boolean withException;
+
+    private LoggingEventCompositeJsonEncoder logstashEncoder;
+    private RedisJsonEncoder redisJsonEncoder;
+    private LoggingEvent event;
+
+    @Setup
+    public void setUp() {
+        final LoggerContext context = new LoggerContext();
+
+        final LoggingEventJsonProviders providers = new LoggingEventJsonProviders();
+        providers.addMdc(new MdcJsonProvider());
+        final LoggingEventPatternJsonProvider pattern = new LoggingEventPatternJsonProvider();
+        pattern.setPattern("{\"timestamp\": \"%d{yyyy-MM-dd'T'HH:mm:ss.SSSZZ}\", \"level\": \"%level\", \"logger\": \"%logger\","
+                + " \"thread\": \"%thread\", \"message\": \"%message\", \"app\": \"benchmark\", \"host\": \"localhost\"}");
+        providers.addPattern(pattern);
+        providers.addStackTrace(new StackTraceJsonProvider());
+        logstashEncoder = new LoggingEventCompositeJsonEncoder();
+        logstashEncoder.setContext(context);
+        logstashEncoder.setProviders(providers);
+        logstashEncoder.start();
+
+        redisJsonEncoder = new RedisJsonEncoder();
+        redisJsonEncoder.setContext(context);
+        redisJsonEncoder.addStaticField("app=benchmark");
+        redisJsonEncoder.addStaticField("host=localhost");
+        redisJsonEncoder.start();
+
+        final Map<String, String> mdc = new HashMap<>();
+        mdc.put("requestId", "4711-0815");
+        mdc.put("user", "jdoe");
+        event = new LoggingEvent("fqcn", context.getLogger("de.idealo.Benchmark"), Level.INFO,
+                "processed request {} in {} ms", withException ? new IllegalStateException("benchmark") : null,
+                new Object[] { "/offers", 42 });
+        event.setMDCPropertyMap(mdc);
+        event.prepareForDeferredProcessing();
+    }
+
+    /** encoding as done by the writer before: encoder result is converted to a String */
+    @Benchmark
+    public String logstashEncoderToString() {
+        return new String(logstashEncoder.encode(event), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] logstashEncoder() {
+        return logstashEncoder.encode(event);
+    }
+
+    @Benchmark
+    public byte[] redisJsonEncoder() {
+        return redisJsonEncoder.encode(event);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonEncoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
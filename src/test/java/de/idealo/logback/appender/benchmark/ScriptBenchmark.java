@@ -0,0 +1,157 @@
+package de.idealo.logback.appender.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.JedisPoolCreator;
+import de.idealo.logback.appender.jedisclient.JedisPoolFactory;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.jediswriter.AbstractBufferedJedisWriter;
+import de.idealo.logback.appender.jediswriter.BufferedJedisWriterFactory;
+import de.idealo.logback.appender.jediswriter.JedisWriterConfiguration;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.EncoderBase;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+/**
+ * Compares the writer path of method RPUSH (one pipelined RPUSH per batch) with method EVALSHA (one script call per
+ * batch, that also trims the list, sets its expiry and counts the events) against an embedded redis. One operation is
+ * one event, the last event of each invocation sends the batch. Run with the test classpath, e.g. from the IDE or via
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...ScriptBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+
+    private static final String KEY = "benchmark";
+    private static final int BATCH_SIZE = 100;
+    private static final int EVENT_SIZE = 300;
+
+    @Param({ "RPUSH", "EVALSHA" })
+    private RedisConnectionConfig.Method method;
+
+    @Param({ "JEDIS", "NIO" })
+    private RedisConnectionConfig.Transport transport;
+
+    private RedisServer redisServer;
+    private Jedis jedis;
+    private AbstractBufferedJedisWriter writer;
+    private LoggingEvent event;
+
+    @Setup
+    public void setUp() throws Exception {
+        final int port = getRandomPort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        jedis = new Jedis("localhost", port);
+
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(port);
+        connectionConfig.setKey(KEY);
+        connectionConfig.setMethod(method);
+        connectionConfig.setTransport(transport);
+        connectionConfig.setMaxLength(10_000);
+        connectionConfig.setExpireSeconds(3600);
+        connectionConfig.setCounterKey(KEY + ":counters");
+
+        final byte[] value = new byte[EVENT_SIZE];
+        Arrays.fill(value, (byte) 'x');
+        writer = new BufferedJedisWriterFactory(new JedisPoolFactory(new JedisPoolCreator()))
+                .createJedisWriter(JedisWriterConfiguration.builder()
+                        .maxInitializeTries(1)
+                        .maxBufferedMessages(BATCH_SIZE)
+                        .flushBufferIntervalMillis(TimeUnit.MINUTES.toMillis(1))
+                        .encoder(new FixedEncoder(value))
+                        .connectionConfig(connectionConfig)
+                        .build());
+        while (writer.getConnectionState() == ConnectionState.CONNECTING) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        event = new LoggingEvent("fqcn", new LoggerContext().getLogger("benchmark"), ch.qos.logback.classic.Level.INFO, "benchmark", null, null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteKey() {
+        jedis.del(KEY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        writer.close();
+        jedis.close();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void appendBatch() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            writer.append(event);
+        }
+    }
+
+    private static int getRandomPort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScriptBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static final class FixedEncoder extends EncoderBase<DeferredProcessingAware> {
+        private final byte[] value;
+
+        private FixedEncoder(byte[] value) {
+            this.value = value;
+        }
+
+        @Override
+        public byte[] headerBytes() {
+            return null;
+        }
+
+        @Override
+        public byte[] encode(DeferredProcessingAware event) {
+            return value;
+        }
+
+        @Override
+        public byte[] footerBytes() {
+            return null;
+        }
+    }
+}
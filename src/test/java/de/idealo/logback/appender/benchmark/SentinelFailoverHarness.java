@@ -0,0 +1,184 @@
+package de.idealo.logback.appender.benchmark;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.idealo.logback.appender.RedisBatchAppender;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.Jedis;
+import redis.embedded.Redis;
+import redis.embedded.RedisCluster;
+import redis.embedded.RedisSentinelBuilder;
+import redis.embedded.util.JedisUtil;
+
+/**
+ * Measures how long the appender needs to write to the new master after a sentinel failover.<br/>
+ * <br/>
+ * Starts an embedded master, one replica and three sentinels, logs a sequence number every millisecond and stops the
+ * master (argument {@code stop}, default) or triggers a manual failover that demotes the master to a replica
+ * (argument {@code failover}). The harness reports when the sentinels announced the new master, when the first batch
+ * arrived there and how many events got lost. Run with the test classpath, e.g. from the IDE or via
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...SentinelFailoverHarness}.
+ */
+public class SentinelFailoverHarness {
+
+    private static final String MASTER_NAME = "master1";
+    private static final String KEY = "failover";
+    private static final long DOWN_AFTER_MILLIS = 1_000L;
+    private static final long TIMEOUT_MILLIS = 60_000L;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final boolean manualFailover;
+    private volatile boolean producing = true;
+
+    private SentinelFailoverHarness(boolean manualFailover) {
+        this.manualFailover = manualFailover;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new SentinelFailoverHarness(args.length > 0 && "failover".equals(args[0])).run();
+    }
+
+    private void run() throws InterruptedException {
+        final RedisCluster cluster = RedisCluster.builder().ephemeral().sentinelCount(3).quorumSize(2)
+                .withSentinelBuilder(new RedisSentinelBuilder().downAfterMilliseconds(DOWN_AFTER_MILLIS).failoverTimeout(3 * DOWN_AFTER_MILLIS))
+                .replicationGroup(MASTER_NAME, 1)
+                .build();
+        cluster.start();
+        final RedisBatchAppender appender = createAppender(JedisUtil.sentinelHosts(cluster));
+        try {
+            final Thread producer = new Thread(() -> produce(appender), "producer");
+            producer.start();
+            // sentinels discover the replica via INFO of the master every 10 seconds
+            TimeUnit.SECONDS.sleep(12);
+
+            final int oldMasterPort = getMasterPort(cluster);
+            if (manualFailover) {
+                failover(cluster);
+            } else {
+                stopServer(cluster, oldMasterPort);
+            }
+            final long stopNanos = System.nanoTime();
+            final long sequenceAtStop = sequence.get();
+
+            int newMasterPort = oldMasterPort;
+            while (newMasterPort == oldMasterPort && !timedOut(stopNanos)) {
+                TimeUnit.MILLISECONDS.sleep(10);
+                newMasterPort = getMasterPort(cluster);
+            }
+            final long announcedNanos = System.nanoTime();
+
+            try (Jedis newMaster = new Jedis("localhost", newMasterPort)) {
+                // the replica already holds the events replicated before the failover
+                final long replicatedEvents = newMaster.llen(KEY);
+                while (newMaster.llen(KEY) <= replicatedEvents && !timedOut(stopNanos)) {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                }
+                final long firstBatchNanos = System.nanoTime();
+
+                producing = false;
+                producer.join();
+                appender.stop();
+                final long lostEvents = sequence.get() - countDistinct(newMaster.lrange(KEY, 0, -1));
+
+                System.out.printf("master %d %s after %d events%n", oldMasterPort, manualFailover ? "demoted" : "stopped", sequenceAtStop);
+                System.out.printf("sentinels announced master %d after %d ms%n", newMasterPort, toMillis(announcedNanos - stopNanos));
+                System.out.printf("first batch written to new master after %d ms%n", toMillis(firstBatchNanos - stopNanos));
+                System.out.printf("lost %d of %d events%n", lostEvents, sequence.get());
+            }
+        } finally {
+            producing = false;
+            if (appender.isStarted()) {
+                appender.stop();
+            }
+            cluster.stop();
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static RedisBatchAppender createAppender(Set<String> sentinels) {
+        final LoggerContext context = new LoggerContext();
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg");
+        encoder.start();
+
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.SENTINEL);
+        connectionConfig.setSentinels(sentinels.stream().collect(joining(",")));
+        connectionConfig.setSentinelMasterName(MASTER_NAME);
+        connectionConfig.setKey(KEY);
+        connectionConfig.setTimeout(2_000);
+
+        final RedisBatchAppender appender = new RedisBatchAppender();
+        appender.setContext(context);
+        appender.setConnectionConfig(connectionConfig);
+        appender.setEncoder((Encoder) encoder);
+        appender.setMaxBatchMessages(100);
+        appender.setMaxBatchSeconds(1);
+        appender.start();
+        return appender;
+    }
+
+    @SuppressWarnings("squid:S2142") // rule=Interrupted exceptions should not be ignored: producing stops anyway
+    private void produce(RedisBatchAppender appender) {
+        final LoggerContext context = new LoggerContext();
+        while (producing) {
+            final LoggingEvent event = new LoggingEvent("fqcn", context.getLogger("failover"), Level.INFO,
+                    Long.toString(sequence.incrementAndGet()), null, null);
+            appender.doAppend(event);
+            try {
+                TimeUnit.MILLISECONDS.sleep(1);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private static int getMasterPort(RedisCluster cluster) {
+        for (int sentinelPort : cluster.sentinelPorts()) {
+            try (Jedis sentinel = new Jedis("localhost", sentinelPort)) {
+                return Integer.parseInt(sentinel.sentinelGetMasterAddrByName(MASTER_NAME).get(1));
+            } catch (RuntimeException ex) {
+                // asks the next sentinel
+            }
+        }
+        throw new IllegalStateException("no sentinel knows the master");
+    }
+
+    private static void failover(RedisCluster cluster) {
+        try (Jedis sentinel = new Jedis("localhost", cluster.sentinelPorts().get(0))) {
+            sentinel.sentinelFailover(MASTER_NAME);
+        }
+    }
+
+    private static void stopServer(RedisCluster cluster, int port) {
+        final List<Integer> ports = cluster.serverPorts();
+        final Redis server = cluster.servers().get(ports.indexOf(port));
+        server.stop();
+    }
+
+    private static long countDistinct(List<String> values) {
+        return new HashSet<>(values).size();
+    }
+
+    private static boolean timedOut(long startNanos) {
+        return toMillis(System.nanoTime() - startNanos) > TIMEOUT_MILLIS;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
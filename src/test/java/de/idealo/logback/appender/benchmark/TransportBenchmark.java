@@ -0,0 +1,146 @@
+package de.idealo.logback.appender.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.jedisclient.JedisClientProvider;
+import de.idealo.logback.appender.jedisclient.JedisPoolCreator;
+import de.idealo.logback.appender.jedisclient.JedisPoolFactory;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.JedisTransport;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
+import de.idealo.logback.appender.transport.nio.NioTransport;
+
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+/**
+ * Compares the writer path (one pipelined RPUSH per batch) of the jedis and the nio transport against an embedded
+ * redis. Run with the test classpath, e.g. from the IDE or via
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...TransportBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+    private static final int EVENT_SIZE = 300;
+
+    @Param({ "JEDIS", "NIO" })
+    private RedisConnectionConfig.Transport transportType;
+
+    @Param({ "1", "100" })
+    private int batchSize;
+
+    private RedisServer redisServer;
+    private RedisTransport transport;
+    private Jedis jedis;
+    private byte[][] values;
+    private BatchValues batchValues;
+
+    @Setup
+    public void setUp() throws Exception {
+        final int port = getRandomPort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        jedis = new Jedis("localhost", port);
+
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(port);
+        if (transportType == RedisConnectionConfig.Transport.NIO) {
+            transport = new NioTransport(connectionConfig, 1, 0L);
+        } else {
+            final JedisClientProvider clientProvider = new JedisClientProvider(new JedisPoolFactory(new JedisPoolCreator()), connectionConfig);
+            transport = new JedisTransport(new JedisClient(clientProvider, 1, 0L));
+        }
+        while (transport.getConnectionState() == ConnectionState.CONNECTING) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        final byte[] value = new byte[EVENT_SIZE];
+        Arrays.fill(value, (byte) 'x');
+        values = new byte[batchSize][];
+        Arrays.fill(values, value);
+        batchValues = transport.createBatchValues();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteKey() {
+        jedis.del(KEY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        transport.close();
+        jedis.close();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public void rpush() {
+        synchronized (transport) {
+            final RedisPipeline pipeline = transport.getPipeline().orElseThrow(IllegalStateException::new);
+            pipeline.rpush(KEY, values);
+            pipeline.sync();
+        }
+    }
+
+    /** writer path: the values are framed while they are added and the batch is sent with one gathering write */
+    @Benchmark
+    public void rpushBatchValues() {
+        synchronized (transport) {
+            for (byte[] value : values) {
+                batchValues.add(value);
+            }
+            try {
+                final RedisPipeline pipeline = transport.getPipeline().orElseThrow(IllegalStateException::new);
+                pipeline.rpush(KEY, batchValues);
+                pipeline.sync();
+            } finally {
+                batchValues.clear();
+            }
+        }
+    }
+
+    private static int getRandomPort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransportBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,205 @@
+package de.idealo.logback.appender.encoder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+
+public class RedisJsonEncoderTest {
+
+    private static final long TIMESTAMP = 1442320519256L; // 2015-09-15T12:35:19.256Z
+
+    private LoggerContext context;
+    private RedisJsonEncoder encoder;
+
+    @Before
+    public void setUp() {
+        context = new LoggerContext();
+        encoder = new RedisJsonEncoder();
+        encoder.setContext(context);
+        encoder.setTimeZone("Europe/Berlin");
+        encoder.addStaticField("app=my \"app\"");
+        encoder.addStaticField("host = myHost");
+        encoder.start();
+    }
+
+    @Test
+    public void event_is_encoded_as_json() throws Exception {
+        final Map<String, String> mdc = new HashMap<>();
+        mdc.put("mdcKey1", "value1");
+        final LoggingEvent event = createEvent("hello {}", "world");
+        event.setMDCPropertyMap(mdc);
+
+        final String json = encode(event);
+
+        JSONAssert.assertEquals("{\"timestamp\":\"2015-09-15T14:35:19.256+0200\","
+                + "\"level\":\"INFO\",\"logger\":\"LoggingTest\",\"thread\":\"main\",\"message\":\"hello world\","
+                + "\"mdcKey1\":\"value1\",\"app\":\"my \\\"app\\\"\",\"host\":\"myHost\"}", json, true);
+    }
+
+    @Test
+    public void special_characters_are_escaped() throws Exception {
+        final String message = "quote \" backslash \\ newline \n tab \t control \u0001 umlaut ä euro € smiley 😀";
+
+        final String json = encode(createEvent(message));
+
+        assertThat(new JSONObject(json).getString("message"), is(message));
+    }
+
+    @Test
+    public void stack_trace_is_encoded() throws Exception {
+        final IllegalStateException exception = new IllegalStateException("broken", new IllegalArgumentException("cause"));
+        exception.addSuppressed(new UnsupportedOperationException("suppressed"));
+        final LoggingEvent event = new LoggingEvent("fqcn", context.getLogger("LoggingTest"), Level.ERROR, "failed", exception, null);
+        event.setThreadName("main");
+
+        final String stackTrace = new JSONObject(encode(event)).getString("stack_trace");
+
+        assertThat(stackTrace, is(ThrowableProxyUtil.asString(event.getThrowableProxy())));
+    }
+
+    @Test
+    public void stack_trace_is_sent_once_per_window() throws Exception {
+        final RedisJsonEncoder dedupEncoder = createDedupEncoder(1024);
+
+        final long[] timestamps = { TIMESTAMP, TIMESTAMP + 59_999, TIMESTAMP + 60_000 };
+        final JSONObject[] documents = new JSONObject[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            // same stack trace, different messages
+            documents[i] = new JSONObject(encode(dedupEncoder, createErrorEvent(createException("failure " + i), timestamps[i])));
+        }
+        final JSONObject first = documents[0];
+        final JSONObject repeated = documents[1];
+        final JSONObject nextWindow = documents[2];
+
+        assertThat(first.has("stack_trace"), is(true));
+        assertThat(repeated.has("stack_trace"), is(false));
+        assertThat(nextWindow.has("stack_trace"), is(true));
+        assertThat(first.getString("stack_hash").length(), is(16));
+        assertThat(repeated.getString("stack_hash"), is(first.getString("stack_hash")));
+        assertThat(nextWindow.getString("stack_hash"), is(first.getString("stack_hash")));
+    }
+
+    @Test
+    public void different_stack_traces_have_different_hashes() throws Exception {
+        final RedisJsonEncoder dedupEncoder = createDedupEncoder(1024);
+
+        final JSONObject first = new JSONObject(encode(dedupEncoder, createErrorEvent(createException("first"), TIMESTAMP)));
+        final JSONObject other = new JSONObject(encode(dedupEncoder, createErrorEvent(new IllegalStateException("other"), TIMESTAMP)));
+
+        assertThat(other.has("stack_trace"), is(true));
+        assertThat(other.getString("stack_hash").equals(first.getString("stack_hash")), is(false));
+    }
+
+    @Test
+    public void evicted_stack_traces_are_sent_again() throws Exception {
+        final RedisJsonEncoder dedupEncoder = createDedupEncoder(1);
+
+        final IllegalStateException exception = createException("first");
+        encode(dedupEncoder, createErrorEvent(exception, TIMESTAMP));
+        encode(dedupEncoder, createErrorEvent(new IllegalStateException("other"), TIMESTAMP));
+        final JSONObject evicted = new JSONObject(encode(dedupEncoder, createErrorEvent(exception, TIMESTAMP)));
+
+        assertThat(evicted.has("stack_trace"), is(true));
+    }
+
+    @Test
+    public void stack_trace_of_unsent_event_is_sent_again() throws Exception {
+        final RedisJsonEncoder dedupEncoder = createDedupEncoder(1024);
+
+        final IllegalStateException exception = createException("first");
+        final LoggingEvent unsent = createErrorEvent(exception, TIMESTAMP);
+        encode(dedupEncoder, unsent);
+        final LoggingEvent sent = createErrorEvent(exception, TIMESTAMP + 1);
+        dedupEncoder.forgetStackTrace(unsent);
+        final JSONObject resent = new JSONObject(encode(dedupEncoder, sent));
+        dedupEncoder.forgetStackTrace(unsent);
+        final JSONObject deduplicated = new JSONObject(encode(dedupEncoder, createErrorEvent(exception, TIMESTAMP + 2)));
+
+        assertThat(resent.has("stack_trace"), is(true));
+        // only the event that carried the stack trace in full unmarks it
+        assertThat(deduplicated.has("stack_trace"), is(false));
+    }
+
+    @Test
+    public void millis_and_seconds_are_formatted_separately() throws Exception {
+        final LoggingEvent first = createEvent("first");
+        final LoggingEvent sameSecond = createEvent("same second");
+        sameSecond.setTimeStamp(TIMESTAMP + 5);
+        final LoggingEvent nextSecond = createEvent("next second");
+        nextSecond.setTimeStamp(TIMESTAMP + 1000);
+
+        assertThat(new JSONObject(encode(first)).getString("timestamp"), is("2015-09-15T14:35:19.256+0200"));
+        assertThat(new JSONObject(encode(sameSecond)).getString("timestamp"), is("2015-09-15T14:35:19.261+0200"));
+        assertThat(new JSONObject(encode(nextSecond)).getString("timestamp"), is("2015-09-15T14:35:20.256+0200"));
+    }
+
+    @Test
+    public void buffer_is_reused_between_events() {
+        final EncodingBuffer buffer = new EncodingBuffer(16);
+
+        encoder.encode(createEvent("first"), buffer);
+        final int firstSize = buffer.size();
+        buffer.reset();
+        encoder.encode(createEvent("first"), buffer);
+
+        assertThat(buffer.size(), is(firstSize));
+        assertThat(new String(buffer.toByteArray(), StandardCharsets.UTF_8), is(encode(createEvent("first"))));
+    }
+
+    @Test
+    public void invalid_static_field_prevents_start() {
+        final RedisJsonEncoder invalidEncoder = new RedisJsonEncoder();
+        invalidEncoder.setContext(context);
+        invalidEncoder.addStaticField("no value");
+        invalidEncoder.start();
+
+        assertThat(invalidEncoder.isStarted(), is(false));
+    }
+
+    private String encode(LoggingEvent event) {
+        return encode(encoder, event);
+    }
+
+    private static String encode(RedisJsonEncoder encoder, LoggingEvent event) {
+        return new String(encoder.encode(event), StandardCharsets.UTF_8);
+    }
+
+    private RedisJsonEncoder createDedupEncoder(int cacheSize) {
+        final RedisJsonEncoder dedupEncoder = new RedisJsonEncoder();
+        dedupEncoder.setContext(context);
+        dedupEncoder.setStackTraceDedupWindowMillis(60_000L);
+        dedupEncoder.setStackTraceDedupCacheSize(cacheSize);
+        dedupEncoder.start();
+        return dedupEncoder;
+    }
+
+    private LoggingEvent createErrorEvent(Throwable throwable, long timestamp) {
+        final LoggingEvent event = new LoggingEvent("fqcn", context.getLogger("LoggingTest"), Level.ERROR, "failed", throwable, null);
+        event.setTimeStamp(timestamp);
+        return event;
+    }
+
+    private static IllegalStateException createException(String message) {
+        return new IllegalStateException(message, new IllegalArgumentException("cause"));
+    }
+
+    private LoggingEvent createEvent(String message, Object... arguments) {
+        final LoggingEvent event = new LoggingEvent("fqcn", context.getLogger("LoggingTest"), Level.INFO, message, null, arguments);
+        event.setThreadName("main");
+        event.setTimeStamp(TIMESTAMP);
+        return event;
+    }
+}
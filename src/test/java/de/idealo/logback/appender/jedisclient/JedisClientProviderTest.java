@@ -1,6 +1,8 @@
 package de.idealo.logback.appender.jedisclient;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Before;
@@ -10,7 +12,9 @@ import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
 import redis.clients.jedis.util.Pool;
 
 public class JedisClientProviderTest {
@@ -64,4 +68,34 @@ public class JedisClientProviderTest {
         assertEquals(null, clientProvider.getJedisClient().orElse(null));
         assertEquals(client, clientProvider.getJedisClient().orElse(null));
     }
+
+    @Test
+    public void no_current_master_without_sentinels() {
+        clientProvider.getJedisClient();
+
+        assertEquals(null, clientProvider.getCurrentMaster().orElse(null));
+    }
+
+    @Test
+    public void discarded_client_of_node_pool_is_closed() {
+        clientProvider.getJedisClient();
+
+        clientProvider.discardJedisClient(client);
+
+        verify(client).close();
+    }
+
+    @Test
+    public void current_master_is_taken_from_sentinel_pool() {
+        final JedisSentinelPool sentinelPool = mock(JedisSentinelPool.class);
+        final HostAndPort master = new HostAndPort("10.0.0.2", 6379);
+        when(sentinelPool.getCurrentHostMaster()).thenReturn(master);
+        when(sentinelPool.getResource()).thenReturn(client);
+        when(poolFactory.createPool(Matchers.any())).thenReturn(sentinelPool);
+
+        assertEquals(null, clientProvider.getCurrentMaster().orElse(null));
+        clientProvider.getJedisClient();
+
+        assertEquals(master, clientProvider.getCurrentMaster().orElse(null));
+    }
 }
@@ -0,0 +1,106 @@
+package de.idealo.logback.appender.jedisclient;
+
+import static java.util.stream.Collectors.joining;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.embedded.RedisCluster;
+import redis.embedded.util.JedisUtil;
+
+public class JedisClientSentinelIT {
+
+    private static final String MASTER_NAME = "master1";
+    private static final String KEY = "failover";
+    private static final long TIMEOUT_MILLIS = 30_000L;
+
+    private RedisCluster cluster;
+    private JedisClient jedisClient;
+
+    @Before
+    public void setUp() {
+        cluster = RedisCluster.builder().ephemeral().sentinelCount(1).quorumSize(1)
+                .replicationGroup(MASTER_NAME, 1)
+                .build();
+        cluster.start();
+
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.SENTINEL);
+        connectionConfig.setSentinels(JedisUtil.sentinelHosts(cluster).stream().collect(joining(",")));
+        connectionConfig.setSentinelMasterName(MASTER_NAME);
+        // no validation, a connection given back to the pool is handed out again as it is
+        connectionConfig.setTestOnBorrow(false);
+        final JedisClientProvider clientProvider = new JedisClientProvider(new JedisPoolFactory(new JedisPoolCreator()), connectionConfig);
+        jedisClient = new JedisClient(clientProvider, 1, 0L);
+    }
+
+    @After
+    public void tearDown() {
+        jedisClient.close();
+        cluster.stop();
+    }
+
+    @Test
+    public void batches_are_sent_to_new_master_after_failover() throws InterruptedException {
+        while (jedisClient.isInitializing()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        push("before");
+        final HostAndPort oldMaster = getMaster();
+
+        failover();
+        HostAndPort newMaster = getMaster();
+        final long start = System.currentTimeMillis();
+        while (newMaster.equals(oldMaster) && System.currentTimeMillis() - start < TIMEOUT_MILLIS) {
+            TimeUnit.MILLISECONDS.sleep(100);
+            newMaster = getMaster();
+        }
+        // the sentinel pool learns the new master from +switch-master
+        TimeUnit.SECONDS.sleep(1);
+        push("after");
+
+        try (Jedis jedis = new Jedis(newMaster.getHost(), newMaster.getPort())) {
+            assertThat(jedis.lrange(KEY, 0, -1).contains("after"), is(true));
+        }
+    }
+
+    private void push(String value) {
+        final Pipeline pipeline = jedisClient.getPipeline().orElseThrow(IllegalStateException::new);
+        pipeline.rpush(KEY.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+        pipeline.sync();
+    }
+
+    private HostAndPort getMaster() {
+        try (Jedis sentinel = new Jedis("localhost", cluster.sentinelPorts().get(0))) {
+            return HostAndPort.parseString(String.join(":", sentinel.sentinelGetMasterAddrByName(MASTER_NAME)));
+        }
+    }
+
+    private void failover() throws InterruptedException {
+        // the sentinel discovers the replica via INFO of the master, it may not be suitable for promotion yet
+        final long start = System.currentTimeMillis();
+        try (Jedis sentinel = new Jedis("localhost", cluster.sentinelPorts().get(0))) {
+            while (true) {
+                try {
+                    sentinel.sentinelFailover(MASTER_NAME);
+                    return;
+                } catch (JedisDataException ex) {
+                    if (System.currentTimeMillis() - start > TIMEOUT_MILLIS) {
+                        throw ex;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(100);
+                }
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
@@ -21,6 +22,8 @@ import org.mockito.stubbing.OngoingStubbing;
 import de.idealo.logback.appender.jedisclient.JedisClient;
 import de.idealo.logback.appender.jedisclient.JedisClientProvider;
 
+import redis.clients.jedis.Client;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisException;
@@ -40,6 +43,7 @@ public class JedisClientTest {
     public void init() {
         MockitoAnnotations.initMocks(this);
         when(clientProvider.getJedisClient()).thenReturn(Optional.of(jedis));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.empty());
         when(jedis.pipelined()).thenReturn(pipeline);
     }
 
@@ -95,6 +99,7 @@ public class JedisClientTest {
         doThrow(new JedisException("")).when(jedis).close();
 
         try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
             verify(clientProvider, times(1)).getJedisClient();
             assertEquals(pipeline, jedisClient.getPipeline().orElse(null));
 
@@ -113,6 +118,7 @@ public class JedisClientTest {
 
         when(clientProvider.getJedisClient()).thenReturn(Optional.of(jedis)).thenReturn(Optional.of(newJedis));
         try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
             verify(clientProvider, times(1)).getJedisClient();
             assertEquals(pipeline, jedisClient.getPipeline().orElse(null));
 
@@ -165,6 +171,119 @@ public class JedisClientTest {
         }
     }
 
+    @Test
+    public void constructor_does_not_wait_for_connection() throws InterruptedException {
+        final CountDownLatch connectAttempted = new CountDownLatch(1);
+        final CountDownLatch connectReleased = new CountDownLatch(1);
+        when(clientProvider.getJedisClient()).thenAnswer(invocation -> {
+            connectAttempted.countDown();
+            connectReleased.await();
+            return Optional.of(jedis);
+        });
+        try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            assertEquals(ConnectionState.CONNECTING, jedisClient.getConnectionState());
+            assertTrue(connectAttempted.await(1, TimeUnit.SECONDS));
+            assertEquals(null, jedisClient.getPipeline().orElse(null));
+
+            connectReleased.countDown();
+            awaitInitialization(jedisClient);
+
+            assertEquals(ConnectionState.CONNECTED, jedisClient.getConnectionState());
+            assertEquals(pipeline, jedisClient.getPipeline().orElse(null));
+        }
+    }
+
+    @Test
+    public void disconnected_on_exceeded_retries() throws InterruptedException {
+        when(clientProvider.getJedisClient()).thenReturn(Optional.empty());
+        try (JedisClient jedisClient = new JedisClient(clientProvider, 1, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
+
+            assertEquals(ConnectionState.DISCONNECTED, jedisClient.getConnectionState());
+        }
+    }
+
+    @Test
+    public void ping_fails_on_broken_connection() throws InterruptedException {
+        when(jedis.ping()).thenReturn("PONG").thenThrow(new JedisException(""));
+        try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
+
+            assertTrue(jedisClient.ping());
+            assertFalse(jedisClient.ping());
+        }
+    }
+
+    @Test
+    public void connection_is_kept_while_master_is_unchanged() throws InterruptedException {
+        connectedTo(jedis, "10.0.0.1", 6379);
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.of(new HostAndPort("10.0.0.1", 6379)));
+        try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
+
+            assertEquals(pipeline, jedisClient.getPipeline().orElse(null));
+            verify(clientProvider, times(1)).getJedisClient();
+        }
+    }
+
+    @Test
+    public void new_master_is_used_after_failover() throws InterruptedException {
+        final Jedis newMaster = mock(Jedis.class);
+        final Pipeline newPipeline = mock(Pipeline.class);
+        when(newMaster.pipelined()).thenReturn(newPipeline);
+        connectedTo(jedis, "10.0.0.1", 6379);
+        connectedTo(newMaster, "10.0.0.2", 6379);
+        when(clientProvider.getJedisClient()).thenReturn(Optional.of(jedis)).thenReturn(Optional.of(newMaster));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.of(new HostAndPort("10.0.0.1", 6379)))
+                .thenReturn(Optional.of(new HostAndPort("10.0.0.2", 6379)));
+        try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
+            assertEquals(pipeline, jedisClient.getPipeline().orElse(null));
+
+            // +switch-master received by the sentinel pool
+            assertEquals(newPipeline, jedisClient.getPipeline().orElse(null));
+
+            verify(jedis).disconnect();
+            verify(clientProvider).discardJedisClient(jedis);
+            assertEquals(newPipeline, jedisClient.getPipeline().orElse(null));
+            verify(clientProvider, times(2)).getJedisClient();
+        }
+    }
+
+    @Test
+    public void connection_to_previous_master_is_not_used_after_failover() throws InterruptedException {
+        // e.g. handed out again by the pool without validation
+        final Jedis staleConnection = mock(Jedis.class);
+        connectedTo(jedis, "10.0.0.1", 6379);
+        connectedTo(staleConnection, "10.0.0.1", 6379);
+        when(clientProvider.getJedisClient()).thenReturn(Optional.of(jedis)).thenReturn(Optional.of(staleConnection));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.of(new HostAndPort("10.0.0.1", 6379)))
+                .thenReturn(Optional.of(new HostAndPort("10.0.0.2", 6379)));
+        try (JedisClient jedisClient = new JedisClient(clientProvider, MAX_INIT_RETRIES, INIT_RETRIES_INTERVAL_MILLIS)) {
+            awaitInitialization(jedisClient);
+            assertEquals(pipeline, jedisClient.getPipeline().orElse(null));
+
+            assertFalse(jedisClient.getPipeline().isPresent());
+
+            verify(clientProvider).discardJedisClient(staleConnection);
+            assertEquals(ConnectionState.DISCONNECTED, jedisClient.getConnectionState());
+        }
+    }
+
+    private static void connectedTo(Jedis jedis, String host, int port) {
+        final Client connection = mock(Client.class);
+        when(connection.getHost()).thenReturn(host);
+        when(connection.getPort()).thenReturn(port);
+        when(jedis.getClient()).thenReturn(connection);
+    }
+
+    private static void awaitInitialization(JedisClient jedisClient) throws InterruptedException {
+        for (int i = 0; i < 100 && jedisClient.isInitializing(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertFalse(jedisClient.isInitializing());
+    }
+
     private void withClientOnTryNumber(int tries) {
         OngoingStubbing<Optional<Jedis>> stub = when(clientProvider.getJedisClient());
         for (int i = 1; i < tries; i++) {
@@ -1,10 +1,12 @@
 package de.idealo.logback.appender.jedisclient;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 
 import java.util.Set;
 
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.junit.Test;
 
 public class JedisPoolCreatorTest {
@@ -16,4 +18,56 @@ public class JedisPoolCreatorTest {
 
         assertThat(sentinels, containsInAnyOrder("om-test-02:6379", "om-test-03:6379"));
     }
+
+    @Test
+    public void pool_settings_are_taken_from_connection_config() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setMaxTotal(4);
+        connectionConfig.setMaxIdle(3);
+        connectionConfig.setMinIdle(1);
+        connectionConfig.setMaxWaitMillis(500L);
+        connectionConfig.setTestOnBorrow(false);
+        connectionConfig.setTestWhileIdle(true);
+        connectionConfig.setHealthCheckIntervalMillis(10_000L);
+        connectionConfig.setMinEvictableIdleTimeMillis(20_000L);
+
+        final GenericObjectPoolConfig poolConfig = JedisPoolCreator.createPoolConfig(connectionConfig);
+
+        assertThat(poolConfig.getMaxTotal(), is(4));
+        assertThat(poolConfig.getMaxIdle(), is(3));
+        assertThat(poolConfig.getMinIdle(), is(1));
+        assertThat(poolConfig.getMaxWaitMillis(), is(500L));
+        assertThat(poolConfig.getTestOnBorrow(), is(false));
+        assertThat(poolConfig.getTestWhileIdle(), is(true));
+        assertThat(poolConfig.getTimeBetweenEvictionRunsMillis(), is(10_000L));
+        assertThat(poolConfig.getMinEvictableIdleTimeMillis(), is(20_000L));
+    }
+
+    @Test
+    public void health_check_is_disabled_by_default() {
+        final GenericObjectPoolConfig poolConfig = JedisPoolCreator.createPoolConfig(new RedisConnectionConfig());
+        final GenericObjectPoolConfig defaultConfig = new GenericObjectPoolConfig();
+
+        assertThat(poolConfig.getTestWhileIdle(), is(false));
+        assertThat(poolConfig.getTimeBetweenEvictionRunsMillis(), is(defaultConfig.getTimeBetweenEvictionRunsMillis()));
+        assertThat(poolConfig.getMinEvictableIdleTimeMillis(), is(defaultConfig.getMinEvictableIdleTimeMillis()));
+    }
+
+    @Test
+    public void timeouts_default_to_common_timeout() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setTimeout(1000);
+        connectionConfig.setSoTimeout(250);
+
+        assertThat(connectionConfig.getConnectionTimeout(), is(1000));
+        assertThat(connectionConfig.getSoTimeout(), is(250));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exception_on_unix_socket() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setUnixSocket("/var/run/redis/redis.sock");
+
+        new JedisPoolCreator().createJedisPool(connectionConfig);
+    }
 }
@@ -9,6 +9,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -23,6 +24,10 @@ import org.junit.Test;
 
 import de.idealo.logback.appender.jedisclient.JedisClient;
 import de.idealo.logback.appender.jedisclient.JedisClientProvider;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.JedisTransport;
+import de.idealo.logback.appender.transport.RedisTransport;
+import de.idealo.logback.appender.transport.nio.NioTransport;
 
 import ch.qos.logback.core.spi.DeferredProcessingAware;
 import lombok.AllArgsConstructor;
@@ -35,18 +40,19 @@ import redis.embedded.RedisServerBuilder;
 public class BufferedJedisPublisherIT {
     private static final long BUFFER_FLUSH_MILLIS = 100L;
     private static final String CHANNEL = "testChannel";
-    private static final Function<DeferredProcessingAware, String> MESSAGE_CREATOR = String::valueOf;
+    private static final Function<DeferredProcessingAware, byte[]> MESSAGE_CREATOR = event -> String.valueOf(event).getBytes(StandardCharsets.UTF_8);
     private static final Set<DeferredProcessingAware> EVENTS = IntStream.range(0, 10)
             .mapToObj(i -> mock(DeferredProcessingAware.class))
             .collect(toSet());
 
+    private int port;
     private RedisServer redisServer;
     private Jedis redisSender;
     private Jedis redisSubscriber;
 
     @Before
     public void init() throws Exception {
-        final int port = getRandomPort();
+        port = getRandomPort();
         redisServer = new RedisServerBuilder()
                 .port(port)
                 .build();
@@ -72,9 +78,46 @@ public class BufferedJedisPublisherIT {
     public void published_messages_are_sent() throws InterruptedException {
         JedisClientProvider clientProvider = mock(JedisClientProvider.class);
         when(clientProvider.getJedisClient()).thenReturn(Optional.of(redisSender));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.empty());
         final JedisClient jedisClient = new JedisClient(clientProvider, 1, 0L);
 
-        try (BufferedJedisPublisher publisher = new BufferedJedisPublisher(jedisClient, MESSAGE_CREATOR, CHANNEL, 1, BUFFER_FLUSH_MILLIS)) {
+        assertMessagesArePublished(new JedisTransport(jedisClient));
+    }
+
+    @Test
+    public void published_messages_are_sent_via_nio_transport() throws InterruptedException {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(port);
+
+        assertMessagesArePublished(new NioTransport(connectionConfig, 1, 0L));
+    }
+
+    @Test
+    public void messages_are_pushed_and_published_by_sink() throws InterruptedException {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(port);
+        final JedisClientProvider clientProvider = mock(JedisClientProvider.class);
+        when(clientProvider.getJedisClient()).thenReturn(Optional.of(new JedisPool("localhost", port).getResource()));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.empty());
+
+        final BufferedJedisRPusher pusher = new BufferedJedisRPusher(new NioTransport(connectionConfig, 1, 0L), MESSAGE_CREATOR, "list",
+                JedisWriterTestUtils.configuration(1, BUFFER_FLUSH_MILLIS));
+        pusher.addSink(new BufferedJedisPublisher(new JedisTransport(new JedisClient(clientProvider, 1, 0L)), MESSAGE_CREATOR, CHANNEL,
+                JedisWriterTestUtils.configuration(1, BUFFER_FLUSH_MILLIS)));
+
+        final Set<String> sentMessages = assertMessagesArePublished(pusher);
+
+        assertThat(new HashSet<>(redisSender.lrange("list", 0, -1)), is(equalTo(sentMessages)));
+    }
+
+    private void assertMessagesArePublished(RedisTransport transport) throws InterruptedException {
+        assertMessagesArePublished(new BufferedJedisPublisher(transport, MESSAGE_CREATOR, CHANNEL, JedisWriterTestUtils.configuration(1, BUFFER_FLUSH_MILLIS)));
+    }
+
+    private Set<String> assertMessagesArePublished(AbstractBufferedJedisWriter writer) throws InterruptedException {
+        try (AbstractBufferedJedisWriter publisher = writer) {
             final CountDownLatch receiverStarted = new CountDownLatch(1);
             final CountDownLatch messagesReceived = new CountDownLatch(EVENTS.size());
             final ValueReceiver valueReceiver = new ValueReceiver(redisSubscriber, receiverStarted, messagesReceived);
@@ -86,12 +129,13 @@ public class BufferedJedisPublisherIT {
             final Set<String> sentMessages = new HashSet<>(EVENTS.size());
             for (DeferredProcessingAware event : EVENTS) {
                 publisher.append(event);
-                sentMessages.add(MESSAGE_CREATOR.apply(event));
+                sentMessages.add(new String(MESSAGE_CREATOR.apply(event), StandardCharsets.UTF_8));
             }
             messagesReceived.await(5 * BUFFER_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
             valueReceiver.unsubscribe();
 
             assertThat(valueReceiver.receivedMessages, is(equalTo(sentMessages)));
+            return sentMessages;
         }
     }
 
@@ -1,6 +1,8 @@
 package de.idealo.logback.appender.jediswriter;
 
-import static org.mockito.Matchers.anyString;
+import static de.idealo.logback.appender.jediswriter.JedisWriterTestUtils.configuration;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -18,10 +20,12 @@ import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.ByteArrayValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
 
 import ch.qos.logback.core.spi.DeferredProcessingAware;
-import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
 public class BufferedJedisPublisherTest {
@@ -30,22 +34,24 @@ public class BufferedJedisPublisherTest {
     private static final int DEFAULT_BATCH_WAIT_MILLIS = 100;
 
     @Mock
-    private JedisClient client;
+    private RedisTransport client;
     @Mock
-    private Function<DeferredProcessingAware, String> messageCreator;
+    private Function<DeferredProcessingAware, byte[]> messageCreator;
     @Mock
-    private Pipeline pipeline;
+    private RedisPipeline pipeline;
 
     private AbstractBufferedJedisWriter writer;
 
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        when(messageCreator.apply(Matchers.any())).thenAnswer(invocation -> String.valueOf(invocation.getArgumentAt(0, DeferredProcessingAware.class)));
-        final Optional<Pipeline> defaultPipeline = Optional.of(pipeline);
+        when(messageCreator.apply(Matchers.any())).thenAnswer(invocation -> String.valueOf(invocation.getArgumentAt(0, DeferredProcessingAware.class)).getBytes());
+        final Optional<RedisPipeline> defaultPipeline = Optional.of(pipeline);
         when(client.getPipeline()).thenReturn(defaultPipeline);
+        when(client.createBatchValues()).thenReturn(new ByteArrayValues());
+        when(client.getLock()).thenReturn(client);
 
-        writer = new BufferedJedisPublisher(client, messageCreator, KEY, DEFAULT_BUFFER_ITEMS, DEFAULT_BATCH_WAIT_MILLIS);
+        writer = new BufferedJedisPublisher(client, messageCreator, KEY, configuration(DEFAULT_BUFFER_ITEMS, DEFAULT_BATCH_WAIT_MILLIS));
     }
 
     @After
@@ -64,7 +70,7 @@ public class BufferedJedisPublisherTest {
         for (int i = 0; i < DEFAULT_BUFFER_ITEMS; i++) {
             writer.append(null);
         }
-        verify(pipeline, times(0)).publish(anyString(), anyString());
+        verify(pipeline, times(0)).publish(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(0)).sync();
     }
 
@@ -74,8 +80,7 @@ public class BufferedJedisPublisherTest {
         for (int i = 0; i < DEFAULT_BUFFER_ITEMS * batchFullEvents; i++) {
             writer.append(mock(DeferredProcessingAware.class));
         }
-        final int expectedPublishCalls = DEFAULT_BUFFER_ITEMS * batchFullEvents; // one per item
-        verify(pipeline, times(expectedPublishCalls)).publish(anyString(), anyString());
+        verify(pipeline, times(batchFullEvents)).publish(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(batchFullEvents)).sync();
     }
 
@@ -87,32 +92,31 @@ public class BufferedJedisPublisherTest {
         }
         verify(client, times(2)).getPipeline();
         verify(client).reconnect();
-        verify(pipeline, times(DEFAULT_BUFFER_ITEMS)).publish(anyString(), anyString());
+        verify(pipeline, times(1)).publish(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(1)).sync();
     }
 
     @Test
     public void send_on_second_try_due_to_exception_on_first_publish() throws InterruptedException {
-        when(pipeline.publish(anyString(), anyString())).thenThrow(new JedisConnectionException("")).thenReturn(null);
+        doThrow(new JedisConnectionException("")).doNothing().when(pipeline).publish(any(byte[].class), any(BatchValues.class));
         for (int i = 0; i < DEFAULT_BUFFER_ITEMS; i++) {
             writer.append(mock(DeferredProcessingAware.class));
         }
-        final int expectedPublishCalls = 1 + DEFAULT_BUFFER_ITEMS; // one failed, then for each buffer item
         verify(client, times(2)).getPipeline();
         verify(client).reconnect();
-        verify(pipeline, times(expectedPublishCalls)).publish(anyString(), anyString());
+        verify(pipeline, times(2)).publish(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(1)).sync();
     }
 
     @Test
     public void dont_send_on_too_many_failures() throws InterruptedException {
-        when(pipeline.publish(anyString(), anyString())).thenThrow(new JedisConnectionException(""));
+        doThrow(new JedisConnectionException("")).when(pipeline).publish(any(byte[].class), any(BatchValues.class));
         for (int i = 0; i < DEFAULT_BUFFER_ITEMS; i++) {
             writer.append(mock(DeferredProcessingAware.class));
         }
         verify(client, times(2)).getPipeline();
         verify(client, times(2)).reconnect();
-        verify(pipeline, times(2)).publish(anyString(), anyString());
+        verify(pipeline, times(2)).publish(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(0)).sync();
     }
 }
@@ -0,0 +1,208 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.jedisclient.JedisClientProvider;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.JedisTransport;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
+import de.idealo.logback.appender.transport.nio.NioTransport;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.embedded.RedisServer;
+import redis.embedded.RedisServerBuilder;
+
+public class BufferedJedisRPusherIT {
+    private static final long BUFFER_FLUSH_MILLIS = 60_000L;
+    private static final String KEY = "testList";
+    private static final long EXPIRE_SECONDS = 60L;
+
+    private int port;
+    private RedisServer redisServer;
+    private JedisPool jedisPool;
+    private Jedis redis;
+
+    @Before
+    public void init() throws Exception {
+        port = getRandomPort();
+        redisServer = new RedisServerBuilder()
+                .port(port)
+                .build();
+        redisServer.start();
+        jedisPool = new JedisPool("localhost", port);
+        redis = jedisPool.getResource();
+    }
+
+    private static int getRandomPort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        redis.close();
+        jedisPool.close();
+        redisServer.stop();
+    }
+
+    @Test
+    public void buckets_expire() throws InterruptedException {
+        assertBucketsExpire(createJedisTransport());
+    }
+
+    @Test
+    public void buckets_expire_via_nio_transport() throws InterruptedException {
+        assertBucketsExpire(createNioTransport());
+    }
+
+    @Test
+    public void key_does_not_expire_by_default() throws InterruptedException {
+        try (BufferedJedisRPusher writer = createWriter(createNioTransport(), 0, null)) {
+            append(writer, 0, 4);
+        }
+
+        assertThat(redis.lrange(KEY, 0, -1), contains("0", "1", "2", "3"));
+        assertThat(redis.ttl(KEY), is(-1L));
+    }
+
+    @Test
+    public void volumes_are_counted() throws InterruptedException {
+        assertVolumesAreCounted(createJedisTransport());
+    }
+
+    @Test
+    public void volumes_are_counted_via_nio_transport() throws InterruptedException {
+        assertVolumesAreCounted(createNioTransport());
+    }
+
+    @Test
+    public void error_replies_are_reported() throws InterruptedException {
+        assertErrorRepliesAreReported(createJedisTransport());
+    }
+
+    @Test
+    public void error_replies_are_reported_via_nio_transport() throws InterruptedException {
+        assertErrorRepliesAreReported(createNioTransport());
+    }
+
+    private void assertErrorRepliesAreReported(RedisTransport transport) throws InterruptedException {
+        redis.set(KEY, "no list");
+        while (transport.getConnectionState() == ConnectionState.CONNECTING) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        try {
+            final RedisPipeline pipeline = transport.getPipeline().orElseThrow(IllegalStateException::new);
+            pipeline.rpush(KEY.getBytes(StandardCharsets.UTF_8), "0".getBytes(StandardCharsets.UTF_8));
+            pipeline.expire(KEY.getBytes(StandardCharsets.UTF_8), (int) EXPIRE_SECONDS);
+
+            pipeline.sync();
+            fail("WRONGTYPE reply of RPUSH was not reported");
+        } catch (JedisDataException ex) {
+            assertThat(ex.getMessage(), startsWith("WRONGTYPE"));
+        } finally {
+            transport.close();
+        }
+    }
+
+    private void assertVolumesAreCounted(RedisTransport transport) throws InterruptedException {
+        try (BufferedJedisRPusher writer = createWriter(transport, JedisWriterTestUtils.configurationBuilder(2, BUFFER_FLUSH_MILLIS)
+                .volumeKey("volume")
+                .volumeDimension(event -> Integer.parseInt(event.toString()) % 2 == 0 ? "even" : "odd")
+                .volumeIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .volumeExpireSeconds((int) EXPIRE_SECONDS))) {
+            append(writer, 0, 5);
+        }
+
+        final Map<String, Long> volumes = new HashMap<>();
+        for (String key : redis.keys("volume:*")) {
+            redis.hgetAll(key).forEach((dimension, count) -> volumes.merge(dimension, Long.parseLong(count), Long::sum));
+            assertThat(redis.ttl(key), is(allOf(greaterThan(0L), lessThanOrEqualTo(EXPIRE_SECONDS))));
+        }
+        assertThat(volumes.get("even"), is(3L));
+        assertThat(volumes.get("odd"), is(2L));
+        assertThat(redis.llen(KEY), is(5L));
+    }
+
+    private void assertBucketsExpire(RedisTransport transport) throws InterruptedException {
+        // buckets of three events, batches of two events
+        final Function<DeferredProcessingAware, String> bucketResolver = event -> KEY + ":" + Integer.parseInt(event.toString()) / 3;
+        try (BufferedJedisRPusher writer = createWriter(transport, (int) EXPIRE_SECONDS, bucketResolver)) {
+            append(writer, 0, 6);
+        }
+
+        assertThat(redis.lrange(KEY + ":0", 0, -1), contains("0", "1", "2"));
+        assertThat(redis.lrange(KEY + ":1", 0, -1), contains("3", "4", "5"));
+        assertThat(redis.ttl(KEY + ":0"), is(allOf(greaterThan(0L), lessThanOrEqualTo(EXPIRE_SECONDS))));
+        assertThat(redis.ttl(KEY + ":1"), is(allOf(greaterThan(0L), lessThanOrEqualTo(EXPIRE_SECONDS))));
+    }
+
+    private BufferedJedisRPusher createWriter(RedisTransport transport, int expireSeconds, Function<DeferredProcessingAware, String> keyResolver)
+            throws InterruptedException {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setKey(KEY);
+        connectionConfig.setExpireSeconds(expireSeconds);
+        return createWriter(transport, JedisWriterTestUtils.configurationBuilder(2, BUFFER_FLUSH_MILLIS)
+                .connectionConfig(connectionConfig)
+                .keyResolver(keyResolver));
+    }
+
+    private BufferedJedisRPusher createWriter(RedisTransport transport, JedisWriterConfiguration.JedisWriterConfigurationBuilder configuration)
+            throws InterruptedException {
+        while (transport.getConnectionState() == ConnectionState.CONNECTING) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        final Function<DeferredProcessingAware, byte[]> messageCreator = event -> String.valueOf(event).getBytes(StandardCharsets.UTF_8);
+        return new BufferedJedisRPusher(transport, messageCreator, KEY, configuration.build());
+    }
+
+    private static void append(BufferedJedisRPusher writer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+            when(event.toString()).thenReturn(Integer.toString(i));
+            writer.append(event);
+        }
+    }
+
+    private RedisTransport createJedisTransport() {
+        final JedisClientProvider clientProvider = mock(JedisClientProvider.class);
+        when(clientProvider.getJedisClient()).thenAnswer(invocation -> Optional.of(jedisPool.getResource()));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.empty());
+        return new JedisTransport(new JedisClient(clientProvider, 1, 0L));
+    }
+
+    private RedisTransport createNioTransport() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(port);
+        return new NioTransport(connectionConfig, 1, 0L);
+    }
+}
@@ -1,14 +1,32 @@
 package de.idealo.logback.appender.jediswriter;
 
-import static org.mockito.Matchers.anyString;
-import static org.mockito.Matchers.anyVararg;
+import static de.idealo.logback.appender.jediswriter.JedisWriterTestUtils.configuration;
+import static de.idealo.logback.appender.jediswriter.JedisWriterTestUtils.configurationBuilder;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import org.junit.After;
@@ -19,36 +37,47 @@ import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
 import de.idealo.logback.appender.jediswriter.AbstractBufferedJedisWriter;
 import de.idealo.logback.appender.jediswriter.BufferedJedisRPusher;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.ByteArrayValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
 
 import ch.qos.logback.core.spi.DeferredProcessingAware;
-import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
 public class BufferedJedisRPusherTest {
     private static final String KEY = "TEST_KEY";
     private static final int DEFAULT_QUEUE_ITEMS = 3;
     private static final int DEFAULT_BATCH_WAIT_MILLIS = 100;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 40L;
 
     @Mock
-    private JedisClient client;
+    private RedisTransport client;
     @Mock
-    private Function<DeferredProcessingAware, String> messageCreator;
+    private Function<DeferredProcessingAware, byte[]> messageCreator;
     @Mock
-    private Pipeline pipeline;
+    private RedisPipeline pipeline;
+    @Mock
+    private Function<DeferredProcessingAware, byte[]> sinkMessageCreator;
+    @Mock
+    private RedisPipeline sinkPipeline;
 
     private AbstractBufferedJedisWriter writer;
 
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        when(messageCreator.apply(Matchers.any())).thenAnswer(invocation -> String.valueOf(invocation.getArgumentAt(0, DeferredProcessingAware.class)));
-        final Optional<Pipeline> defaultPipeline = Optional.of(pipeline);
+        when(messageCreator.apply(Matchers.any())).thenAnswer(invocation -> String.valueOf(invocation.getArgumentAt(0, DeferredProcessingAware.class)).getBytes());
+        final Optional<RedisPipeline> defaultPipeline = Optional.of(pipeline);
         when(client.getPipeline()).thenReturn(defaultPipeline);
+        when(client.createBatchValues()).thenAnswer(invocation -> new ByteArrayValues());
+        when(client.getLock()).thenReturn(client);
 
-        writer = new BufferedJedisRPusher(client, messageCreator, KEY, DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS);
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS));
     }
 
     @After
@@ -67,7 +96,7 @@ public class BufferedJedisRPusherTest {
         for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
             writer.append(null);
         }
-        verify(pipeline, times(0)).rpush(anyString(), anyVararg());
+        verify(pipeline, times(0)).rpush(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(0)).sync();
     }
 
@@ -77,10 +106,33 @@ public class BufferedJedisRPusherTest {
         for (int i = 0; i < DEFAULT_QUEUE_ITEMS * batchFullEvents; i++) {
             writer.append(mock(DeferredProcessingAware.class));
         }
-        verify(pipeline, times(batchFullEvents)).rpush(anyString(), anyVararg());
+        verify(pipeline, times(batchFullEvents)).rpush(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(batchFullEvents)).sync();
     }
 
+    @Test
+    public void events_are_sent_per_destination_in_one_pipeline() {
+        writer.close();
+        final AtomicInteger resolvedKeys = new AtomicInteger();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS * 2, DEFAULT_BATCH_WAIT_MILLIS)
+                .keyResolver(event -> "key" + resolvedKeys.getAndIncrement() % 2)
+                .build());
+        final AtomicInteger pushedValues = new AtomicInteger();
+        doAnswer(invocation -> {
+            pushedValues.addAndGet(invocation.getArgumentAt(1, BatchValues.class).size());
+            return null;
+        }).when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
+
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 2; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+
+        verify(pipeline).rpush(aryEq("key0".getBytes()), any(BatchValues.class));
+        verify(pipeline).rpush(aryEq("key1".getBytes()), any(BatchValues.class));
+        verify(pipeline, times(1)).sync();
+        Assert.assertEquals(DEFAULT_QUEUE_ITEMS * 2, pushedValues.get());
+    }
+
     @Test
     public void send_on_second_try_due_to_no_pipline_on_first_try() throws InterruptedException {
         when(client.getPipeline()).thenReturn(Optional.empty()).thenReturn(Optional.of(pipeline));
@@ -89,31 +141,610 @@ public class BufferedJedisRPusherTest {
         }
         verify(client, times(2)).getPipeline();
         verify(client).reconnect();
-        verify(pipeline, times(1)).rpush(anyString(), anyVararg());
+        verify(pipeline, times(1)).rpush(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(1)).sync();
     }
 
     @Test
     public void send_on_second_try_due_to_exception_on_first_rpush() throws InterruptedException {
-        when(pipeline.rpush(anyString(), anyVararg())).thenThrow(new JedisConnectionException("")).thenReturn(null);
+        doThrow(new JedisConnectionException("")).doNothing().when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
         for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
             writer.append(mock(DeferredProcessingAware.class));
         }
         verify(client, times(2)).getPipeline();
         verify(client).reconnect();
-        verify(pipeline, times(2)).rpush(anyString(), anyVararg());
+        verify(pipeline, times(2)).rpush(any(byte[].class), any(BatchValues.class));
         verify(pipeline, times(1)).sync();
     }
 
     @Test
     public void dont_send_on_too_many_failures() throws InterruptedException {
-        when(pipeline.rpush(anyString(), anyVararg())).thenThrow(new JedisConnectionException(""));
+        doThrow(new JedisConnectionException("")).when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
         for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
             writer.append(mock(DeferredProcessingAware.class));
         }
         verify(client, times(2)).getPipeline();
         verify(client, times(2)).reconnect();
-        verify(pipeline, times(2)).rpush(anyString(), anyVararg());
+        verify(pipeline, times(2)).rpush(any(byte[].class), any(BatchValues.class));
+        verify(pipeline, times(0)).sync();
+    }
+
+    @Test
+    public void listener_is_notified_of_unsent_events() {
+        writer.close();
+        final List<DeferredProcessingAware> unsentEvents = new ArrayList<>();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)
+                .unsentEventListener(unsentEvents::add)
+                .build());
+        final List<DeferredProcessingAware> events = new ArrayList<>();
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+            events.add(mock(DeferredProcessingAware.class));
+        }
+        events.forEach(writer::append);
+        Assert.assertEquals(Collections.emptyList(), unsentEvents);
+
+        doThrow(new JedisConnectionException("")).when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
+        events.forEach(writer::append);
+
+        Assert.assertEquals(events, unsentEvents);
+    }
+
+    @Test
+    public void events_are_kept_while_connecting() throws InterruptedException {
+        final AtomicInteger pushedValues = new AtomicInteger();
+        doAnswer(invocation -> {
+            pushedValues.set(invocation.getArgumentAt(1, BatchValues.class).size());
+            return null;
+        }).when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+        verify(pipeline, times(0)).rpush(any(byte[].class), any(BatchValues.class));
+
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+        writer.append(mock(DeferredProcessingAware.class));
+
+        verify(pipeline, times(1)).rpush(any(byte[].class), any(BatchValues.class));
+        Assert.assertEquals(DEFAULT_QUEUE_ITEMS + 1, pushedValues.get());
+    }
+
+    @Test
+    public void priority_events_are_sent_without_waiting_for_batch() {
+        writer.close();
+        final DeferredProcessingAware priorityEvent = mock(DeferredProcessingAware.class);
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, 10_000L)
+                .priorityFilter(event -> event == priorityEvent)
+                .maxPriorityBufferedMessages(1)
+                .build());
+        final List<String> pushedValues = recordPushedValues();
+
+        writer.append(mock(DeferredProcessingAware.class));
+        writer.append(priorityEvent);
+
+        verify(pipeline, times(1)).sync();
+        Assert.assertEquals(Collections.singletonList(String.valueOf(priorityEvent)), pushedValues);
+    }
+
+    @Test
+    public void priority_events_are_sent_after_priority_interval() throws InterruptedException {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, 10_000L)
+                .priorityFilter(event -> true)
+                .flushPriorityBufferIntervalMillis(DEFAULT_BATCH_WAIT_MILLIS)
+                .build());
+
+        writer.append(mock(DeferredProcessingAware.class));
         verify(pipeline, times(0)).sync();
+
+        TimeUnit.MILLISECONDS.sleep(DEFAULT_BATCH_WAIT_MILLIS * 3);
+        verify(pipeline, times(1)).sync();
+    }
+
+    @Test
+    public void priority_events_use_reserved_capacity_and_are_sent_first() {
+        writer.close();
+        final DeferredProcessingAware priorityEvent = mock(DeferredProcessingAware.class);
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, 10_000L)
+                .bufferCapacity(1)
+                .priorityFilter(event -> event == priorityEvent)
+                .priorityBufferCapacity(1)
+                .build());
+        final List<String> pushedValues = recordPushedValues();
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+        writer.append(event);
+        writer.append(mock(DeferredProcessingAware.class));
+        writer.append(priorityEvent);
+
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+        writer.close();
+
+        Assert.assertEquals(Arrays.asList(String.valueOf(priorityEvent), String.valueOf(event)), pushedValues);
+    }
+
+    @Test
+    public void events_dropped_by_full_buffer_are_not_encoded() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, 10_000L)
+                .bufferCapacity(1)
+                .build());
+        final List<String> pushedValues = recordPushedValues();
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+        final DeferredProcessingAware droppedEvent = mock(DeferredProcessingAware.class);
+        writer.append(event);
+        writer.append(droppedEvent);
+
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+        writer.close();
+
+        Assert.assertEquals(Collections.singletonList(String.valueOf(event)), pushedValues);
+        verify(messageCreator, never()).apply(droppedEvent);
+    }
+
+    @Test
+    public void events_appended_after_close_are_rejected() {
+        writer.close();
+        final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+
+        writer.append(event);
+
+        Assert.assertEquals(0, writer.getBufferedEvents());
+        verify(messageCreator, never()).apply(event);
+    }
+
+    @Test
+    public void expire_is_set_once_per_bucket() {
+        writer.close();
+        final AtomicInteger resolvedKeys = new AtomicInteger();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)
+                .connectionConfig(expiringConnectionConfig(60))
+                // buckets of two batches
+                .keyResolver(event -> "bucket" + resolvedKeys.getAndIncrement() / (DEFAULT_QUEUE_ITEMS * 2))
+                .build());
+
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 4; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+
+        verify(pipeline, times(4)).sync();
+        verify(pipeline, times(2)).rpush(aryEq("bucket0".getBytes()), any(BatchValues.class));
+        verify(pipeline).expire(aryEq("bucket0".getBytes()), Matchers.eq(60));
+        verify(pipeline).expire(aryEq("bucket1".getBytes()), Matchers.eq(60));
+    }
+
+    @Test
+    public void expire_is_set_again_after_reconnect() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)
+                .connectionConfig(expiringConnectionConfig(60))
+                .build());
+        doThrow(new JedisConnectionException("broken")).doNothing().when(pipeline).sync();
+
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 2; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+
+        verify(client).reconnect();
+        verify(pipeline, times(3)).sync();
+        verify(pipeline, times(2)).expire(aryEq(KEY.getBytes()), Matchers.eq(60));
+    }
+
+    @Test
+    public void no_expire_by_default() {
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+
+        verify(pipeline, times(0)).expire(any(byte[].class), Matchers.anyInt());
+    }
+
+    @Test
+    public void volumes_are_sent_in_the_pipeline_of_the_batch() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, volumeConfiguration());
+
+        writer.append(mock(DeferredProcessingAware.class));
+        writer.append(mock(DeferredProcessingAware.class));
+        writer.close();
+
+        verify(pipeline).rpush(aryEq(KEY.getBytes()), any(BatchValues.class));
+        verify(pipeline).hincrBy(any(byte[].class), aryEq("dimension".getBytes()), Matchers.eq(2L));
+        verify(pipeline, times(1)).sync();
+    }
+
+    @Test
+    public void volumes_are_kept_after_failed_send() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, volumeConfiguration());
+        final AtomicInteger counted = new AtomicInteger();
+        doAnswer(invocation -> {
+            counted.addAndGet(invocation.getArgumentAt(2, Long.class).intValue());
+            return null;
+        }).when(pipeline).hincrBy(any(byte[].class), any(byte[].class), Matchers.anyLong());
+        doThrow(new JedisConnectionException("broken")).doThrow(new JedisConnectionException("broken")).doNothing().when(pipeline).sync();
+
+        // full batch fails twice, the events are dropped
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+        writer.close();
+
+        verify(pipeline, times(3)).sync();
+        Assert.assertEquals(DEFAULT_QUEUE_ITEMS, counted.get());
+    }
+
+    @Test
+    public void volumes_are_not_sent_again_after_failed_pipeline() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, volumeConfiguration());
+        // redis may have applied the increments before the connection broke
+        doThrow(new JedisConnectionException("broken")).when(pipeline).sync();
+
+        writer.append(mock(DeferredProcessingAware.class));
+        writer.close();
+
+        verify(pipeline, times(2)).sync();
+        verify(pipeline, times(1)).hincrBy(any(byte[].class), aryEq("dimension".getBytes()), Matchers.eq(1L));
+    }
+
+    @Test
+    public void volumes_are_sent_again_without_pipeline() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, volumeConfiguration());
+        when(client.getPipeline()).thenReturn(Optional.empty()).thenReturn(Optional.of(pipeline));
+
+        writer.append(mock(DeferredProcessingAware.class));
+        writer.close();
+
+        verify(pipeline, times(1)).sync();
+        verify(pipeline, times(1)).hincrBy(any(byte[].class), aryEq("dimension".getBytes()), Matchers.eq(1L));
+    }
+
+    @Test
+    public void batch_size_is_changed_at_runtime() {
+        writer.setMaxBufferedMessages(1);
+
+        writer.append(mock(DeferredProcessingAware.class));
+
+        verify(pipeline, times(1)).rpush(any(byte[].class), any(BatchValues.class));
+    }
+
+    @Test
+    public void shorter_interval_wakes_up_flusher() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configuration(DEFAULT_QUEUE_ITEMS, TimeUnit.MINUTES.toMillis(1)));
+        writer.append(mock(DeferredProcessingAware.class));
+
+        writer.setFlushBufferIntervalMillis(DEFAULT_BATCH_WAIT_MILLIS);
+
+        verify(pipeline, timeout(1_000)).rpush(any(byte[].class), any(BatchValues.class));
+    }
+
+    @Test
+    public void flush_sends_buffered_events_without_waiting_for_batch() throws Exception {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configuration(DEFAULT_QUEUE_ITEMS, TimeUnit.MINUTES.toMillis(1)));
+        final List<String> pushedValues = recordPushedValues();
+        final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+        writer.append(event);
+
+        writer.flush().get(1, TimeUnit.SECONDS);
+
+        verify(pipeline, times(1)).sync();
+        Assert.assertEquals(Collections.singletonList(String.valueOf(event)), pushedValues);
+    }
+
+    @Test
+    public void flush_waits_for_batch_sent_by_other_thread() throws Exception {
+        final CountDownLatch syncStarted = new CountDownLatch(1);
+        final CountDownLatch syncReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            syncStarted.countDown();
+            syncReleased.await();
+            return null;
+        }).when(pipeline).sync();
+        final Thread appending = new Thread(() -> {
+            for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+                writer.append(mock(DeferredProcessingAware.class));
+            }
+        });
+        appending.start();
+        syncStarted.await();
+
+        final CompletableFuture<Void> flushed = writer.flush();
+        TimeUnit.MILLISECONDS.sleep(DEFAULT_BATCH_WAIT_MILLIS);
+        Assert.assertFalse(flushed.isDone());
+
+        syncReleased.countDown();
+        flushed.get(1, TimeUnit.SECONDS);
+        appending.join();
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void flush_fails_if_events_are_dropped() throws Exception {
+        doThrow(new JedisConnectionException("")).when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
+        writer.append(mock(DeferredProcessingAware.class));
+
+        writer.flush().get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void flush_waits_for_initial_connection() throws Exception {
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        writer.append(mock(DeferredProcessingAware.class));
+
+        final CompletableFuture<Void> flushed = writer.flush();
+        TimeUnit.MILLISECONDS.sleep(DEFAULT_BATCH_WAIT_MILLIS * 2);
+        Assert.assertFalse(flushed.isDone());
+
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+        flushed.get(1, TimeUnit.SECONDS);
+        verify(pipeline, times(1)).rpush(any(byte[].class), any(BatchValues.class));
+    }
+
+    @Test
+    public void flush_after_close_is_completed() {
+        writer.close();
+
+        Assert.assertTrue(writer.flush().isDone());
+    }
+
+    @Test
+    public void backlog_is_sent_in_batches_on_close() {
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 3 + 1; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+
+        writer.close();
+
+        verify(pipeline, times(4)).rpush(any(byte[].class), any(BatchValues.class));
+        verify(pipeline, times(4)).sync();
+    }
+
+    @Test
+    public void close_waits_for_initial_connection() {
+        final AtomicReference<ConnectionState> connectionState = new AtomicReference<>(ConnectionState.CONNECTING);
+        when(client.getConnectionState()).thenAnswer(invocation -> connectionState.get());
+        // no connection to send with before the initial connection is established
+        when(client.getPipeline()).thenAnswer(invocation -> connectionState.get() == ConnectionState.CONNECTED ? Optional.of(pipeline) : Optional.empty());
+        writer.append(mock(DeferredProcessingAware.class));
+        final Thread connector = new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(DEFAULT_BATCH_WAIT_MILLIS * 2);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            connectionState.set(ConnectionState.CONNECTED);
+        });
+        connector.start();
+
+        writer.close();
+
+        verify(pipeline, times(1)).rpush(any(byte[].class), any(BatchValues.class));
+        Assert.assertTrue(writer.flush().isDone());
+        Assert.assertFalse(writer.flush().isCompletedExceptionally());
+    }
+
+    @Test
+    public void events_are_abandoned_if_not_connected_within_shutdown_timeout() {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)
+                .shutdownTimeoutMillis(DEFAULT_BATCH_WAIT_MILLIS)
+                .build());
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        writer.append(mock(DeferredProcessingAware.class));
+
+        writer.close();
+
+        verify(pipeline, times(0)).rpush(any(byte[].class), any(BatchValues.class));
+        Assert.assertTrue(writer.flush().isCompletedExceptionally());
+    }
+
+    @Test
+    public void remaining_events_are_abandoned_after_shutdown_timeout() throws Exception {
+        writer.close();
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY, configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)
+                .shutdownTimeoutMillis(DEFAULT_BATCH_WAIT_MILLIS)
+                .build());
+        doAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(DEFAULT_BATCH_WAIT_MILLIS * 2);
+            return null;
+        }).when(pipeline).sync();
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTING);
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 3; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+        when(client.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+
+        writer.close();
+
+        verify(pipeline, times(1)).sync();
+        Assert.assertTrue(writer.flush().isCompletedExceptionally());
+    }
+
+    @Test
+    public void sinks_are_sent_in_parallel_on_close() {
+        final RedisTransport sinkClient = mockTransport(sinkPipeline);
+        writer.addSink(new BufferedJedisPublisher(sinkClient, sinkMessageCreator, "channel", configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)));
+        // each destination waits in its sync for the other one
+        final CountDownLatch syncing = new CountDownLatch(2);
+        final AtomicInteger parallelSyncs = new AtomicInteger();
+        doAnswer(invocation -> {
+            syncing.countDown();
+            if (syncing.await(1, TimeUnit.SECONDS)) {
+                parallelSyncs.incrementAndGet();
+            }
+            return null;
+        }).when(pipeline).sync();
+        doAnswer(invocation -> {
+            syncing.countDown();
+            if (syncing.await(1, TimeUnit.SECONDS)) {
+                parallelSyncs.incrementAndGet();
+            }
+            return null;
+        }).when(sinkPipeline).sync();
+        writer.append(mock(DeferredProcessingAware.class));
+
+        writer.close();
+
+        Assert.assertEquals(2, parallelSyncs.get());
+    }
+
+    @Test
+    public void events_are_encoded_once_for_all_sinks() {
+        final RedisTransport sinkClient = mockTransport(sinkPipeline);
+        writer.addSink(new BufferedJedisPublisher(sinkClient, sinkMessageCreator, "channel", configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)));
+
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+
+        verify(pipeline).rpush(aryEq(KEY.getBytes()), any(BatchValues.class));
+        verify(sinkPipeline, timeout(1_000)).publish(aryEq("channel".getBytes()), any(BatchValues.class));
+        verify(sinkPipeline, timeout(1_000)).sync();
+        verify(messageCreator, times(DEFAULT_QUEUE_ITEMS)).apply(any());
+        verifyZeroInteractions(sinkMessageCreator);
+    }
+
+    @Test
+    public void failing_sink_does_not_affect_other_destinations() {
+        final RedisTransport failingClient = mockTransport(sinkPipeline);
+        doThrow(new JedisConnectionException("broken")).when(sinkPipeline).sync();
+        final RedisPipeline otherPipeline = mock(RedisPipeline.class);
+        final RedisTransport otherClient = mockTransport(otherPipeline);
+        writer.addSink(new BufferedJedisPublisher(failingClient, sinkMessageCreator, "channel", configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)));
+        writer.addSink(new BufferedJedisRPusher(otherClient, sinkMessageCreator, "other", configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)));
+
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 2; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+
+        verify(pipeline, times(2)).sync();
+        verify(otherPipeline, timeout(1_000).times(2)).sync();
+        verify(sinkPipeline, timeout(1_000).times(4)).sync();
+        verify(failingClient, timeout(1_000).times(4)).reconnect();
+        verify(client, times(0)).reconnect();
+    }
+
+    @Test
+    public void slow_sink_does_not_delay_writer() throws Exception {
+        final RedisTransport sinkClient = mockTransport(sinkPipeline);
+        final CountDownLatch sinkReleased = new CountDownLatch(1);
+        doAnswer(invocation -> sinkReleased.await(10, TimeUnit.SECONDS)).when(sinkPipeline).sync();
+        writer.addSink(new BufferedJedisPublisher(sinkClient, sinkMessageCreator, "channel", configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)));
+
+        try {
+            final long startMillis = System.currentTimeMillis();
+            for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 3; i++) {
+                writer.append(mock(DeferredProcessingAware.class));
+            }
+            writer.flush().get(1, TimeUnit.SECONDS);
+
+            verify(pipeline, times(3)).sync();
+            Assert.assertTrue(System.currentTimeMillis() - startMillis < 1_000);
+        } finally {
+            sinkReleased.countDown();
+        }
+    }
+
+    @Test
+    public void batches_are_dropped_if_queue_of_sink_is_full() {
+        final RedisTransport sinkClient = mockTransport(sinkPipeline);
+        final CountDownLatch sinkReleased = new CountDownLatch(1);
+        doAnswer(invocation -> sinkReleased.await(10, TimeUnit.SECONDS)).when(sinkPipeline).sync();
+        // queue of a single batch
+        writer.addSink(new BufferedJedisPublisher(sinkClient, sinkMessageCreator, "channel",
+                configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS).bufferCapacity(DEFAULT_QUEUE_ITEMS).build()));
+
+        try {
+            for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+                writer.append(mock(DeferredProcessingAware.class));
+            }
+            verify(sinkPipeline, timeout(1_000)).sync();
+            for (int i = 0; i < DEFAULT_QUEUE_ITEMS * 4; i++) {
+                writer.append(mock(DeferredProcessingAware.class));
+            }
+        } finally {
+            sinkReleased.countDown();
+        }
+
+        verify(pipeline, times(5)).sync();
+        // the batch in progress and the queued one, the others are dropped
+        verify(sinkPipeline, after(500).times(2)).sync();
+    }
+
+    @Test
+    public void sinks_are_closed_with_writer() {
+        final RedisTransport sinkClient = mockTransport(sinkPipeline);
+        writer.addSink(new BufferedJedisPublisher(sinkClient, sinkMessageCreator, "channel", configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)));
+        writer.append(mock(DeferredProcessingAware.class));
+
+        writer.close();
+
+        verify(sinkPipeline).publish(aryEq("channel".getBytes()), any(BatchValues.class));
+        verify(sinkClient).close();
+    }
+
+    @Test
+    public void heartbeat_is_sent_on_idle_connection() throws InterruptedException {
+        writer.close();
+        when(client.ping()).thenReturn(true);
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY,
+                configurationBuilder(DEFAULT_QUEUE_ITEMS, 10_000L).heartbeatIntervalMillis(HEARTBEAT_INTERVAL_MILLIS).build());
+
+        TimeUnit.MILLISECONDS.sleep(HEARTBEAT_INTERVAL_MILLIS * 5);
+
+        verify(client, atLeast(3)).ping();
+        verify(client, times(0)).reconnect();
+        Assert.assertTrue(writer.getLastHeartbeatRoundTripMicros() >= 0);
+    }
+
+    @Test
+    public void reconnect_on_failed_heartbeat() throws InterruptedException {
+        writer.close();
+        when(client.ping()).thenReturn(false);
+        writer = new BufferedJedisRPusher(client, messageCreator, KEY,
+                configurationBuilder(DEFAULT_QUEUE_ITEMS, 10_000L).heartbeatIntervalMillis(HEARTBEAT_INTERVAL_MILLIS).build());
+
+        TimeUnit.MILLISECONDS.sleep(Math.round(HEARTBEAT_INTERVAL_MILLIS * 2.5));
+
+        verify(client, atLeast(1)).reconnect();
+        Assert.assertEquals(-1L, writer.getLastHeartbeatRoundTripMicros());
+    }
+
+    private List<String> recordPushedValues() {
+        final List<String> pushedValues = new ArrayList<>();
+        doAnswer(invocation -> {
+            pushedValues.addAll(invocation.getArgumentAt(1, BatchValues.class).toStrings());
+            return null;
+        }).when(pipeline).rpush(any(byte[].class), any(BatchValues.class));
+        return pushedValues;
+    }
+
+    private static JedisWriterConfiguration volumeConfiguration() {
+        return configurationBuilder(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS)
+                .volumeKey("volume")
+                .volumeDimension(event -> "dimension")
+                .volumeIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .build();
+    }
+
+    private static RedisConnectionConfig expiringConnectionConfig(int expireSeconds) {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setExpireSeconds(expireSeconds);
+        return connectionConfig;
+    }
+
+    private static RedisTransport mockTransport(RedisPipeline pipeline) {
+        final RedisTransport transport = mock(RedisTransport.class);
+        when(transport.getPipeline()).thenReturn(Optional.of(pipeline));
+        when(transport.createBatchValues()).thenAnswer(invocation -> new ByteArrayValues());
+        when(transport.getConnectionState()).thenReturn(ConnectionState.CONNECTED);
+        when(transport.getLock()).thenReturn(transport);
+        return transport;
     }
 }
@@ -0,0 +1,152 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.JedisClient;
+import de.idealo.logback.appender.jedisclient.JedisClientProvider;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.JedisTransport;
+import de.idealo.logback.appender.transport.RedisTransport;
+import de.idealo.logback.appender.transport.nio.NioTransport;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.embedded.RedisServer;
+import redis.embedded.RedisServerBuilder;
+
+public class BufferedJedisScriptPusherIT {
+    private static final long BUFFER_FLUSH_MILLIS = 60_000L;
+    private static final String KEY = "testList";
+    private static final String COUNTER_KEY = "testCounters";
+
+    private int port;
+    private RedisServer redisServer;
+    private JedisPool jedisPool;
+    private Jedis redis;
+
+    @Before
+    public void init() throws Exception {
+        port = getRandomPort();
+        redisServer = new RedisServerBuilder()
+                .port(port)
+                .build();
+        redisServer.start();
+        jedisPool = new JedisPool("localhost", port);
+        redis = jedisPool.getResource();
+    }
+
+    private static int getRandomPort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        redis.close();
+        jedisPool.close();
+        redisServer.stop();
+    }
+
+    @Test
+    public void sha1_matches_script_load() {
+        final String sha1 = redis.scriptLoad(BufferedJedisScriptPusher.SCRIPT);
+
+        assertThat(sha1, is(new String(BufferedJedisScriptPusher.SCRIPT_SHA1, StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void events_are_pushed_trimmed_and_counted() throws InterruptedException {
+        assertEventsArePushedTrimmedAndCounted(createJedisTransport());
+    }
+
+    @Test
+    public void events_are_pushed_trimmed_and_counted_via_nio_transport() throws InterruptedException {
+        assertEventsArePushedTrimmedAndCounted(createNioTransport());
+    }
+
+    @Test
+    public void large_batches_are_pushed() throws InterruptedException {
+        try (BufferedJedisScriptPusher writer = createWriter(createNioTransport(), 2500, 0)) {
+            append(writer, 0, 2500);
+        }
+
+        assertThat(redis.llen(KEY), is(2500L));
+    }
+
+    @Test
+    public void script_is_loaded_again_after_script_flush() throws InterruptedException {
+        try (BufferedJedisScriptPusher writer = createWriter(createJedisTransport(), 2, 0)) {
+            append(writer, 0, 2);
+            redis.scriptFlush();
+            append(writer, 2, 4);
+        }
+
+        assertThat(redis.lrange(KEY, 0, -1), contains("0", "1", "2", "3"));
+    }
+
+    private void assertEventsArePushedTrimmedAndCounted(RedisTransport transport) throws InterruptedException {
+        try (BufferedJedisScriptPusher writer = createWriter(transport, 4, 5)) {
+            append(writer, 0, 12);
+        }
+
+        assertThat(redis.lrange(KEY, 0, -1), contains("7", "8", "9", "10", "11"));
+        assertThat(redis.ttl(KEY), greaterThan(0L));
+        assertThat(redis.hget(COUNTER_KEY, "events"), is("12"));
+        assertThat(redis.hget(COUNTER_KEY, "batches"), is("3"));
+    }
+
+    private BufferedJedisScriptPusher createWriter(RedisTransport transport, int batchSize, int maxLength) throws InterruptedException {
+        while (transport.getConnectionState() == ConnectionState.CONNECTING) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setKey(KEY);
+        connectionConfig.setMaxLength(maxLength);
+        connectionConfig.setExpireSeconds(60);
+        connectionConfig.setCounterKey(COUNTER_KEY);
+        final Function<DeferredProcessingAware, byte[]> messageCreator = event -> String.valueOf(event).getBytes(StandardCharsets.UTF_8);
+        return new BufferedJedisScriptPusher(transport, messageCreator, connectionConfig,
+                JedisWriterTestUtils.configuration(batchSize, BUFFER_FLUSH_MILLIS));
+    }
+
+    private static void append(BufferedJedisScriptPusher writer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final DeferredProcessingAware event = mock(DeferredProcessingAware.class);
+            when(event.toString()).thenReturn(Integer.toString(i));
+            writer.append(event);
+        }
+    }
+
+    private RedisTransport createJedisTransport() {
+        final JedisClientProvider clientProvider = mock(JedisClientProvider.class);
+        when(clientProvider.getJedisClient()).thenAnswer(invocation -> Optional.of(jedisPool.getResource()));
+        when(clientProvider.getCurrentMaster()).thenReturn(Optional.empty());
+        return new JedisTransport(new JedisClient(clientProvider, 1, 0L));
+    }
+
+    private RedisTransport createNioTransport() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(port);
+        return new NioTransport(connectionConfig, 1, 0L);
+    }
+}
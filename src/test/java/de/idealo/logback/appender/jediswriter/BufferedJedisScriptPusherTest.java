@@ -0,0 +1,149 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static de.idealo.logback.appender.jediswriter.JedisWriterTestUtils.configuration;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.ByteArrayValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+import de.idealo.logback.appender.transport.RedisTransport;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+public class BufferedJedisScriptPusherTest {
+    private static final String KEY = "TEST_KEY";
+    private static final int DEFAULT_QUEUE_ITEMS = 3;
+    private static final int DEFAULT_BATCH_WAIT_MILLIS = 100;
+
+    @Mock
+    private RedisTransport client;
+    @Mock
+    private Function<DeferredProcessingAware, byte[]> messageCreator;
+    @Mock
+    private RedisPipeline pipeline;
+
+    private AbstractBufferedJedisWriter writer;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(messageCreator.apply(Matchers.any())).thenAnswer(invocation -> String.valueOf(invocation.getArgumentAt(0, DeferredProcessingAware.class)).getBytes());
+        when(client.getPipeline()).thenReturn(Optional.of(pipeline));
+        when(client.createBatchValues()).thenReturn(new ByteArrayValues());
+        when(client.getLock()).thenReturn(client);
+    }
+
+    @After
+    public void shutdown() {
+        writer.close();
+    }
+
+    @Test
+    public void script_is_loaded_with_first_batch() {
+        writer = createWriter(connectionConfig());
+
+        appendBatch();
+        appendBatch();
+
+        final InOrder inOrder = inOrder(pipeline);
+        inOrder.verify(pipeline).eval(eq(BufferedJedisScriptPusher.SCRIPT_BYTES), eq(1), any(byte[][].class), any(BatchValues.class));
+        inOrder.verify(pipeline).evalsha(eq(BufferedJedisScriptPusher.SCRIPT_SHA1), eq(1), any(byte[][].class), any(BatchValues.class));
+    }
+
+    @Test
+    public void script_is_loaded_again_after_noscript() {
+        doThrow(new JedisDataException("NOSCRIPT No matching script. Please use EVAL."))
+                .doNothing()
+                .when(pipeline).evalsha(any(byte[].class), anyInt(), any(byte[][].class), any(BatchValues.class));
+        writer = createWriter(connectionConfig());
+
+        appendBatch();
+        appendBatch();
+
+        verify(pipeline).evalsha(any(byte[].class), anyInt(), any(byte[][].class), any(BatchValues.class));
+        verify(pipeline, times(2)).eval(any(byte[].class), anyInt(), any(byte[][].class), any(BatchValues.class));
+        verify(client).reconnect();
+    }
+
+    @Test
+    public void script_is_loaded_again_after_other_writer_reconnected() {
+        // another writer of the shared transport reconnected between the batches
+        when(client.getConnectionGeneration()).thenReturn(1L, 2L);
+        writer = createWriter(connectionConfig());
+
+        appendBatch();
+        appendBatch();
+
+        verify(pipeline, times(2)).eval(any(byte[].class), anyInt(), any(byte[][].class), any(BatchValues.class));
+        verify(pipeline, never()).evalsha(any(byte[].class), anyInt(), any(byte[][].class), any(BatchValues.class));
+        verify(client, never()).reconnect();
+    }
+
+    @Test
+    public void options_are_passed_as_keys_and_arguments() {
+        final RedisConnectionConfig connectionConfig = connectionConfig();
+        connectionConfig.setMaxLength(1000);
+        connectionConfig.setExpireSeconds(3600);
+        connectionConfig.setCounterKey("counters");
+        writer = createWriter(connectionConfig);
+
+        appendBatch();
+
+        final ArgumentCaptor<byte[][]> keysAndArguments = ArgumentCaptor.forClass(byte[][].class);
+        verify(pipeline).eval(any(byte[].class), eq(2), keysAndArguments.capture(), any(BatchValues.class));
+        assertThat(toString(keysAndArguments.getValue()), is("[TEST_KEY, counters, 1000, 3600]"));
+    }
+
+    private AbstractBufferedJedisWriter createWriter(RedisConnectionConfig connectionConfig) {
+        return new BufferedJedisScriptPusher(client, messageCreator, connectionConfig, configuration(DEFAULT_QUEUE_ITEMS, DEFAULT_BATCH_WAIT_MILLIS));
+    }
+
+    private void appendBatch() {
+        for (int i = 0; i < DEFAULT_QUEUE_ITEMS; i++) {
+            writer.append(mock(DeferredProcessingAware.class));
+        }
+    }
+
+    private static RedisConnectionConfig connectionConfig() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setKey(KEY);
+        return connectionConfig;
+    }
+
+    private static String toString(byte[][] values) {
+        final StringBuilder result = new StringBuilder("[");
+        for (byte[] value : values) {
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+            result.append(new String(value, StandardCharsets.UTF_8));
+        }
+        return result.append(']').toString();
+    }
+}
@@ -2,18 +2,28 @@ package de.idealo.logback.appender.jediswriter;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import de.idealo.logback.appender.jedisclient.JedisPoolFactory;
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
 import de.idealo.logback.appender.jedisclient.RedisConnectionConfig.Method;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig.Transport;
+import de.idealo.logback.appender.transport.TransportRegistry;
 
 public class BufferedJedisWriterFactoryTest {
     @Mock
@@ -22,14 +32,16 @@ public class BufferedJedisWriterFactoryTest {
     private JedisWriterConfiguration writerConfiguration;
     @Mock
     private RedisConnectionConfig connectionConfig;
-    @InjectMocks
     private BufferedJedisWriterFactory bufferedJedisWriterFactory;
 
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        bufferedJedisWriterFactory = new BufferedJedisWriterFactory(jedisPoolFactory, new TransportRegistry());
         when(writerConfiguration.getConnectionConfig()).thenReturn(connectionConfig);
         when(writerConfiguration.getMaxInitializeTries()).thenReturn(1);
+        when(writerConfiguration.getBufferCapacity()).thenReturn(JedisWriterConfiguration.DEFAULT_BUFFER_CAPACITY);
+        when(connectionConfig.getTransport()).thenReturn(Transport.JEDIS);
     }
 
     @Test
@@ -50,4 +62,82 @@ public class BufferedJedisWriterFactoryTest {
         bufferedJedisWriterFactory.createJedisWriter(writerConfiguration);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void exception_on_null_transport() throws Exception {
+        when(connectionConfig.getMethod()).thenReturn(Method.RPUSH);
+        when(connectionConfig.getTransport()).thenReturn(null);
+        bufferedJedisWriterFactory.createJedisWriter(writerConfiguration);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exception_on_unacknowledged_jedis_transport() throws Exception {
+        when(connectionConfig.getMethod()).thenReturn(Method.RPUSH);
+        when(connectionConfig.isUnacknowledged()).thenReturn(true);
+        bufferedJedisWriterFactory.createJedisWriter(writerConfiguration);
+    }
+
+    @Test
+    public void create_writer_with_sinks() throws Exception {
+        final RedisConnectionConfig rpushConfig = new RedisConnectionConfig();
+        final RedisConnectionConfig publishConfig = new RedisConnectionConfig();
+        publishConfig.setMethod(Method.PUBLISH);
+        final JedisWriterConfiguration configuration = JedisWriterTestUtils.configurationBuilder(1, 1_000L)
+                .connectionConfig(rpushConfig)
+                .sinks(Collections.singletonList(publishConfig))
+                .maxInitializeTries(1)
+                .build();
+
+        final AbstractBufferedJedisWriter writer = bufferedJedisWriterFactory.createJedisWriter(configuration);
+        try {
+            assertThat(writer, is(instanceOf(BufferedJedisRPusher.class)));
+            assertThat(writer.getSinks(), contains(instanceOf(BufferedJedisPublisher.class)));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void writers_of_same_endpoint_share_transport() throws Exception {
+        final RedisConnectionConfig otherPortConfig = createConnectionConfig("third");
+        otherPortConfig.setPort(4711);
+        final List<AbstractBufferedJedisWriter> writers = new ArrayList<>();
+        try {
+            for (RedisConnectionConfig config : Arrays.asList(createConnectionConfig("first"), createConnectionConfig("second"), otherPortConfig)) {
+                config.setShareConnection(true);
+                writers.add(bufferedJedisWriterFactory.createJedisWriter(JedisWriterTestUtils.configurationBuilder(1, 1_000L)
+                        .connectionConfig(config)
+                        .maxInitializeTries(1)
+                        .build()));
+            }
+
+            // the pool is created by the initial connection attempt of each transport
+            verify(jedisPoolFactory, after(500).times(2)).createPool(any(RedisConnectionConfig.class));
+        } finally {
+            writers.forEach(AbstractBufferedJedisWriter::close);
+        }
+    }
+
+    @Test
+    public void writers_do_not_share_transport_by_default() throws Exception {
+        final List<AbstractBufferedJedisWriter> writers = new ArrayList<>();
+        try {
+            for (RedisConnectionConfig config : Arrays.asList(createConnectionConfig("first"), createConnectionConfig("second"))) {
+                writers.add(bufferedJedisWriterFactory.createJedisWriter(JedisWriterTestUtils.configurationBuilder(1, 1_000L)
+                        .connectionConfig(config)
+                        .maxInitializeTries(1)
+                        .build()));
+            }
+
+            verify(jedisPoolFactory, after(500).times(2)).createPool(any(RedisConnectionConfig.class));
+        } finally {
+            writers.forEach(AbstractBufferedJedisWriter::close);
+        }
+    }
+
+    private static RedisConnectionConfig createConnectionConfig(String key) {
+        final RedisConnectionConfig config = new RedisConnectionConfig();
+        config.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        config.setKey(key);
+        return config;
+    }
 }
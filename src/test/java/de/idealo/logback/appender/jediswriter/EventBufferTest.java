@@ -0,0 +1,124 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class EventBufferTest {
+
+    @Test
+    public void single_stripe_is_bounded_queue() {
+        final EventBuffer<Integer> buffer = new EventBuffer<>(2, 1, null);
+
+        assertThat(buffer.offer(1), is(true));
+        assertThat(buffer.offer(2), is(true));
+        assertThat(buffer.offer(3), is(false));
+        assertThat(buffer.holds(2), is(true));
+
+        final List<Integer> events = new ArrayList<>();
+        buffer.drainTo(events);
+        assertThat(events, contains(1, 2));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    public void capacity_is_divided_between_stripes() {
+        // rounded up to 4 stripes of 2 events
+        final EventBuffer<Integer> buffer = new EventBuffer<>(8, 3, null);
+
+        assertThat(buffer.offer(1), is(true));
+        assertThat(buffer.offer(2), is(true));
+        assertThat(buffer.offer(3), is(false));
+    }
+
+    @Test
+    public void events_of_all_threads_are_drained() throws InterruptedException {
+        final EventBuffer<Integer> buffer = new EventBuffer<>(1000, 8, null);
+        appendConcurrently(buffer, 8, 10);
+
+        final List<Integer> events = new ArrayList<>();
+        events.add(-1);
+        buffer.drainTo(events);
+
+        assertThat(events.size(), is(81));
+        assertThat(events.get(0), is(-1));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    public void at_most_given_number_of_events_are_drained() throws InterruptedException {
+        final EventBuffer<Integer> buffer = new EventBuffer<>(1000, 8, null);
+        appendConcurrently(buffer, 8, 10);
+
+        final List<Integer> events = new ArrayList<>();
+        events.add(-1);
+        buffer.drainTo(events, 25);
+
+        assertThat(events.size(), is(26));
+        assertThat(buffer.size(), is(55));
+    }
+
+    @Test
+    public void stripes_are_merged_in_order() throws InterruptedException {
+        final EventBuffer<Integer> buffer = new EventBuffer<>(1000, 8, Comparator.naturalOrder());
+        appendConcurrently(buffer, 4, 5);
+
+        final List<Integer> events = new ArrayList<>();
+        buffer.drainTo(events);
+
+        final List<Integer> expected = new ArrayList<>(events);
+        expected.sort(Comparator.naturalOrder());
+        assertThat(events, is(expected));
+        assertThat(events.size(), is(20));
+    }
+
+    @Test
+    public void size_is_only_summed_up_with_full_share_of_stripe() {
+        final EventBuffer<Integer> buffer = new EventBuffer<>(100, 4, null);
+        final List<Integer> appended = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            buffer.offer(i);
+            appended.add(i);
+        }
+
+        // a single thread reaches its share of 2 events before the limit of 8
+        assertThat(buffer.holds(2), is(true));
+        assertThat(buffer.holds(8), is(false));
+
+        final List<Integer> events = new ArrayList<>();
+        buffer.drainTo(events);
+        assertThat(events, containsInAnyOrder(appended.toArray()));
+    }
+
+    private static void appendConcurrently(EventBuffer<Integer> buffer, int threads, int eventsPerThread) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> appenders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * eventsPerThread;
+            final Thread appender = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < eventsPerThread; i++) {
+                    buffer.offer(offset + i);
+                }
+            });
+            appender.start();
+            appenders.add(appender);
+        }
+        start.countDown();
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static org.mockito.Mockito.mock;
+
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+
+import ch.qos.logback.core.encoder.Encoder;
+
+final class JedisWriterTestUtils {
+
+    private JedisWriterTestUtils() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static JedisWriterConfiguration.JedisWriterConfigurationBuilder configurationBuilder(int maxBufferedMessages, long flushBufferIntervalMillis) {
+        return JedisWriterConfiguration.builder()
+                .maxBufferedMessages(maxBufferedMessages)
+                .flushBufferIntervalMillis(flushBufferIntervalMillis)
+                .encoder(mock(Encoder.class))
+                .connectionConfig(new RedisConnectionConfig());
+    }
+
+    static JedisWriterConfiguration configuration(int maxBufferedMessages, long flushBufferIntervalMillis) {
+        return configurationBuilder(maxBufferedMessages, flushBufferIntervalMillis).build();
+    }
+}
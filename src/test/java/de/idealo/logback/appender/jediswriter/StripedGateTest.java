@@ -0,0 +1,55 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class StripedGateTest {
+
+    @Test
+    public void closed_gate_rejects_threads() {
+        final StripedGate gate = new StripedGate();
+
+        assertThat(gate.enter(), is(true));
+        gate.exit();
+        gate.close();
+
+        assertThat(gate.enter(), is(false));
+    }
+
+    @Test
+    public void close_waits_for_entered_threads() throws InterruptedException {
+        final StripedGate gate = new StripedGate();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch leave = new CountDownLatch(1);
+        final AtomicBoolean left = new AtomicBoolean();
+        final Thread thread = new Thread(() -> {
+            gate.enter();
+            entered.countDown();
+            try {
+                leave.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            left.set(true);
+            gate.exit();
+        });
+        thread.start();
+        entered.await();
+
+        final Thread closer = new Thread(gate::close);
+        closer.start();
+        closer.join(100L);
+        assertThat(closer.isAlive(), is(true));
+
+        leave.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(closer.isAlive(), is(false));
+        assertThat(left.get(), is(true));
+    }
+}
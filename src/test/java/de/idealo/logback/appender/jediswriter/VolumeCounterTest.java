@@ -0,0 +1,164 @@
+package de.idealo.logback.appender.jediswriter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import de.idealo.logback.appender.transport.RedisPipeline;
+
+import ch.qos.logback.core.spi.DeferredProcessingAware;
+
+public class VolumeCounterTest {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final RedisPipeline pipeline = mock(RedisPipeline.class);
+
+    @Test
+    public void events_are_counted_per_dimension() {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", HOUR_MILLIS, 0);
+        counter.count(event("a"));
+        counter.count(event("b"));
+        counter.count(event("a"));
+
+        counter.addToPipeline(pipeline, counter.takeCompletedBuckets(true));
+
+        final ArgumentCaptor<byte[]> keys = ArgumentCaptor.forClass(byte[].class);
+        verify(pipeline).hincrBy(keys.capture(), aryEq(bytes("a")), eq(2L));
+        verify(pipeline).hincrBy(any(byte[].class), aryEq(bytes("b")), eq(1L));
+        verify(pipeline, never()).expire(any(byte[].class), anyInt());
+        assertThat(new String(keys.getValue(), StandardCharsets.UTF_8).matches("volume:\\d{12}"), is(true));
+    }
+
+    @Test
+    public void running_bucket_is_not_taken() {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", HOUR_MILLIS, 0);
+        counter.count(event("a"));
+
+        assertThat(counter.hasCompletedBuckets(), is(false));
+        assertThat(counter.takeCompletedBuckets(false).isEmpty(), is(true));
+        assertThat(counter.takeCompletedBuckets(true).size(), is(1));
+    }
+
+    @Test
+    public void ended_bucket_is_taken() throws InterruptedException {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", 10L, 0);
+        counter.count(event("a"));
+        Thread.sleep(20L);
+
+        assertThat(counter.hasCompletedBuckets(), is(true));
+        counter.addToPipeline(pipeline, counter.takeCompletedBuckets(false));
+
+        final ArgumentCaptor<byte[]> keys = ArgumentCaptor.forClass(byte[].class);
+        verify(pipeline).hincrBy(keys.capture(), aryEq(bytes("a")), eq(1L));
+        // intervals below a minute are named by second
+        assertThat(new String(keys.getValue(), StandardCharsets.UTF_8).matches("volume:\\d{14}"), is(true));
+    }
+
+    @Test
+    public void restored_buckets_are_taken_again() {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", HOUR_MILLIS, 0);
+        counter.count(event("a"));
+        final List<VolumeCounter.Bucket> buckets = counter.takeCompletedBuckets(true);
+        counter.count(event("a"));
+
+        counter.restore(buckets);
+        counter.addToPipeline(pipeline, counter.takeCompletedBuckets(true));
+
+        verify(pipeline, times(2)).hincrBy(any(byte[].class), aryEq(bytes("a")), eq(1L));
+    }
+
+    @Test
+    public void bucket_expires_once() {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", HOUR_MILLIS, 7200);
+        counter.count(event("a"));
+        counter.count(event("b"));
+
+        counter.addToPipeline(pipeline, counter.takeCompletedBuckets(true));
+
+        verify(pipeline, times(1)).expire(any(byte[].class), eq(7200));
+    }
+
+    @Test
+    public void dimensions_are_bounded() {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", HOUR_MILLIS, 0);
+        final List<DeferredProcessingAware> events = new ArrayList<>();
+        for (int i = 0; i <= 10_000; i++) {
+            events.add(event("d" + i));
+        }
+        events.forEach(counter::count);
+
+        counter.addToPipeline(pipeline, counter.takeCompletedBuckets(true));
+
+        // 10000 dimensions and the other dimension
+        verify(pipeline, times(10_001)).hincrBy(any(byte[].class), any(byte[].class), anyLong());
+        verify(pipeline).hincrBy(any(byte[].class), aryEq(bytes(VolumeCounter.OTHER_DIMENSION)), eq(1L));
+    }
+
+    @Test
+    public void no_event_is_lost_while_buckets_end() throws InterruptedException {
+        final VolumeCounter counter = new VolumeCounter(dimension(), "volume", 1L, 0);
+        final AtomicLong counted = new AtomicLong();
+        doAnswer(invocation -> counted.addAndGet(invocation.getArgumentAt(2, Long.class))).when(pipeline)
+                .hincrBy(any(byte[].class), any(byte[].class), anyLong());
+        final int threads = 4;
+        final int eventsPerThread = 100_000;
+        final DeferredProcessingAware event = event("a");
+        final List<Thread> counters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final Thread thread = new Thread(() -> {
+                for (int j = 0; j < eventsPerThread; j++) {
+                    counter.count(event);
+                }
+            });
+            thread.start();
+            counters.add(thread);
+        }
+        while (counters.stream().anyMatch(Thread::isAlive)) {
+            counter.addToPipeline(pipeline, counter.takeCompletedBuckets(false));
+        }
+        counter.addToPipeline(pipeline, counter.takeCompletedBuckets(true));
+
+        assertThat(counted.get(), is((long) threads * eventsPerThread));
+    }
+
+    private static Function<DeferredProcessingAware, String> dimension() {
+        return Object::toString;
+    }
+
+    private static DeferredProcessingAware event(String dimension) {
+        return new DeferredProcessingAware() {
+            @Override
+            public void prepareForDeferredProcessing() {
+                // nothing to prepare
+            }
+
+            @Override
+            public String toString() {
+                return dimension;
+            }
+        };
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
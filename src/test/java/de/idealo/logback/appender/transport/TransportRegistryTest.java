@@ -0,0 +1,88 @@
+package de.idealo.logback.appender.transport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TransportRegistryTest {
+
+    private final TransportRegistry registry = new TransportRegistry();
+    private final RedisTransport delegate = mock(RedisTransport.class);
+
+    @Test
+    public void transport_is_shared_per_endpoint() {
+        final AtomicInteger created = new AtomicInteger();
+
+        final RedisTransport first = registry.acquire("endpoint", () -> create(created));
+        final RedisTransport second = registry.acquire("endpoint", () -> create(created));
+        final RedisTransport other = registry.acquire("other endpoint", () -> mock(RedisTransport.class));
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(other, is(not(sameInstance(first))));
+        assertThat(created.get(), is(1));
+        assertThat(registry.size(), is(2));
+    }
+
+    @Test
+    public void transport_is_closed_by_last_writer() {
+        final RedisTransport first = registry.acquire("endpoint", () -> delegate);
+        final RedisTransport second = registry.acquire("endpoint", () -> delegate);
+
+        first.close();
+        verify(delegate, never()).close();
+        second.close();
+
+        verify(delegate, times(1)).close();
+        assertThat(registry.size(), is(0));
+    }
+
+    @Test
+    public void transport_is_created_again_after_close() {
+        final AtomicInteger created = new AtomicInteger();
+        registry.acquire("endpoint", () -> create(created)).close();
+
+        registry.acquire("endpoint", () -> create(created));
+
+        assertThat(created.get(), is(2));
+    }
+
+    @Test
+    public void calls_are_delegated() {
+        final RedisTransport transport = registry.acquire("endpoint", () -> delegate);
+
+        transport.getPipeline();
+        transport.ping();
+        transport.reconnect();
+
+        verify(delegate).getPipeline();
+        verify(delegate).ping();
+        verify(delegate).reconnect();
+    }
+
+    @Test
+    public void writers_of_shared_transport_use_lock_of_delegate() {
+        final Object lock = new Object();
+        when(delegate.getLock()).thenReturn(lock);
+        when(delegate.getConnectionGeneration()).thenReturn(3L);
+
+        final RedisTransport transport = registry.acquire("endpoint", () -> delegate);
+
+        assertThat(transport.getLock(), is(sameInstance(lock)));
+        assertThat(transport.getConnectionGeneration(), is(3L));
+    }
+
+    private RedisTransport create(AtomicInteger created) {
+        created.incrementAndGet();
+        return delegate;
+    }
+}
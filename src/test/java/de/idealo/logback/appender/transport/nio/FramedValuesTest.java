@@ -0,0 +1,83 @@
+package de.idealo.logback.appender.transport.nio;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class FramedValuesTest {
+
+    private final DirectBufferPool bufferPool = new DirectBufferPool(8, 4);
+    private final FramedValues values = new FramedValues(bufferPool);
+
+    @Test
+    public void values_are_framed_across_chunks() {
+        values.add(bytes("first value"));
+        values.add(bytes(""));
+
+        final RespCommandBuffer commands = new RespCommandBuffer(bufferPool);
+        commands.writeArrayHeader(2 + values.size());
+        values.writeFramesTo(commands);
+
+        assertThat(content(commands), is("*4\r\n$11\r\nfirst value\r\n$0\r\n\r\n"));
+    }
+
+    @Test
+    public void values_are_read_back() {
+        values.add(bytes("first value"));
+        values.add(bytes("second"));
+
+        assertThat(values.toStrings(), contains("first value", "second"));
+        assertThat(values.toStrings(), contains("first value", "second"));
+    }
+
+    @Test
+    public void frames_are_copied_one_by_one() {
+        values.add(bytes("first value"));
+        values.add(bytes("second"));
+
+        final RespCommandBuffer commands = new RespCommandBuffer(bufferPool);
+        values.copyFramesTo(commands, () -> commands.writeArrayHeader(1));
+
+        assertThat(content(commands), is("*1\r\n$11\r\nfirst value\r\n*1\r\n$6\r\nsecond\r\n"));
+    }
+
+    @Test
+    public void values_can_be_added_after_clear() {
+        values.add(bytes("sent"));
+        values.toStrings();
+
+        values.clear();
+        values.add(bytes("next"));
+
+        assertThat(values.size(), is(1));
+        assertThat(values.toStrings(), contains("next"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void exception_on_add_after_send() {
+        values.add(bytes("sent"));
+        values.toStrings();
+
+        values.add(bytes("too late"));
+    }
+
+    private static String content(RespCommandBuffer commands) {
+        final ByteBuffer[] chunks = commands.flip();
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < commands.getChunkCount(); i++) {
+            final byte[] chunk = new byte[chunks[i].remaining()];
+            chunks[i].get(chunk);
+            content.append(new String(chunk, StandardCharsets.US_ASCII));
+        }
+        return content.toString();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
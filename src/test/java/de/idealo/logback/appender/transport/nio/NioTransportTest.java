@@ -0,0 +1,327 @@
+package de.idealo.logback.appender.transport.nio;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.idealo.logback.appender.jedisclient.ConnectionState;
+import de.idealo.logback.appender.jedisclient.RedisConnectionConfig;
+import de.idealo.logback.appender.transport.BatchValues;
+import de.idealo.logback.appender.transport.RedisPipeline;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+public class NioTransportTest {
+
+    private static final byte[] KEY = bytes("key");
+
+    private RespStubServer server;
+    private NioTransport transport;
+
+    @Before
+    public void init() throws IOException {
+        server = new RespStubServer();
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        if (transport != null) {
+            transport.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void batch_is_sent_in_one_pipeline() throws InterruptedException {
+        transport = connect(connectionConfig());
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("first"), bytes("second"));
+        pipeline.publish(bytes("channel"), bytes("third"));
+        pipeline.sync();
+
+        assertThat(server.getCommands(), contains(
+                Arrays.asList("RPUSH", "key", "first", "second"),
+                Arrays.asList("PUBLISH", "channel", "third")));
+    }
+
+    @Test
+    public void framed_values_are_sent_as_batch() throws InterruptedException {
+        transport = connect(connectionConfig());
+        final BatchValues values = transport.createBatchValues();
+        values.add(bytes("first"));
+        values.add(bytes("second"));
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, values);
+        pipeline.publish(bytes("channel"), values);
+        pipeline.sync();
+
+        assertThat(server.getCommands(), contains(
+                Arrays.asList("RPUSH", "key", "first", "second"),
+                Arrays.asList("PUBLISH", "channel", "first"),
+                Arrays.asList("PUBLISH", "channel", "second")));
+    }
+
+    @Test
+    public void framed_values_are_sent_again_after_failure() throws Exception {
+        transport = connect(connectionConfig());
+        final BatchValues values = transport.createBatchValues();
+        values.add(bytes("retried"));
+        server.dropConnections();
+        try {
+            final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+            pipeline.rpush(KEY, values);
+            pipeline.sync();
+        } catch (JedisConnectionException ex) {
+            // expected, redis closed the connection
+        }
+        transport.reconnect();
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, values);
+        pipeline.sync();
+
+        assertThat(server.getCommands(), hasItem(Arrays.asList("RPUSH", "key", "retried")));
+    }
+
+    @Test
+    public void password_and_database_are_sent_on_connect() throws InterruptedException {
+        final RedisConnectionConfig connectionConfig = connectionConfig();
+        connectionConfig.setPassword("secret");
+        connectionConfig.setDatabase(3);
+
+        transport = connect(connectionConfig);
+
+        assertThat(server.getCommands(), contains(Arrays.asList("AUTH", "secret"), Arrays.asList("SELECT", "3")));
+    }
+
+    @Test(expected = JedisDataException.class)
+    public void exception_on_error_reply() throws InterruptedException {
+        server.replyWithError("RPUSH", "WRONGTYPE Operation against a key holding the wrong kind of value");
+        transport = connect(connectionConfig());
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("value"));
+        pipeline.sync();
+    }
+
+    @Test
+    public void connection_is_usable_after_error_reply() throws InterruptedException {
+        server.replyWithError("PUBLISH", "ERR not allowed");
+        transport = connect(connectionConfig());
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.publish(bytes("channel"), bytes("value"));
+        try {
+            pipeline.sync();
+        } catch (JedisDataException ex) {
+            // expected
+        }
+
+        assertThat(transport.ping(), is(true));
+    }
+
+    @Test
+    public void reconnect_after_dropped_connection() throws Exception {
+        transport = connect(connectionConfig());
+        server.dropConnections();
+
+        try {
+            final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+            pipeline.rpush(KEY, bytes("lost"));
+            pipeline.sync();
+        } catch (JedisConnectionException ex) {
+            // expected, redis closed the connection
+        }
+        assertFalse(transport.ping());
+
+        transport.reconnect();
+
+        assertThat(transport.ping(), is(true));
+        assertThat(transport.getConnectionState(), is(ConnectionState.CONNECTED));
+    }
+
+    @Test
+    public void disconnected_if_redis_is_not_reachable() throws Exception {
+        final RedisConnectionConfig connectionConfig = connectionConfig();
+        server.close();
+
+        transport = connect(connectionConfig);
+
+        assertThat(transport.getConnectionState(), is(ConnectionState.DISCONNECTED));
+        assertThat(transport.getPipeline().isPresent(), is(false));
+    }
+
+    @Test
+    public void batch_is_sent_via_unix_socket() throws Exception {
+        Assume.assumeTrue("unix domain sockets require java 16", UnixDomainSockets.isSupported());
+        final Path socketFile = Files.createTempDirectory("redis").resolve("redis.sock");
+        try (RespStubServer unixServer = RespStubServer.onUnixSocket(socketFile)) {
+            final RedisConnectionConfig connectionConfig = connectionConfig();
+            connectionConfig.setUnixSocket(socketFile.toString());
+            transport = connect(connectionConfig);
+
+            final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+            pipeline.rpush(KEY, bytes("local"));
+            pipeline.sync();
+
+            assertThat(unixServer.getCommands(), contains(Arrays.asList("RPUSH", "key", "local")));
+            assertThat(server.getCommands(), is(empty()));
+        } finally {
+            Files.deleteIfExists(socketFile);
+            Files.delete(socketFile.getParent());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exception_on_unix_socket_before_java_16() {
+        Assume.assumeFalse(UnixDomainSockets.isSupported());
+        final RedisConnectionConfig connectionConfig = connectionConfig();
+        connectionConfig.setUnixSocket("/var/run/redis/redis.sock");
+
+        new NioTransport(connectionConfig, 1, 0L);
+    }
+
+    @Test
+    public void unacknowledged_batch_is_sent_without_replies() throws InterruptedException {
+        transport = connect(unacknowledgedConfig(60_000L));
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("first"));
+        pipeline.publish(bytes("channel"), bytes("second"));
+        pipeline.sync();
+
+        awaitCommands(4);
+        assertThat(server.getCommands(), contains(
+                Arrays.asList("CLIENT", "REPLY", "ON"),
+                Arrays.asList("CLIENT", "REPLY", "OFF"),
+                Arrays.asList("RPUSH", "key", "first"),
+                Arrays.asList("PUBLISH", "channel", "second")));
+    }
+
+    @Test
+    public void ping_is_answered_in_unacknowledged_mode() throws InterruptedException {
+        transport = connect(unacknowledgedConfig(60_000L));
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("unacknowledged"));
+        pipeline.sync();
+
+        assertThat(transport.ping(), is(true));
+        assertThat(server.getCommands().subList(3, 5), contains(Arrays.asList("CLIENT", "REPLY", "ON"), Arrays.asList("PING")));
+    }
+
+    @Test
+    public void confirmation_probe_is_sent_with_batch() throws InterruptedException {
+        transport = connect(unacknowledgedConfig(0L));
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("confirmed"));
+        pipeline.sync();
+
+        assertThat(server.getCommands().subList(1, 4), contains(
+                Arrays.asList("CLIENT", "REPLY", "OFF"),
+                Arrays.asList("RPUSH", "key", "confirmed"),
+                Arrays.asList("CLIENT", "REPLY", "ON")));
+    }
+
+    @Test(expected = JedisConnectionException.class)
+    public void confirmation_probe_detects_dropped_connection() throws Exception {
+        transport = connect(unacknowledgedConfig(0L));
+        server.dropConnections();
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("lost"));
+        pipeline.sync();
+    }
+
+    @Test
+    public void lost_script_is_reported_in_unacknowledged_mode() throws InterruptedException {
+        server.replyWithError("EVALSHA", "NOSCRIPT No matching script. Please use EVAL.");
+        transport = connect(unacknowledgedConfig(60_000L));
+        final BatchValues values = transport.createBatchValues();
+        values.add(bytes("scripted"));
+
+        final RedisPipeline pipeline = transport.getPipeline().orElse(null);
+        pipeline.rpush(KEY, bytes("unacknowledged"));
+        pipeline.evalsha(bytes("sha1"), 1, new byte[][] { KEY }, values);
+        try {
+            pipeline.sync();
+            fail("NOSCRIPT was not reported");
+        } catch (JedisDataException ex) {
+            assertThat(ex.getMessage().startsWith("NOSCRIPT"), is(true));
+        }
+        assertThat(server.getCommands().subList(1, 5), contains(
+                Arrays.asList("CLIENT", "REPLY", "OFF"),
+                Arrays.asList("RPUSH", "key", "unacknowledged"),
+                Arrays.asList("CLIENT", "REPLY", "ON"),
+                Arrays.asList("EVALSHA", "sha1", "1", "key", "scripted")));
+    }
+
+    @Test
+    public void disconnected_if_redis_does_not_support_unacknowledged_mode() throws InterruptedException {
+        server.replyWithError("CLIENT", "ERR Syntax error, try CLIENT (LIST | KILL ip:port | GETNAME | SETNAME connection-name)");
+
+        transport = connect(unacknowledgedConfig(0L));
+
+        assertThat(transport.getConnectionState(), is(ConnectionState.DISCONNECTED));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exception_on_sentinel_scheme() {
+        final RedisConnectionConfig connectionConfig = connectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.SENTINEL);
+
+        new NioTransport(connectionConfig, 1, 0L);
+    }
+
+    private RedisConnectionConfig connectionConfig() {
+        final RedisConnectionConfig connectionConfig = new RedisConnectionConfig();
+        connectionConfig.setScheme(RedisConnectionConfig.RedisScheme.NODE);
+        connectionConfig.setPort(server.getPort());
+        connectionConfig.setTimeout(1000);
+        return connectionConfig;
+    }
+
+    private RedisConnectionConfig unacknowledgedConfig(long confirmationIntervalMillis) {
+        final RedisConnectionConfig connectionConfig = connectionConfig();
+        connectionConfig.setUnacknowledged(true);
+        connectionConfig.setConfirmationIntervalMillis(confirmationIntervalMillis);
+        return connectionConfig;
+    }
+
+    private void awaitCommands(int commands) throws InterruptedException {
+        for (int i = 0; i < 100 && server.getCommands().size() < commands; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static NioTransport connect(RedisConnectionConfig connectionConfig) throws InterruptedException {
+        final NioTransport nioTransport = new NioTransport(connectionConfig, 1, 0L);
+        for (int i = 0; i < 100 && nioTransport.isInitializing(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertFalse(nioTransport.isInitializing());
+        return nioTransport;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
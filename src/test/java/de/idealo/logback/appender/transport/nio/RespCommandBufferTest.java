@@ -0,0 +1,50 @@
+package de.idealo.logback.appender.transport.nio;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class RespCommandBufferTest {
+
+    private final DirectBufferPool bufferPool = new DirectBufferPool(8, 4);
+    private final RespCommandBuffer commands = new RespCommandBuffer(bufferPool);
+
+    @Test
+    public void commands_are_encoded_across_chunks() {
+        commands.writeCommand(bytes("RPUSH"), bytes("key"), bytes("first value"), bytes(""));
+        commands.writeCommand(bytes("PING"));
+
+        assertThat(content(), is("*4\r\n$5\r\nRPUSH\r\n$3\r\nkey\r\n$11\r\nfirst value\r\n$0\r\n\r\n*1\r\n$4\r\nPING\r\n"));
+    }
+
+    @Test
+    public void chunks_are_given_back_on_release() {
+        commands.writeCommand(bytes("PUBLISH"), bytes("channel"), bytes("message"));
+        final int chunks = commands.getChunkCount();
+
+        commands.flip();
+        commands.release();
+
+        assertThat(commands.isEmpty(), is(true));
+        assertThat(bufferPool.getRetainedBuffers(), is(Math.min(chunks, 4)));
+    }
+
+    private String content() {
+        final ByteBuffer[] chunks = commands.flip();
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < commands.getChunkCount(); i++) {
+            final byte[] chunk = new byte[chunks[i].remaining()];
+            chunks[i].get(chunk);
+            content.append(new String(chunk, StandardCharsets.US_ASCII));
+        }
+        return content.toString();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,82 @@
+package de.idealo.logback.appender.transport.nio;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+public class RespReplyReaderTest {
+
+    private static final String REPLIES = "+OK\r\n:42\r\n$5\r\nhello\r\n$-1\r\n*2\r\n$3\r\nfoo\r\n*1\r\n:1\r\n*-1\r\n$0\r\n\r\n";
+    private static final int REPLY_COUNT = 7;
+
+    private final RespReplyReader reader = new RespReplyReader();
+
+    @Test
+    public void replies_are_consumed_at_once() {
+        final ByteBuffer buffer = ascii(REPLIES);
+        reader.expect(REPLY_COUNT);
+
+        reader.consume(buffer);
+
+        assertThat(reader.isComplete(), is(true));
+        assertThat(buffer.hasRemaining(), is(false));
+    }
+
+    @Test
+    public void replies_are_consumed_byte_by_byte() {
+        final byte[] bytes = REPLIES.getBytes(StandardCharsets.US_ASCII);
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        reader.expect(REPLY_COUNT);
+
+        for (byte b : bytes) {
+            assertThat(reader.isComplete(), is(false));
+            buffer.put(b);
+            buffer.flip();
+            reader.consume(buffer);
+            buffer.compact();
+        }
+
+        assertThat(reader.isComplete(), is(true));
+        assertThat(buffer.position(), is(0));
+    }
+
+    @Test
+    public void incomplete_reply_is_kept_in_buffer() {
+        final ByteBuffer buffer = ascii("+OK\r\n:4");
+        reader.expect(2);
+
+        reader.consume(buffer);
+
+        assertThat(reader.isComplete(), is(false));
+        assertThat(buffer.remaining(), is(2));
+    }
+
+    @Test
+    public void first_error_is_reported() {
+        reader.expect(3);
+
+        reader.consume(ascii("-WRONGTYPE wrong kind of value\r\n:1\r\n-ERR other\r\n"));
+
+        assertThat(reader.isComplete(), is(true));
+        assertThat(reader.takeError(), is("WRONGTYPE wrong kind of value"));
+        assertThat(reader.takeError(), is(nullValue()));
+    }
+
+    @Test(expected = JedisConnectionException.class)
+    public void exception_on_unknown_reply_type() {
+        reader.expect(1);
+
+        reader.consume(ascii("?\r\n"));
+    }
+
+    private static ByteBuffer ascii(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,186 @@
+package de.idealo.logback.appender.transport.nio;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Minimal redis stub that records the received commands and answers them with fixed replies. Supports
+ * {@code CLIENT REPLY OFF|ON} per connection.
+ */
+final class RespStubServer implements Closeable {
+
+    private final ServerSocketChannel serverChannel;
+    private final int port;
+    private final List<List<String>> commands = new CopyOnWriteArrayList<>();
+    private final List<SocketChannel> connections = new CopyOnWriteArrayList<>();
+    private final Map<String, String> errors = new ConcurrentHashMap<>();
+
+    /**
+     * listens on a random tcp port.
+     */
+    RespStubServer() throws IOException {
+        this(ServerSocketChannel.open().bind(new InetSocketAddress(0)));
+    }
+
+    private RespStubServer(ServerSocketChannel serverChannel) throws IOException {
+        this.serverChannel = serverChannel;
+        final SocketAddress localAddress = serverChannel.getLocalAddress();
+        port = localAddress instanceof InetSocketAddress ? ((InetSocketAddress) localAddress).getPort() : -1;
+        final Thread acceptor = new Thread(this::accept, "resp-stub");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * listens on the given unix domain socket file, requires java 16 or newer.
+     */
+    static RespStubServer onUnixSocket(Path socketFile) throws Exception {
+        final ServerSocketChannel serverChannel = (ServerSocketChannel) ServerSocketChannel.class
+                .getMethod("open", ProtocolFamily.class)
+                .invoke(null, UnixDomainSockets.getProtocolFamily());
+        serverChannel.bind(UnixDomainSockets.createAddress(socketFile.toString()));
+        return new RespStubServer(serverChannel);
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    List<List<String>> getCommands() {
+        return commands;
+    }
+
+    /**
+     * answers the given command with an error reply.
+     */
+    void replyWithError(String command, String error) {
+        errors.put(command, error);
+    }
+
+    /**
+     * closes all open client connections, like a restarted redis.
+     */
+    void dropConnections() throws IOException {
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        dropConnections();
+        serverChannel.close();
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            try {
+                final SocketChannel connection = serverChannel.accept();
+                connections.add(connection);
+                final Thread handler = new Thread(() -> handle(connection), "resp-stub-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException ex) {
+                return;
+            }
+        }
+    }
+
+    private void handle(SocketChannel connection) {
+        try (InputStream in = new BufferedInputStream(Channels.newInputStream(connection));
+                OutputStream out = Channels.newOutputStream(connection)) {
+            boolean repliesOff = false;
+            while (true) {
+                final List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                commands.add(command);
+                final String reply = reply(command);
+                if (isClientReply(command, "OFF") && !reply.startsWith("-")) {
+                    repliesOff = true;
+                } else if (isClientReply(command, "ON")) {
+                    repliesOff = false;
+                }
+                if (!repliesOff) {
+                    out.write(reply.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            // connection dropped
+        }
+    }
+
+    private String reply(List<String> command) {
+        final String name = command.get(0).toUpperCase();
+        if (errors.containsKey(name)) {
+            return "-" + errors.get(name) + "\r\n";
+        }
+        switch (name) {
+            case "PING":
+                return "+PONG\r\n";
+            case "RPUSH":
+                return ":" + (command.size() - 2) + "\r\n";
+            case "PUBLISH":
+                return ":0\r\n";
+            default:
+                return "+OK\r\n";
+        }
+    }
+
+    private static boolean isClientReply(List<String> command, String mode) {
+        return command.size() == 3 && "CLIENT".equalsIgnoreCase(command.get(0)) && "REPLY".equalsIgnoreCase(command.get(1))
+                && mode.equalsIgnoreCase(command.get(2));
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        final String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        final int arguments = Integer.parseInt(header.substring(1));
+        final List<String> command = new ArrayList<>(arguments);
+        for (int i = 0; i < arguments; i++) {
+            final int length = Integer.parseInt(readLine(in).substring(1));
+            final byte[] value = new byte[length];
+            int read = 0;
+            while (read < length) {
+                read += in.read(value, read, length - read);
+            }
+            readLine(in);
+            command.add(new String(value, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c < 0) {
+                return null;
+            }
+            line.append((char) c);
+        }
+        in.read();
+        return line.toString();
+    }
+}